@@ -0,0 +1,107 @@
+package com.example.wifibasedattendanceapplication;
+
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import com.google.firebase.database.DataSnapshot;
+import com.google.firebase.database.DatabaseError;
+import com.google.firebase.database.FirebaseDatabase;
+import com.google.firebase.database.ValueEventListener;
+
+import java.util.Map;
+
+/**
+ * Secondary index of active sessions keyed by division.
+ *
+ * Layout: ActiveSessionsByDivision/{division}/{sessionId} = {timestamp, end_timestamp, subject}
+ *
+ * Writers add the entry in the same multi-path update that creates the session and remove it
+ * in the update that ends or expires it, so students can resolve their active session with
+ * one small read instead of scanning the whole AttendanceReport tree.
+ */
+public final class ActiveSessionIndex {
+
+    public static final String NODE = "ActiveSessionsByDivision";
+    private static final String TAG = "ActiveSessionIndex";
+    private static final long GRACE_PERIOD_MS = 30 * 60 * 1000; // 30 minutes after end_timestamp
+
+    public interface LookupCallback {
+        void onActiveSession(@NonNull String sessionId);
+        void onNoActiveSession();
+        void onError(@NonNull DatabaseError error);
+    }
+
+    private ActiveSessionIndex() { }
+
+    /**
+     * Path of the index entry for a session, relative to the database root
+     */
+    public static String entryPath(String division, String sessionId) {
+        return NODE + "/" + division + "/" + sessionId;
+    }
+
+    /**
+     * Adds the index entry to a root-level multi-path update map
+     */
+    public static void putEntry(Map<String, Object> rootUpdates, String division, String sessionId,
+                                long timestamp, long endTimestamp, String subject) {
+        if (division == null || division.isEmpty() || sessionId == null) return;
+        String base = entryPath(division, sessionId);
+        rootUpdates.put(base + "/timestamp", timestamp);
+        rootUpdates.put(base + "/end_timestamp", endTimestamp);
+        rootUpdates.put(base + "/subject", subject);
+    }
+
+    /**
+     * Adds the removal of the index entry to a root-level multi-path update map
+     */
+    public static void removeEntry(Map<String, Object> rootUpdates, String division, String sessionId) {
+        if (division == null || division.isEmpty() || sessionId == null) return;
+        rootUpdates.put(entryPath(division, sessionId), null);
+    }
+
+    /**
+     * Resolves the most recent active session for a division with a single read of its index node.
+     * Entries past their end time plus grace period are ignored.
+     */
+    public static void findActiveSession(@NonNull String division, @NonNull LookupCallback callback) {
+        FirebaseDatabase.getInstance().getReference(NODE).child(division)
+                .addListenerForSingleValueEvent(new ValueEventListener() {
+                    @Override
+                    public void onDataChange(@NonNull DataSnapshot snapshot) {
+                        long now = System.currentTimeMillis();
+                        String bestSessionId = null;
+                        long bestTimestamp = 0L;
+
+                        for (DataSnapshot entry : snapshot.getChildren()) {
+                            Long timestamp = entry.child("timestamp").getValue(Long.class);
+                            Long endTimestamp = entry.child("end_timestamp").getValue(Long.class);
+                            if (timestamp == null) continue;
+                            if (endTimestamp != null && now > endTimestamp + GRACE_PERIOD_MS) {
+                                Log.d(TAG, "Skipping stale index entry: " + entry.getKey());
+                                continue;
+                            }
+                            if (timestamp > bestTimestamp) {
+                                bestTimestamp = timestamp;
+                                bestSessionId = entry.getKey();
+                            }
+                        }
+
+                        Log.d(TAG, "Division " + division + ": " + snapshot.getChildrenCount()
+                                + " indexed sessions, active=" + bestSessionId);
+                        if (bestSessionId != null) {
+                            callback.onActiveSession(bestSessionId);
+                        } else {
+                            callback.onNoActiveSession();
+                        }
+                    }
+
+                    @Override
+                    public void onCancelled(@NonNull DatabaseError error) {
+                        Log.e(TAG, "Error reading active session index: " + error.getMessage());
+                        callback.onError(error);
+                    }
+                });
+    }
+}
@@ -0,0 +1,419 @@
+package com.example.wifibasedattendanceapplication;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+import android.provider.MediaStore;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import com.google.android.gms.tasks.TaskCompletionSource;
+import com.google.firebase.database.DataSnapshot;
+import com.google.firebase.database.DatabaseError;
+import com.google.firebase.database.FirebaseDatabase;
+import com.google.firebase.database.Query;
+
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Builds attendance spreadsheets on a background thread and saves them to Downloads.
+ *
+ * Only the session node and the division roster projection are read (never the database root
+ * or the whole Students tree), and rows are written through POI's streaming SXSSFWorkbook, which
+ * keeps just {@link #ROW_WINDOW} rows in memory and flushes the rest to a temp file. Memory use is
+ * therefore flat regardless of roster size. Progress and results are delivered on the main thread.
+ *
+ * The date-range matrix export pages through AttendanceReport by start time, holding one page of
+ * sessions at a time plus a single status character per student per matched session.
+ */
+public class AttendanceExcelExporter {
+
+    private static final String TAG = "AttendanceExport";
+    private static final int ROW_WINDOW = 100;
+    private static final int PROGRESS_EVERY_ROWS = 25;
+    private static final int SESSION_PAGE_SIZE = 20;
+    private static final char NOT_IN_SESSION = ' ';
+    private static final String MIME_XLSX = "application/vnd.openxmlformats-officedocument.spreadsheetml.sheet";
+
+    private final Context appContext;
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    public interface Callback {
+        void onProgress(int rowsWritten, int totalRows);
+        void onComplete(@NonNull String fileName, int rowsWritten);
+        void onError(@NonNull Exception e);
+    }
+
+    public interface MatrixCallback extends Callback {
+        void onSessionsScanned(int sessionsScanned, int sessionsMatched);
+    }
+
+    public AttendanceExcelExporter(@NonNull Context context) {
+        this.appContext = context.getApplicationContext();
+    }
+
+    /**
+     * Exports one session; cancel the returned future to stop between rows
+     */
+    public Future<?> exportSession(@NonNull String sessionId, @NonNull Callback callback) {
+        return executor.submit(() -> {
+            try {
+                Result result = writeSessionWorkbook(sessionId, callback);
+                mainHandler.post(() -> callback.onComplete(result.fileName, result.rowsWritten));
+            } catch (Exception e) {
+                Log.e(TAG, "Export failed for " + sessionId, e);
+                mainHandler.post(() -> callback.onError(e));
+            }
+        });
+    }
+
+    /**
+     * Exports every session of a division (and subject, if given) whose start time lies in
+     * [fromMillis, toMillis] as one matrix: students as rows, sessions as columns, plus totals.
+     * Cancel the returned future to stop between pages or rows.
+     */
+    public Future<?> exportMatrix(@NonNull String division, String subject, long fromMillis, long toMillis,
+                                  @NonNull MatrixCallback callback) {
+        return executor.submit(() -> {
+            try {
+                Result result = writeMatrixWorkbook(division, subject, fromMillis, toMillis, callback);
+                mainHandler.post(() -> callback.onComplete(result.fileName, result.rowsWritten));
+            } catch (Exception e) {
+                Log.e(TAG, "Matrix export failed for " + division, e);
+                mainHandler.post(() -> callback.onError(e));
+            }
+        });
+    }
+
+    /**
+     * Stops accepting work; an export in progress is interrupted
+     */
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    static class Result {
+        final String fileName;
+        final int rowsWritten;
+
+        Result(String fileName, int rowsWritten) {
+            this.fileName = fileName;
+            this.rowsWritten = rowsWritten;
+        }
+    }
+
+    private Result writeSessionWorkbook(String sessionId, Callback callback) throws Exception {
+        DataSnapshot sessionSnap = SessionQuery.awaitValue(FirebaseDatabase.getInstance()
+                .getReference("AttendanceReport").child(sessionId));
+        if (!sessionSnap.exists()) {
+            throw new IllegalStateException("Session not found");
+        }
+
+        String division = safeString(sessionSnap.child("division").getValue());
+        Map<String, DivisionRosterCache.Member> roster = loadRoster(division);
+
+        // (enrollment, status) pairs from the session map, or from the roster for sessions without one
+        List<String[]> entries = new ArrayList<>();
+        DataSnapshot sessionStudents = sessionSnap.child("Students").exists()
+                ? sessionSnap.child("Students") : sessionSnap.child("students");
+        if (sessionStudents.exists()) {
+            for (DataSnapshot studentEntry : sessionStudents.getChildren()) {
+                String enrollmentNo = studentEntry.getKey();
+                if (enrollmentNo == null) continue;
+                // support either direct value "P"/"A" or child "attendance_status"
+                String status = studentEntry.getValue() instanceof String
+                        ? (String) studentEntry.getValue()
+                        : safeString(studentEntry.child("attendance_status").getValue());
+                entries.add(new String[]{enrollmentNo, status.isEmpty() ? "A" : status});
+            }
+        } else {
+            Log.d(TAG, "Session has no students map, exporting from roster");
+            for (DivisionRosterCache.Member member : roster.values()) {
+                DataSnapshot entry = SessionQuery.awaitValue(FirebaseDatabase.getInstance().getReference("Students")
+                        .child(member.enrollment).child("Attendance").child(sessionId));
+                String status = entry.exists() ? safeString(StudentAttendance.Entry.fromSnapshot(entry).status) : "";
+                entries.add(new String[]{member.enrollment, status.isEmpty() ? "A" : status});
+            }
+        }
+
+        SXSSFWorkbook workbook = new SXSSFWorkbook(ROW_WINDOW);
+        workbook.setCompressTempFiles(true);
+        try {
+            Sheet sheet = workbook.createSheet("Attendance");
+            sheet.setDefaultColumnWidth(24);
+            int rowNum = 0;
+
+            // 1) Session metadata (ignore the students map and the counters node)
+            for (DataSnapshot kv : sessionSnap.getChildren()) {
+                String key = kv.getKey();
+                if (key == null) continue;
+                String lower = key.toLowerCase(Locale.US);
+                if (lower.equals("students") || key.equals(SessionCounters.NODE)) continue;
+
+                Row r = sheet.createRow(rowNum++);
+                r.createCell(0).setCellValue(key);
+                r.createCell(1).setCellValue(safeString(kv.getValue()));
+            }
+
+            // blank row
+            rowNum++;
+
+            // 2) Header
+            Row header = sheet.createRow(rowNum++);
+            header.createCell(0).setCellValue("Student Enrollment");
+            header.createCell(1).setCellValue("Student Name");
+            header.createCell(2).setCellValue("Student Email");
+            header.createCell(3).setCellValue("Division");
+            header.createCell(4).setCellValue("Attendance");
+
+            // 3) One row per student
+            int written = 0;
+            for (String[] entry : entries) {
+                checkCancelled();
+                String enrollmentNo = entry[0];
+                DivisionRosterCache.Member member = roster.get(enrollmentNo);
+                String name;
+                String email;
+                String studentDivision = division;
+                if (member != null) {
+                    name = safeString(member.name);
+                    email = safeString(member.email);
+                } else {
+                    // Student no longer in this division's roster; read their record directly
+                    DataSnapshot studentSnap = SessionQuery.awaitValue(FirebaseDatabase.getInstance()
+                            .getReference("Students").child(enrollmentNo));
+                    name = safeString(studentSnap.child("student_name").getValue());
+                    email = safeString(studentSnap.child("student_email").getValue());
+                    studentDivision = safeString(studentSnap.child("Division").getValue());
+                }
+
+                Row row = sheet.createRow(rowNum++);
+                row.createCell(0).setCellValue(enrollmentNo);
+                row.createCell(1).setCellValue(name);
+                row.createCell(2).setCellValue(email);
+                row.createCell(3).setCellValue(studentDivision);
+                row.createCell(4).setCellValue(entry[1]);
+
+                written++;
+                if (written % PROGRESS_EVERY_ROWS == 0 || written == entries.size()) {
+                    postProgress(callback, written, entries.size());
+                }
+            }
+
+            return new Result(save(workbook, "AttendanceReport_"), written);
+        } finally {
+            workbook.dispose();
+            workbook.close();
+        }
+    }
+
+    private Result writeMatrixWorkbook(String division, String subject, long fromMillis, long toMillis,
+                                       MatrixCallback callback) throws Exception {
+        // Pass 1: page through sessions by start time. Only one page of session snapshots is held at
+        // a time; what survives a page is one status character per (student, session) cell.
+        List<String> columns = new ArrayList<>();
+        Map<String, StringBuilder> cells = new TreeMap<>();
+        Query byTimestamp = SessionQuery.byStart();
+        Long cursorTimestamp = null;
+        String cursorKey = null;
+        int scanned = 0;
+
+        while (true) {
+            checkCancelled();
+            Query page = cursorKey == null
+                    ? byTimestamp.startAt(fromMillis)
+                    : byTimestamp.startAt(cursorTimestamp, cursorKey);
+            int limit = cursorKey == null ? SESSION_PAGE_SIZE : SESSION_PAGE_SIZE + 1;
+            DataSnapshot pageSnap = SessionQuery.awaitValue(page.endAt(toMillis).limitToFirst(limit));
+
+            int inPage = 0;
+            for (DataSnapshot sessionSnap : pageSnap.getChildren()) {
+                inPage++;
+                if (sessionSnap.getKey() == null || sessionSnap.getKey().equals(cursorKey)) continue;
+                cursorKey = sessionSnap.getKey();
+                cursorTimestamp = sessionSnap.child("timestamp").getValue(Long.class);
+                scanned++;
+
+                if (!division.equals(safeString(sessionSnap.child("division").getValue()))) continue;
+                if (subject != null && !subject.isEmpty()
+                        && !subject.equalsIgnoreCase(safeString(sessionSnap.child("subject").getValue()))) continue;
+
+                int column = columns.size();
+                columns.add(safeString(sessionSnap.child("period_date").getValue()) + " "
+                        + safeString(sessionSnap.child("start_time").getValue()));
+                for (DataSnapshot studentEntry : sessionSnap.child("Students").getChildren()) {
+                    String enrollmentNo = studentEntry.getKey();
+                    if (enrollmentNo == null) continue;
+                    String status = safeString(studentEntry.child("attendance_status").getValue());
+                    StringBuilder row = cells.get(enrollmentNo);
+                    if (row == null) {
+                        row = new StringBuilder();
+                        cells.put(enrollmentNo, row);
+                    }
+                    while (row.length() < column) row.append(NOT_IN_SESSION);
+                    row.append(SessionCounters.PRESENT.equals(SessionCounters.counterFor(status)) ? 'P' : 'A');
+                }
+            }
+
+            int matched = columns.size();
+            int scannedSoFar = scanned;
+            mainHandler.post(() -> callback.onSessionsScanned(scannedSoFar, matched));
+            if (inPage < limit || cursorTimestamp == null) break;
+        }
+
+        Map<String, DivisionRosterCache.Member> roster = loadRoster(division);
+        for (String enrollmentNo : roster.keySet()) {
+            if (!cells.containsKey(enrollmentNo)) cells.put(enrollmentNo, new StringBuilder());
+        }
+
+        // Pass 2: stream one row per student
+        SXSSFWorkbook workbook = new SXSSFWorkbook(ROW_WINDOW);
+        workbook.setCompressTempFiles(true);
+        try {
+            Sheet sheet = workbook.createSheet("Attendance");
+            sheet.setDefaultColumnWidth(14);
+            int rowNum = 0;
+
+            Row info = sheet.createRow(rowNum++);
+            info.createCell(0).setCellValue("division");
+            info.createCell(1).setCellValue(division);
+            info.createCell(2).setCellValue("subject");
+            info.createCell(3).setCellValue(subject != null && !subject.isEmpty() ? subject : "All");
+            info.createCell(4).setCellValue("range");
+            info.createCell(5).setCellValue(SessionTime.format(fromMillis, SessionTime.PERIOD_DATE) + " - "
+                    + SessionTime.format(toMillis, SessionTime.PERIOD_DATE));
+
+            // blank row
+            rowNum++;
+
+            Row header = sheet.createRow(rowNum++);
+            header.createCell(0).setCellValue("Student Enrollment");
+            header.createCell(1).setCellValue("Student Name");
+            for (int c = 0; c < columns.size(); c++) {
+                header.createCell(2 + c).setCellValue(columns.get(c));
+            }
+            header.createCell(2 + columns.size()).setCellValue("Present");
+            header.createCell(3 + columns.size()).setCellValue("Sessions");
+            header.createCell(4 + columns.size()).setCellValue("Percentage");
+            sheet.createFreezePane(2, rowNum);
+
+            int written = 0;
+            for (Map.Entry<String, StringBuilder> entry : cells.entrySet()) {
+                checkCancelled();
+                DivisionRosterCache.Member member = roster.get(entry.getKey());
+                StringBuilder statuses = entry.getValue();
+
+                Row row = sheet.createRow(rowNum++);
+                row.createCell(0).setCellValue(entry.getKey());
+                row.createCell(1).setCellValue(member != null ? safeString(member.name) : "");
+                int present = 0;
+                int enrolled = 0;
+                for (int c = 0; c < columns.size(); c++) {
+                    char code = c < statuses.length() ? statuses.charAt(c) : NOT_IN_SESSION;
+                    if (code == NOT_IN_SESSION) {
+                        row.createCell(2 + c).setCellValue("-");
+                        continue;
+                    }
+                    enrolled++;
+                    if (code == 'P') present++;
+                    row.createCell(2 + c).setCellValue(String.valueOf(code));
+                }
+                row.createCell(2 + columns.size()).setCellValue(present);
+                row.createCell(3 + columns.size()).setCellValue(enrolled);
+                row.createCell(4 + columns.size()).setCellValue(enrolled == 0 ? "N/A"
+                        : String.format(Locale.US, "%.1f%%", present * 100.0 / enrolled));
+
+                written++;
+                if (written % PROGRESS_EVERY_ROWS == 0 || written == cells.size()) {
+                    postProgress(callback, written, cells.size());
+                }
+            }
+
+            return new Result(save(workbook, "AttendanceMatrix_" + division + "_"), written);
+        } finally {
+            workbook.dispose();
+            workbook.close();
+        }
+    }
+
+    /**
+     * Saves the workbook to Downloads via MediaStore and returns the file name
+     */
+    String save(SXSSFWorkbook workbook, String fileNamePrefix) throws IOException {
+        String fileName = fileNamePrefix +
+                new SimpleDateFormat("dd-MM-yyyy_HH-mm", Locale.US).format(new Date()) +
+                ".xlsx";
+
+        ContentValues values = new ContentValues();
+        values.put(MediaStore.MediaColumns.DISPLAY_NAME, fileName);
+        values.put(MediaStore.MediaColumns.MIME_TYPE, MIME_XLSX);
+        values.put(MediaStore.MediaColumns.RELATIVE_PATH, "Download");
+
+        Uri uri = appContext.getContentResolver().insert(MediaStore.Files.getContentUri("external"), values);
+        if (uri == null) {
+            throw new IOException("Error creating file");
+        }
+        try (OutputStream os = appContext.getContentResolver().openOutputStream(uri)) {
+            if (os == null) throw new IOException("Error opening " + uri);
+            workbook.write(os);
+        }
+        return fileName;
+    }
+
+    private Map<String, DivisionRosterCache.Member> loadRoster(String division) throws Exception {
+        Map<String, DivisionRosterCache.Member> byEnrollment = new HashMap<>();
+        if (division.isEmpty()) return byEnrollment;
+
+        TaskCompletionSource<List<DivisionRosterCache.Member>> source = new TaskCompletionSource<>();
+        mainHandler.post(() -> DivisionRosterCache.load(appContext, division, new DivisionRosterCache.RosterCallback() {
+            @Override
+            public void onRosterLoaded(@NonNull List<DivisionRosterCache.Member> members) {
+                source.trySetResult(members);
+            }
+
+            @Override
+            public void onError(@NonNull DatabaseError error) {
+                source.trySetException(error.toException());
+            }
+        }));
+        for (DivisionRosterCache.Member member : SessionQuery.await(source.getTask())) {
+            byEnrollment.put(member.enrollment, member);
+        }
+        return byEnrollment;
+    }
+
+    void postProgress(Callback callback, int rowsWritten, int totalRows) {
+        mainHandler.post(() -> callback.onProgress(rowsWritten, totalRows));
+    }
+
+    static void checkCancelled() {
+        if (Thread.currentThread().isInterrupted()) {
+            throw new CancellationException("Export cancelled");
+        }
+    }
+
+    private static String safeString(Object v) {
+        return v == null ? "" : String.valueOf(v);
+    }
+}
@@ -0,0 +1,115 @@
+package com.example.wifibasedattendanceapplication;
+
+import android.content.Context;
+import android.provider.Settings;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import com.google.firebase.database.DataSnapshot;
+import com.google.firebase.database.DatabaseError;
+import com.google.firebase.database.FirebaseDatabase;
+import com.google.firebase.database.MutableData;
+import com.google.firebase.database.ServerValue;
+import com.google.firebase.database.Transaction;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Builds the single multi-path write that marks a student present.
+ *
+ * Paths written together:
+ *   Students/{enr}/Attendance/{sessionId}/status               = "P"
+ *   AttendanceReport/{sessionId}/Students/{enr}/attendance_status = "Present"
+ *   AttendanceReport/{sessionId}/Students/{enr}/mark_key          = idempotency key
+ *   AttendanceReport/{sessionId}/Students/{enr}/device_marked_at  = device clock at the tap (queued marks)
+ *   AttendanceReport/{sessionId}/Students/{enr}/verification      = network/biometric evidence (queued marks)
+ *
+ * The idempotency key is derived from the session, the student and the device id, so replaying
+ * the same mark (a retry after a dropped connection, a queued replay) writes the same values and
+ * leaves no split state between the two attendance records. marked_at is not part of the write: it
+ * is stamped by {@link #stampMarkedAt} once the mark is acknowledged, and only if it is not set
+ * yet, so a replay keeps the time of the first mark. After the session closes, database.rules.json
+ * only accepts a replay that leaves both statuses as stored, so it cannot undo a faculty edit.
+ */
+public final class AttendanceMark {
+
+    public static final String STATUS_PRESENT = "Present";
+    public static final String MARKED_AT = "marked_at";
+    public static final String MARK_KEY = "mark_key";
+    public static final String DEVICE_MARKED_AT = "device_marked_at";
+    public static final String VERIFICATION = "verification";
+    private static final String TAG = "AttendanceMark";
+
+    private AttendanceMark() { }
+
+    /**
+     * Deterministic key for this device marking this student in this session
+     */
+    public static String markKey(@NonNull Context context, @NonNull String sessionId, @NonNull String enrollment) {
+        String deviceId = Settings.Secure.getString(context.getContentResolver(), Settings.Secure.ANDROID_ID);
+        return markKey(sessionId, enrollment, deviceId != null ? deviceId : "unknown");
+    }
+
+    public static String markKey(@NonNull String sessionId, @NonNull String enrollment, @NonNull String deviceId) {
+        String seed = sessionId + "|" + enrollment + "|" + deviceId;
+        return UUID.nameUUIDFromBytes(seed.getBytes(StandardCharsets.UTF_8)).toString();
+    }
+
+    /**
+     * Root-relative update map for marking a student present
+     */
+    public static Map<String, Object> buildPresentUpdates(@NonNull String sessionId, @NonNull String enrollment,
+                                                          @NonNull String markKey) {
+        String sessionStudentPath = "AttendanceReport/" + sessionId + "/Students/" + enrollment;
+        Map<String, Object> updates = new HashMap<>();
+        // Only the status leaf: the entry's subject/date written at roster init stay in place
+        updates.put(StudentAttendance.statusPath(enrollment, sessionId), StudentAttendance.CODE_PRESENT);
+        updates.put(sessionStudentPath + "/attendance_status", STATUS_PRESENT);
+        updates.put(sessionStudentPath + "/" + MARK_KEY, markKey);
+        return updates;
+    }
+
+    /**
+     * Same update plus the device-side time and verification evidence recorded when the mark was queued
+     */
+    public static Map<String, Object> buildPresentUpdates(@NonNull String sessionId, @NonNull String enrollment,
+                                                          @NonNull String markKey, long deviceMarkedAt,
+                                                          Map<String, Object> verification) {
+        String sessionStudentPath = "AttendanceReport/" + sessionId + "/Students/" + enrollment;
+        Map<String, Object> updates = buildPresentUpdates(sessionId, enrollment, markKey);
+        updates.put(sessionStudentPath + "/" + DEVICE_MARKED_AT, deviceMarkedAt);
+        if (verification != null && !verification.isEmpty()) {
+            updates.put(sessionStudentPath + "/" + VERIFICATION, verification);
+        }
+        return updates;
+    }
+
+    /**
+     * Sets marked_at to the server time unless an earlier delivery of the mark already did
+     */
+    public static void stampMarkedAt(@NonNull String sessionId, @NonNull String enrollment) {
+        FirebaseDatabase.getInstance().getReference("AttendanceReport").child(sessionId)
+                .child("Students").child(enrollment).child(MARKED_AT)
+                .runTransaction(new Transaction.Handler() {
+                    @NonNull
+                    @Override
+                    public Transaction.Result doTransaction(@NonNull MutableData current) {
+                        // Null is also what an empty local cache shows; the server reruns this if it was set
+                        if (current.getValue() != null) return Transaction.abort();
+                        current.setValue(ServerValue.TIMESTAMP);
+                        return Transaction.success(current);
+                    }
+
+                    @Override
+                    public void onComplete(DatabaseError error, boolean committed, DataSnapshot snapshot) {
+                        if (error != null) {
+                            Log.w(TAG, "Could not stamp marked_at for " + enrollment + ": " + error.getMessage());
+                        }
+                    }
+                });
+    }
+}
@@ -6,6 +6,7 @@ import android.util.Log;
 import android.view.View;
 import android.widget.ProgressBar;
 import android.widget.TextView;
+import android.widget.Toast;
 
 import androidx.annotation.NonNull;
 import androidx.appcompat.app.AppCompatActivity;
@@ -13,17 +14,11 @@ import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.google.firebase.auth.FirebaseAuth;
-import com.google.firebase.database.DataSnapshot;
 import com.google.firebase.database.DatabaseError;
-import com.google.firebase.database.DatabaseReference;
-import com.google.firebase.database.FirebaseDatabase;
-import com.google.firebase.database.ValueEventListener;
 
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
-import java.util.Map;
 
 public class AttendanceOverviewActivity extends AppCompatActivity {
 
@@ -35,8 +30,6 @@ public class AttendanceOverviewActivity extends AppCompatActivity {
 	private ProgressBar progressBar;
 
 	private String currentStudentEnrollment;
-	private DatabaseReference studentsRef;
-	private DatabaseReference reportsRef;
 
 	@Override
 	protected void onCreate(Bundle savedInstanceState) {
@@ -55,10 +48,14 @@ public class AttendanceOverviewActivity extends AppCompatActivity {
 
 		recyclerView.setLayoutManager(new LinearLayoutManager(this));
 
-		studentsRef = FirebaseDatabase.getInstance().getReference("Students");
-		reportsRef = FirebaseDatabase.getInstance().getReference("AttendanceReport");
-
 		findViewById(R.id.btn_back).setOnClickListener(v -> onBackPressed());
+		// Long-press recomputes the totals from the full attendance history
+		if (donutView != null) {
+			donutView.setOnLongClickListener(v -> {
+				rebuildSummary();
+				return true;
+			});
+		}
 	}
 
 	private void resolveCurrentStudent() {
@@ -69,117 +66,50 @@ public class AttendanceOverviewActivity extends AppCompatActivity {
 			return;
 		}
 
-		studentsRef.orderByChild("student_email").equalTo(userEmail)
-				.addListenerForSingleValueEvent(new ValueEventListener() {
-					@Override
-					public void onDataChange(@NonNull DataSnapshot ds) {
-						for (DataSnapshot snap : ds.getChildren()) {
-							currentStudentEnrollment = snap.getKey();
-							String name = snap.child("student_name").getValue(String.class);
-							tvGreetingName.setText(name != null ? name.toUpperCase(Locale.getDefault()) : "STUDENT");
-							loadAttendanceBreakdown();
-							return;
-						}
-						finish();
-					}
-
-					@Override
-					public void onCancelled(@NonNull DatabaseError error) { finish(); }
-				});
+		progressBar.setVisibility(View.VISIBLE);
+		// Name and rolling per-subject totals from the shared session cache
+		StudentSessionCache.get(this).load(this, new StudentSessionCache.Callback() {
+			@Override
+			public void onReady(@NonNull StudentSessionCache.Snapshot snapshot) {
+				currentStudentEnrollment = snapshot.enrollment;
+				String name = snapshot.profile.name;
+				tvGreetingName.setText(name != null ? name.toUpperCase(Locale.getDefault()) : "STUDENT");
+				showSummary(snapshot.attendance);
+			}
+
+			@Override
+			public void onNotFound() { finish(); }
+
+			@Override
+			public void onError(@NonNull DatabaseError error) { finish(); }
+		});
 	}
 
-	private void loadAttendanceBreakdown() {
+	private void rebuildSummary() {
 		if (currentStudentEnrollment == null) return;
 		progressBar.setVisibility(View.VISIBLE);
-
-		// 1) Read student's session codes (P/A)
-		studentsRef.child(currentStudentEnrollment).child("Attendance")
-				.addListenerForSingleValueEvent(new ValueEventListener() {
-					@Override
-					public void onDataChange(@NonNull DataSnapshot attendanceSnap) {
-						if (!attendanceSnap.exists()) {
-							showData(new ArrayList<>(), 0, 0);
-							return;
-						}
-
-						// Aggregate per subject
-						Map<String, int[]> subjectToCounts = new HashMap<>(); // [present, total]
-
-						final int[] totals = new int[]{0};
-						final int[] presents = new int[]{0};
-
-						List<String> sessionIds = new ArrayList<>();
-						for (DataSnapshot s : attendanceSnap.getChildren()) {
-							sessionIds.add(s.getKey());
-						}
-
-						if (sessionIds.isEmpty()) { showData(new ArrayList<>(), 0, 0); return; }
-
-						final int totalToFetch = sessionIds.size();
-						final int[] fetched = new int[]{0};
-
-						for (DataSnapshot s : attendanceSnap.getChildren()) {
-							String sessionId = s.getKey();
-							String code = s.getValue(String.class); // P/A
-
-							reportsRef.child(sessionId).child("subject")
-									.addListenerForSingleValueEvent(new ValueEventListener() {
-										@Override
-										public void onDataChange(@NonNull DataSnapshot subjectSnap) {
-											String subject = subjectSnap.getValue(String.class);
-											
-											// Skip sessions with missing or empty subject data
-											if (subject == null || subject.isEmpty()) {
-												fetched[0] += 1;
-												if (fetched[0] == totalToFetch) {
-													showData(buildRows(subjectToCounts), presents[0], totals[0]);
-												}
-												return;
-											}
-
-											int[] counts = subjectToCounts.get(subject);
-											if (counts == null) { counts = new int[]{0,0}; subjectToCounts.put(subject, counts); }
-											counts[1] += 1; // total per subject
-											totals[0] += 1;
-											if ("P".equalsIgnoreCase(code) || "Present".equalsIgnoreCase(code)) {
-												counts[0] += 1;
-												presents[0] += 1;
-											}
-
-											fetched[0] += 1;
-											if (fetched[0] == totalToFetch) {
-												showData(buildRows(subjectToCounts), presents[0], totals[0]);
-											}
-										}
-
-										@Override
-										public void onCancelled(@NonNull DatabaseError error) {
-											fetched[0] += 1;
-											if (fetched[0] == totalToFetch) {
-												showData(buildRows(subjectToCounts), presents[0], totals[0]);
-											}
-										}
-									});
-						}
-					}
-
-					@Override
-					public void onCancelled(@NonNull DatabaseError error) {
-						showData(new ArrayList<>(), 0, 0);
-					}
-				});
+		AttendanceSummary.rebuild(currentStudentEnrollment, new AttendanceSummary.SummaryCallback() {
+			@Override
+			public void onSummary(@NonNull AttendanceSummary.Summary summary) {
+				showSummary(summary);
+				Toast.makeText(AttendanceOverviewActivity.this, "Attendance totals recalculated", Toast.LENGTH_SHORT).show();
+			}
+
+			@Override
+			public void onError(@NonNull DatabaseError error) {
+				progressBar.setVisibility(View.GONE);
+				Toast.makeText(AttendanceOverviewActivity.this, "Could not recalculate attendance", Toast.LENGTH_SHORT).show();
+			}
+		});
 	}
 
-    private List<SubjectRow> buildRows(Map<String, int[]> map) {
+	private void showSummary(AttendanceSummary.Summary summary) {
 		List<SubjectRow> rows = new ArrayList<>();
-		for (Map.Entry<String, int[]> e : map.entrySet()) {
-			String subject = e.getKey();
-            int present = e.getValue()[0];
-            int total = e.getValue()[1];
-            double pct = total == 0 ? 0.0 : (present * 100.0 / total);
-            rows.add(new SubjectRow(subject, total, present, (int)Math.round(pct)));
+		for (AttendanceSummary.Tally tally : summary.subjects) {
+			if (tally.total == 0) continue;
+			rows.add(new SubjectRow(tally.subject, (int) tally.total, (int) tally.present, (int) Math.round(tally.percentage())));
 		}
-		return rows;
+		showData(rows, (int) summary.overall.present, (int) summary.overall.total);
 	}
 
 	private void showData(List<SubjectRow> rows, int present, int total) {
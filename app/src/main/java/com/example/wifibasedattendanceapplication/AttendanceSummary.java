@@ -0,0 +1,365 @@
+package com.example.wifibasedattendanceapplication;
+
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import com.google.firebase.database.DataSnapshot;
+import com.google.firebase.database.DatabaseError;
+import com.google.firebase.database.DatabaseReference;
+import com.google.firebase.database.FirebaseDatabase;
+import com.google.firebase.database.MutableData;
+import com.google.firebase.database.Transaction;
+import com.google.firebase.database.ValueEventListener;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Rolling per-student attendance totals, so percentages are one small read.
+ *
+ * Layout: Students/{enr}/AttendanceSummary = {
+ *     overall:  { present, total },
+ *     subjects: { {subjectKey}: { subject, present, total } }
+ * }
+ *
+ * A session enters the totals once per student. Each attendance entry records what it has
+ * contributed in a "counted" leaf ("P" or "A"), claimed with a transaction on that entry, and only
+ * the caller that moves the marker applies the delta to the summary. The marking path counts "P";
+ * the session-end paths count every roster member from their entry's own status, which also
+ * catches marks whose own update was lost. {@link #rebuild} recomputes everything from the entries, in a transaction with the
+ * markers, and runs automatically when the node does not exist yet.
+ */
+public final class AttendanceSummary {
+
+    public static final String NODE = "AttendanceSummary";
+    public static final String OVERALL = "overall";
+    public static final String SUBJECTS = "subjects";
+    public static final String SUBJECT = "subject";
+    public static final String PRESENT = "present";
+    public static final String TOTAL = "total";
+    static final String COUNTED = "counted";
+    private static final String TAG = "AttendanceSummary";
+
+    public static class Tally {
+        public final String subject;
+        public final long present;
+        public final long total;
+
+        public Tally(String subject, long present, long total) {
+            this.subject = subject;
+            this.present = present;
+            this.total = total;
+        }
+
+        public double percentage() {
+            return total == 0 ? 0.0 : present * 100.0 / total;
+        }
+
+        static Tally fromSnapshot(String subject, DataSnapshot snapshot) {
+            Long present = snapshot.child(PRESENT).getValue(Long.class);
+            Long total = snapshot.child(TOTAL).getValue(Long.class);
+            return new Tally(subject, present != null ? present : 0L, total != null ? total : 0L);
+        }
+    }
+
+    public static class Summary {
+        public final Tally overall;
+        public final List<Tally> subjects;
+
+        Summary(Tally overall, List<Tally> subjects) {
+            this.overall = overall;
+            this.subjects = subjects;
+        }
+
+        static Summary fromSnapshot(DataSnapshot snapshot) {
+            List<Tally> subjects = new ArrayList<>();
+            for (DataSnapshot subject : snapshot.child(SUBJECTS).getChildren()) {
+                String name = subject.child(SUBJECT).getValue(String.class);
+                subjects.add(Tally.fromSnapshot(name != null ? name : subject.getKey(), subject));
+            }
+            return new Summary(Tally.fromSnapshot(null, snapshot.child(OVERALL)), subjects);
+        }
+    }
+
+    public interface SummaryCallback {
+        void onSummary(@NonNull Summary summary);
+        void onError(@NonNull DatabaseError error);
+    }
+
+    private AttendanceSummary() { }
+
+    private static DatabaseReference summaryRef(String enrollment) {
+        return FirebaseDatabase.getInstance().getReference("Students").child(enrollment).child(NODE);
+    }
+
+    /**
+     * Subject names become keys; characters Firebase does not allow in keys are replaced
+     */
+    static String subjectKey(@NonNull String subject) {
+        return subject.replaceAll("[.#$\\[\\]/]", "_");
+    }
+
+    /**
+     * One read of the summary, rebuilt from the student's entries first if it does not exist
+     */
+    public static void load(@NonNull String enrollment, @NonNull SummaryCallback callback) {
+        summaryRef(enrollment).addListenerForSingleValueEvent(new ValueEventListener() {
+            @Override
+            public void onDataChange(@NonNull DataSnapshot snapshot) {
+                if (snapshot.exists()) {
+                    callback.onSummary(Summary.fromSnapshot(snapshot));
+                } else {
+                    rebuild(enrollment, callback);
+                }
+            }
+
+            @Override
+            public void onCancelled(@NonNull DatabaseError error) {
+                Log.e(TAG, "Summary read failed for " + enrollment + ": " + error.getMessage());
+                callback.onError(error);
+            }
+        });
+    }
+
+    /**
+     * Recomputes the summary from Students/{enr}/Attendance and re-stamps every entry's counted
+     * marker. The entries are read first to complete legacy ones; the recount itself runs as one
+     * transaction on the student node, so a {@link #count} committing meanwhile either makes it
+     * recount (and is included) or finds its marker already stamped (and applies nothing).
+     */
+    public static void rebuild(@NonNull String enrollment, @NonNull SummaryCallback callback) {
+        StudentAttendance.load(enrollment, new StudentAttendance.LoadCallback() {
+            @Override
+            public void onLoaded(@NonNull List<StudentAttendance.Entry> entries) {
+                // Session details never change, so the ones read for legacy entries hold inside the transaction
+                Map<String, StudentAttendance.SessionDetails> details = new HashMap<>();
+                for (StudentAttendance.Entry entry : entries) {
+                    if (entry.hasSubject()) {
+                        details.put(entry.sessionId, new StudentAttendance.SessionDetails(entry.subject,
+                                entry.periodDate, entry.startMs, entry.dayKey));
+                    }
+                }
+                recount(enrollment, details, callback);
+            }
+
+            @Override
+            public void onError(@NonNull DatabaseError error) {
+                callback.onError(error);
+            }
+        });
+    }
+
+    private static void recount(String enrollment, Map<String, StudentAttendance.SessionDetails> details,
+                                SummaryCallback callback) {
+        FirebaseDatabase.getInstance().getReference("Students").child(enrollment)
+                .runTransaction(new Transaction.Handler() {
+                    @NonNull
+                    @Override
+                    public Transaction.Result doTransaction(@NonNull MutableData current) {
+                        if (current.getValue() == null) {
+                            // Nothing cached locally yet: let the server answer with the real value
+                            return Transaction.success(current);
+                        }
+                        long present = 0;
+                        long total = 0;
+                        Map<String, long[]> bySubject = new HashMap<>(); // subject -> [present, total]
+                        for (MutableData entry : current.child("Attendance").getChildren()) {
+                            Object raw = entry.getValue();
+                            String status;
+                            String subject;
+                            if (raw instanceof String) {
+                                StudentAttendance.SessionDetails session = details.get(entry.getKey());
+                                if (session == null) continue; // details unknown; counted once migrated
+                                status = (String) raw;
+                                subject = session.subject;
+                                // Still a bare string on the server: write the whole entry with the marker
+                                entry.setValue(StudentAttendance.entryValue(status, session));
+                            } else {
+                                status = entry.child(StudentAttendance.STATUS).getValue(String.class);
+                                subject = entry.child(StudentAttendance.SUBJECT).getValue(String.class);
+                            }
+                            if (subject == null || subject.isEmpty()) continue;
+
+                            boolean isPresent = StudentAttendance.isPresentCode(status);
+                            long[] counts = bySubject.get(subject);
+                            if (counts == null) {
+                                counts = new long[]{0, 0};
+                                bySubject.put(subject, counts);
+                            }
+                            counts[1]++;
+                            total++;
+                            if (isPresent) {
+                                counts[0]++;
+                                present++;
+                            }
+                            entry.child(COUNTED).setValue(isPresent
+                                    ? StudentAttendance.CODE_PRESENT : StudentAttendance.CODE_ABSENT);
+                        }
+
+                        Map<String, Object> subjectValues = new HashMap<>();
+                        for (Map.Entry<String, long[]> e : bySubject.entrySet()) {
+                            Map<String, Object> value = new HashMap<>();
+                            value.put(SUBJECT, e.getKey());
+                            value.put(PRESENT, e.getValue()[0]);
+                            value.put(TOTAL, e.getValue()[1]);
+                            subjectValues.put(subjectKey(e.getKey()), value);
+                        }
+                        Map<String, Object> overall = new HashMap<>();
+                        overall.put(PRESENT, present);
+                        overall.put(TOTAL, total);
+                        Map<String, Object> summary = new HashMap<>();
+                        summary.put(OVERALL, overall);
+                        summary.put(SUBJECTS, subjectValues);
+                        current.child(NODE).setValue(summary);
+                        return Transaction.success(current);
+                    }
+
+                    @Override
+                    public void onComplete(DatabaseError error, boolean committed, DataSnapshot snapshot) {
+                        if (error != null) {
+                            Log.e(TAG, "Summary rebuild failed for " + enrollment + ": " + error.getMessage());
+                            callback.onError(error);
+                            return;
+                        }
+                        Summary summary = Summary.fromSnapshot(snapshot.child(NODE));
+                        Log.d(TAG, "Rebuilt summary for " + enrollment + ": " + summary.overall.present + "/"
+                                + summary.overall.total + " over " + summary.subjects.size() + " subjects");
+                        callback.onSummary(summary);
+                    }
+                });
+    }
+
+    /**
+     * Counts one session for one student as "P" or "A". A no-op if the entry already counts as that;
+     * an "A" already counted that turns into "P" (late mark) moves one session from absent to present.
+     */
+    public static void count(@NonNull String enrollment, @NonNull String sessionId, @NonNull String code) {
+        claim(enrollment, sessionId, code);
+    }
+
+    /**
+     * Counts one session for one student from the entry's own status, the same source {@link #rebuild} uses
+     */
+    public static void countEntry(@NonNull String enrollment, @NonNull String sessionId) {
+        claim(enrollment, sessionId, null);
+    }
+
+    // code null: whatever the entry's status says when the transaction runs
+    private static void claim(String enrollment, String sessionId, String code) {
+        final String[] claimed = new String[3]; // [previous counted marker, subject, code]
+        FirebaseDatabase.getInstance().getReference().child(StudentAttendance.entryPath(enrollment, sessionId))
+                .runTransaction(new Transaction.Handler() {
+                    @NonNull
+                    @Override
+                    public Transaction.Result doTransaction(@NonNull MutableData current) {
+                        Object raw = current.getValue();
+                        if (raw == null) {
+                            // Nothing cached locally yet: let the server answer with the real value
+                            claimed[1] = null;
+                            return Transaction.success(current);
+                        }
+                        String subject = current.child(StudentAttendance.SUBJECT).getValue(String.class);
+                        String previous = current.child(COUNTED).getValue(String.class);
+                        // Legacy string entries and entries without a subject are left to rebuild()
+                        if (raw instanceof String || subject == null || subject.isEmpty()) {
+                            return Transaction.abort();
+                        }
+                        String next = code;
+                        if (next == null) {
+                            String status = current.child(StudentAttendance.STATUS).getValue(String.class);
+                            if (status == null) return Transaction.abort();
+                            next = StudentAttendance.isPresentCode(status)
+                                    ? StudentAttendance.CODE_PRESENT : StudentAttendance.CODE_ABSENT;
+                        }
+                        if (next.equals(previous)) return Transaction.abort();
+                        claimed[0] = previous;
+                        claimed[1] = subject;
+                        claimed[2] = next;
+                        current.child(COUNTED).setValue(next);
+                        return Transaction.success(current);
+                    }
+
+                    @Override
+                    public void onComplete(DatabaseError error, boolean committed, DataSnapshot snapshot) {
+                        if (error != null) {
+                            Log.e(TAG, "Count claim failed for " + enrollment + "/" + sessionId + ": " + error.getMessage());
+                            return;
+                        }
+                        if (!committed || claimed[1] == null) return;
+                        boolean present = StudentAttendance.CODE_PRESENT.equals(claimed[2]);
+                        if (claimed[0] == null) {
+                            applyDeltas(enrollment, claimed[1], present ? 1 : 0, 1);
+                        } else {
+                            applyDeltas(enrollment, claimed[1], present ? 1 : -1, 0);
+                        }
+                    }
+                });
+    }
+
+    /**
+     * Session end: counts every roster member of the session from their own entry's status. The
+     * session's Students map only says who is on the roster; its attendance_status can lag the
+     * student's record, which is what {@link #rebuild} counts.
+     */
+    public static void countSession(@NonNull String sessionId) {
+        FirebaseDatabase.getInstance().getReference("AttendanceReport").child(sessionId).child("Students")
+                .addListenerForSingleValueEvent(new ValueEventListener() {
+                    @Override
+                    public void onDataChange(@NonNull DataSnapshot students) {
+                        int counted = 0;
+                        for (DataSnapshot student : students.getChildren()) {
+                            String enrollment = student.getKey();
+                            if (enrollment == null) continue;
+                            countEntry(enrollment, sessionId);
+                            counted++;
+                        }
+                        Log.d(TAG, "Counting " + counted + " students for ended session " + sessionId);
+                    }
+
+                    @Override
+                    public void onCancelled(@NonNull DatabaseError error) {
+                        Log.e(TAG, "Could not count session " + sessionId + ": " + error.getMessage());
+                    }
+                });
+    }
+
+    private static void applyDeltas(String enrollment, String subject, long presentDelta, long totalDelta) {
+        String key = subjectKey(subject);
+        summaryRef(enrollment).runTransaction(new Transaction.Handler() {
+            @NonNull
+            @Override
+            public Transaction.Result doTransaction(@NonNull MutableData current) {
+                if (current.getValue() == null) {
+                    // Nothing cached locally yet: let the server answer with the real value
+                    return Transaction.success(current);
+                }
+                add(current.child(OVERALL), presentDelta, totalDelta);
+                MutableData subjectData = current.child(SUBJECTS).child(key);
+                subjectData.child(SUBJECT).setValue(subject);
+                add(subjectData, presentDelta, totalDelta);
+                return Transaction.success(current);
+            }
+
+            @Override
+            public void onComplete(DatabaseError error, boolean committed, DataSnapshot snapshot) {
+                if (error != null) {
+                    Log.e(TAG, "Summary update failed for " + enrollment + ": " + error.getMessage());
+                } else if (committed && !snapshot.exists()) {
+                    // No summary on the server either. The marker stays claimed: the rebuild on the
+                    // next load recounts every entry, this one included, and re-stamps the markers.
+                    Log.d(TAG, "No summary for " + enrollment + " yet, left to the rebuild");
+                }
+            }
+        });
+    }
+
+    private static void add(MutableData tally, long presentDelta, long totalDelta) {
+        Long present = tally.child(PRESENT).getValue(Long.class);
+        Long total = tally.child(TOTAL).getValue(Long.class);
+        tally.child(PRESENT).setValue(Math.max(0L, (present != null ? present : 0L) + presentDelta));
+        tally.child(TOTAL).setValue(Math.max(0L, (total != null ? total : 0L) + totalDelta));
+    }
+}
@@ -24,6 +24,8 @@ public abstract class BaseAuthenticatedActivity extends AppCompatActivity {
     protected FirebaseUser currentUser;
     private static final String TAG = "BaseAuthenticated";
     private boolean isCheckingAuth = false;
+    // Firebase listeners of this screen; detached on stop so none outlive the visible activity
+    protected final ListenerRegistry listeners = new ListenerRegistry(getClass().getSimpleName());
     
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -39,9 +41,22 @@ public abstract class BaseAuthenticatedActivity extends AppCompatActivity {
     @Override
     protected void onStart() {
         super.onStart();
+        listeners.attachAll();
         // Don't check authentication in onStart - it's too aggressive
         // Let activities check when they actually need it
     }
+
+    @Override
+    protected void onStop() {
+        super.onStop();
+        listeners.detachAll();
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        listeners.clear();
+    }
     
     /**
      * Check if user is authenticated, redirect to login if not
@@ -82,6 +97,7 @@ public abstract class BaseAuthenticatedActivity extends AppCompatActivity {
      * Sign out current user
      */
     protected void signOut() {
+        StudentIdentityResolver.clear(this);
         mAuth.signOut();
         redirectToLogin();
     }
@@ -109,7 +109,7 @@ public class ChatActivity extends AppCompatActivity implements ChatRepository.Ch
         }
         
         try {
-            chatRepository = new ChatRepository(ChatConfig.getApiKey());
+            chatRepository = new ChatRepository(this, ChatConfig.getApiKey());
             chatRepository.initializeContext(this);
             isInitialized = true;
         } catch (Exception e) {
@@ -14,12 +14,6 @@ import androidx.cardview.widget.CardView;
 import com.google.firebase.auth.FirebaseAuth;
 import com.google.firebase.database.DataSnapshot;
 import com.google.firebase.database.DatabaseError;
-import com.google.firebase.database.DatabaseReference;
-import com.google.firebase.database.FirebaseDatabase;
-import com.google.firebase.database.ValueEventListener;
-
-import java.util.ArrayList;
-import java.util.List;
 
 public class DashboardActivity extends BaseAuthenticatedActivity {
 
@@ -28,7 +22,6 @@ public class DashboardActivity extends BaseAuthenticatedActivity {
                      cardAiAssistant, cardLogout;
     
     private String currentStudentEnrollment;
-    private DatabaseReference studentsRef;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -43,10 +36,9 @@ public class DashboardActivity extends BaseAuthenticatedActivity {
     @Override
     protected void onResume() {
         super.onResume();
-        // Refresh attendance and fees data when activity resumes
+        // Refresh attendance and fees data when activity resumes (live values from the cache)
         if (currentStudentEnrollment != null) {
-            calculateAttendancePercentage();
-            loadFeesStatus();
+            loadFromSessionCache();
         }
     }
 
@@ -57,9 +49,6 @@ public class DashboardActivity extends BaseAuthenticatedActivity {
         tvAcademicYear = findViewById(R.id.tv_academic_year);
         tvAttendancePercentage = findViewById(R.id.tv_attendance_percentage);
         tvFeesStatus = findViewById(R.id.tv_fees_status);
-        
-        // Initialize Firebase reference
-        studentsRef = FirebaseDatabase.getInstance().getReference("Students");
 
         // Card views
         cardAttendance = findViewById(R.id.card_attendance);
@@ -119,51 +108,48 @@ public class DashboardActivity extends BaseAuthenticatedActivity {
             return;
         }
         
-        Log.d("Dashboard", "Searching for student with email: " + userEmail);
-        
-        // Search for student enrollment in Firebase
-        studentsRef.orderByChild("student_email").equalTo(userEmail)
-            .addListenerForSingleValueEvent(new ValueEventListener() {
-                @Override
-                public void onDataChange(@NonNull DataSnapshot dataSnapshot) {
-                    if (dataSnapshot.exists()) {
-                        for (DataSnapshot studentSnapshot : dataSnapshot.getChildren()) {
-                            currentStudentEnrollment = studentSnapshot.getKey();
-                            Log.d("Dashboard", "Found student enrollment: " + currentStudentEnrollment);
-                            
-                            // Load student data and calculate attendance
-                            loadStudentData(studentSnapshot);
-                            calculateAttendancePercentage();
-                            loadFeesStatus();
-                            break; // Get the first match
-                        }
-                    } else {
-                        Log.e("Dashboard", "No student found with email: " + userEmail);
-                        loadDefaultUserData();
-                    }
-                }
+        loadFromSessionCache();
+    }
+    
+    /**
+     * Profile, attendance and fees from the shared cache; answered from memory after the first load
+     */
+    private void loadFromSessionCache() {
+        StudentSessionCache.get(this).load(this, new StudentSessionCache.Callback() {
+            @Override
+            public void onReady(@NonNull StudentSessionCache.Snapshot snapshot) {
+                currentStudentEnrollment = snapshot.enrollment;
+                Log.d("Dashboard", "Found student enrollment: " + currentStudentEnrollment);
+                
+                loadStudentData(snapshot.profile);
+                showAttendancePercentage(snapshot.attendance);
+                showFeesStatus(snapshot.fees);
+            }
 
-                @Override
-                public void onCancelled(@NonNull DatabaseError error) {
-                    Log.e("Dashboard", "Error searching for student: " + error.getMessage());
-                    loadDefaultUserData();
-                }
-            });
+            @Override
+            public void onNotFound() {
+                Log.e("Dashboard", "No student found for the signed-in user");
+                loadDefaultUserData();
+            }
+
+            @Override
+            public void onError(@NonNull DatabaseError error) {
+                Log.e("Dashboard", "Error loading student data: " + error.getMessage());
+                loadDefaultUserData();
+            }
+        });
     }
     
-    private void loadStudentData(DataSnapshot studentSnapshot) {
-        String studentName = studentSnapshot.child("student_name").getValue(String.class);
-        String division = studentSnapshot.child("Division").getValue(String.class);
-        
+    private void loadStudentData(StudentSessionCache.Profile profile) {
         // Update UI with real student data
-        if (studentName != null) {
-            tvGreeting.setText("Hi " + studentName);
+        if (profile.name != null) {
+            tvGreeting.setText("Hi " + profile.name);
         } else {
             tvGreeting.setText("Hi Student");
         }
         
-        if (division != null) {
-            tvStudentDetails.setText("Division " + division);
+        if (profile.division != null) {
+            tvStudentDetails.setText("Division " + profile.division);
         } else {
             tvStudentDetails.setText("Student Details");
         }
@@ -184,169 +170,40 @@ public class DashboardActivity extends BaseAuthenticatedActivity {
         tvFeesStatus.setText("N/A");
     }
     
-    private void calculateAttendancePercentage() {
-        if (currentStudentEnrollment == null) {
-            Log.e("Dashboard", "Student enrollment not available");
-            tvAttendancePercentage.setText("N/A");
-            return;
-        }
-        
-        Log.d("Dashboard", "Calculating attendance for student: " + currentStudentEnrollment);
+    private void showAttendancePercentage(AttendanceSummary.Summary summary) {
+        // Rolling totals kept by the marking and session-end paths
+        String percentageText = String.format("%.2f %%", summary.overall.percentage());
+        tvAttendancePercentage.setText(percentageText);
         
-        // Get student's attendance records
-        DatabaseReference studentAttendanceRef = studentsRef
-            .child(currentStudentEnrollment)
-            .child("Attendance");
-            
-        studentAttendanceRef.addListenerForSingleValueEvent(new ValueEventListener() {
-            @Override
-            public void onDataChange(@NonNull DataSnapshot dataSnapshot) {
-                if (dataSnapshot.exists()) {
-                    final int[] totalSessions = {0};
-                    final int[] presentSessions = {0};
-                    
-                    Log.d("Dashboard", "Found " + dataSnapshot.getChildrenCount() + " attendance records");
-                    
-                    // Get all session IDs first
-                    List<String> sessionIds = new ArrayList<>();
-                    for (DataSnapshot sessionSnapshot : dataSnapshot.getChildren()) {
-                        sessionIds.add(sessionSnapshot.getKey());
-                    }
-                    
-                    if (sessionIds.isEmpty()) {
-                        tvAttendancePercentage.setText("0.00 %");
-                        return;
-                    }
-                    
-                    final int totalToFetch = sessionIds.size();
-                    final int[] fetched = new int[]{0};
-                    
-                    // Process each session to check if it has valid subject data
-                    for (DataSnapshot sessionSnapshot : dataSnapshot.getChildren()) {
-                        String sessionId = sessionSnapshot.getKey();
-                        String attendanceStatus = sessionSnapshot.getValue(String.class);
-                        
-                        // Check if this session has valid subject data
-                        DatabaseReference reportsRef = FirebaseDatabase.getInstance().getReference("AttendanceReport");
-                        reportsRef.child(sessionId).child("subject")
-                            .addListenerForSingleValueEvent(new ValueEventListener() {
-                                @Override
-                                public void onDataChange(@NonNull DataSnapshot subjectSnap) {
-                                    String subject = subjectSnap.getValue(String.class);
-                                    
-                                    // Only count sessions with valid subject data
-                                    if (subject != null && !subject.isEmpty()) {
-                                        totalSessions[0]++;
-                                        
-                                        Log.d("Dashboard", "Session " + sessionId + ": " + attendanceStatus + " (Subject: " + subject + ")");
-                                        
-                                        if ("P".equalsIgnoreCase(attendanceStatus) || "Present".equalsIgnoreCase(attendanceStatus)) {
-                                            presentSessions[0]++;
-                                        }
-                                    }
-                                    
-                                    fetched[0] += 1;
-                                    if (fetched[0] == totalToFetch) {
-                                        // Calculate percentage
-                                        double percentage = 0.0;
-                                        if (totalSessions[0] > 0) {
-                                            percentage = (double) presentSessions[0] / totalSessions[0] * 100;
-                                        }
-                                        
-                                        // Update UI with calculated percentage
-                                        String percentageText = String.format("%.2f %%", percentage);
-                                        tvAttendancePercentage.setText(percentageText);
-                                        
-                                        Log.d("Dashboard", "Final calculation: " + presentSessions[0] + " present out of " + totalSessions[0] + " total = " + percentageText);
-                                    }
-                                }
-
-                                @Override
-                                public void onCancelled(@NonNull DatabaseError error) {
-                                    fetched[0] += 1;
-                                    if (fetched[0] == totalToFetch) {
-                                        // Calculate percentage
-                                        double percentage = 0.0;
-                                        if (totalSessions[0] > 0) {
-                                            percentage = (double) presentSessions[0] / totalSessions[0] * 100;
-                                        }
-                                        
-                                        // Update UI with calculated percentage
-                                        String percentageText = String.format("%.2f %%", percentage);
-                                        tvAttendancePercentage.setText(percentageText);
-                                        
-                                        Log.d("Dashboard", "Final calculation: " + presentSessions[0] + " present out of " + totalSessions[0] + " total = " + percentageText);
-                                    }
-                                }
-                            });
-                    }
-                } else {
-                    Log.d("Dashboard", "No attendance records found for student: " + currentStudentEnrollment);
-                    tvAttendancePercentage.setText("0.00 %");
-                }
-            }
-
-            @Override
-            public void onCancelled(@NonNull DatabaseError error) {
-                Log.e("Dashboard", "Error calculating attendance: " + error.getMessage());
-                tvAttendancePercentage.setText("Error");
-            }
-        });
+        Log.d("Dashboard", "Attendance: " + summary.overall.present + " present out of " + summary.overall.total + " total = " + percentageText);
     }
 
-    private void loadFeesStatus() {
-        if (currentStudentEnrollment == null) {
-            Log.e("Dashboard", "Student enrollment not available");
-            tvFeesStatus.setText("N/A");
+    private void showFeesStatus(DataSnapshot feesSnapshot) {
+        if (!feesSnapshot.exists()) {
+            Log.d("Dashboard", "No fees data found for student: " + currentStudentEnrollment);
+            tvFeesStatus.setText("No Data");
             return;
         }
         
-        Log.d("Dashboard", "Loading fees status for student: " + currentStudentEnrollment);
-        
-        // Get student's fees data
-        DatabaseReference studentFeesRef = studentsRef
-            .child(currentStudentEnrollment)
-            .child("Fees");
+        String feeStatus = feesSnapshot.child("fee_status").getValue(String.class);
+        if (feeStatus != null) {
+            tvFeesStatus.setText(feeStatus);
             
-        studentFeesRef.addListenerForSingleValueEvent(new ValueEventListener() {
-            @Override
-            public void onDataChange(@NonNull DataSnapshot dataSnapshot) {
-                if (dataSnapshot.exists()) {
-                    String feeStatus = dataSnapshot.child("fee_status").getValue(String.class);
-                    Integer totalFees = dataSnapshot.child("total_fees").getValue(Integer.class);
-                    Integer paidFees = dataSnapshot.child("paid_fees").getValue(Integer.class);
-                    Integer remainingFees = dataSnapshot.child("remaining_fees").getValue(Integer.class);
-                    
-                    if (feeStatus != null) {
-                        tvFeesStatus.setText(feeStatus);
-                        
-                        // Set color based on fee status
-                        if ("Fully Paid".equals(feeStatus)) {
-                            tvFeesStatus.setTextColor(getResources().getColor(R.color.success_color));
-                        } else if ("Overdue".equals(feeStatus)) {
-                            tvFeesStatus.setTextColor(getResources().getColor(R.color.error_color));
-                        } else if ("Partially Paid".equals(feeStatus)) {
-                            tvFeesStatus.setTextColor(getResources().getColor(R.color.warning_color));
-                        } else {
-                            tvFeesStatus.setTextColor(getResources().getColor(R.color.text_primary));
-                        }
-                    } else {
-                        tvFeesStatus.setText("No Data");
-                    }
-                    
-                    Log.d("Dashboard", "Fees status loaded: " + feeStatus);
-                } else {
-                    Log.d("Dashboard", "No fees data found for student: " + currentStudentEnrollment);
-                    tvFeesStatus.setText("No Data");
-                }
-            }
-
-            @Override
-            public void onCancelled(@NonNull DatabaseError error) {
-                Log.e("Dashboard", "Error loading fees status: " + error.getMessage());
-                tvFeesStatus.setText("Error");
+            // Set color based on fee status
+            if ("Fully Paid".equals(feeStatus)) {
+                tvFeesStatus.setTextColor(getResources().getColor(R.color.success_color));
+            } else if ("Overdue".equals(feeStatus)) {
+                tvFeesStatus.setTextColor(getResources().getColor(R.color.error_color));
+            } else if ("Partially Paid".equals(feeStatus)) {
+                tvFeesStatus.setTextColor(getResources().getColor(R.color.warning_color));
+            } else {
+                tvFeesStatus.setTextColor(getResources().getColor(R.color.text_primary));
             }
-        });
+        } else {
+            tvFeesStatus.setText("No Data");
+        }
+        
+        Log.d("Dashboard", "Fees status loaded: " + feeStatus);
     }
 
     private void showLogoutDialog() {
@@ -354,6 +211,7 @@ public class DashboardActivity extends BaseAuthenticatedActivity {
                 .setTitle("Logout")
                 .setMessage("Are you sure you want to logout?")
                 .setPositiveButton("Yes", (dialog, which) -> {
+                    StudentIdentityResolver.clear(this);
                     FirebaseAuth.getInstance().signOut();
                     Intent intent = new Intent(this, LoginActivity.class);
                     intent.setFlags(Intent.FLAG_ACTIVITY_NEW_TASK | Intent.FLAG_ACTIVITY_CLEAR_TASK);
@@ -0,0 +1,61 @@
+package com.example.wifibasedattendanceapplication;
+
+import android.content.Context;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.work.BackoffPolicy;
+import androidx.work.Constraints;
+import androidx.work.ExistingWorkPolicy;
+import androidx.work.NetworkType;
+import androidx.work.OneTimeWorkRequest;
+import androidx.work.WorkManager;
+import androidx.work.Worker;
+import androidx.work.WorkerParameters;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One-time background job that runs the pending data migrations.
+ *
+ * Every migration records its own progress in the database and returns after a single read once
+ * it has finished, so enqueuing this from every faculty launch is cheap.
+ */
+public class DataMigrationWorker extends Worker {
+
+    private static final String UNIQUE_NAME = "data_migrations";
+    private static final long INITIAL_BACKOFF_MINUTES = 1;
+    private static final String TAG = "DataMigrationWorker";
+
+    public DataMigrationWorker(@NonNull Context context, @NonNull WorkerParameters params) {
+        super(context, params);
+    }
+
+    public static void schedule(@NonNull Context context) {
+        Constraints constraints = new Constraints.Builder()
+                .setRequiredNetworkType(NetworkType.CONNECTED)
+                .build();
+        OneTimeWorkRequest request = new OneTimeWorkRequest.Builder(DataMigrationWorker.class)
+                .setConstraints(constraints)
+                .setBackoffCriteria(BackoffPolicy.EXPONENTIAL, INITIAL_BACKOFF_MINUTES, TimeUnit.MINUTES)
+                .build();
+        WorkManager.getInstance(context.getApplicationContext())
+                .enqueueUniqueWork(UNIQUE_NAME, ExistingWorkPolicy.KEEP, request);
+    }
+
+    @NonNull
+    @Override
+    public Result doWork() {
+        try {
+            StudentAttendanceMigrator.Stats stats = StudentAttendanceMigrator.migrate();
+            Log.d(TAG, "Student attendance migration: " + stats);
+            // Day keys for sessions and entries written before they existed
+            stats = SessionDayKeyMigrator.migrate();
+            Log.d(TAG, "Session day key migration: " + stats);
+            return Result.success();
+        } catch (Exception e) {
+            Log.e(TAG, "Migration failed, will resume from the saved cursor: " + e.getMessage());
+            return Result.retry();
+        }
+    }
+}
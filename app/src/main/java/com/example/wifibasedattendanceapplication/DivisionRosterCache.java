@@ -0,0 +1,304 @@
+package com.example.wifibasedattendanceapplication;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import com.google.firebase.database.DataSnapshot;
+import com.google.firebase.database.DatabaseError;
+import com.google.firebase.database.DatabaseReference;
+import com.google.firebase.database.FirebaseDatabase;
+import com.google.firebase.database.ServerValue;
+import com.google.firebase.database.ValueEventListener;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Lightweight division roster so session setup never has to download the Students tree.
+ *
+ * Remote layout:
+ *   Rosters/{division}/{enrollment} = {student_name, student_email}
+ *   RosterVersions/{division}       = version stamp, bumped whenever the projection is rebuilt
+ *
+ * The roster is cached on device per division together with the version it was read at. A load
+ * first reads the version stamp (a single value); only when it differs from the cached one is the
+ * roster node itself downloaded. Students are registered outside the app, so the projection is
+ * kept up by {@link #syncMember}, which every student's profile load runs against their own
+ * record, and by {@link #rebuildFromStudents}, the one full read of Students. That runs only for a
+ * division with no projection at all, or when asked for explicitly (fixing a session's roster),
+ * which is also what drops students who moved to another division.
+ */
+public final class DivisionRosterCache {
+
+    public static final String ROSTERS_NODE = "Rosters";
+    public static final String VERSIONS_NODE = "RosterVersions";
+    private static final String TAG = "DivisionRosterCache";
+    private static final String PREFS_NAME = "roster_cache";
+    private static final String KEY_VERSION_PREFIX = "version_";
+    private static final String KEY_MEMBERS_PREFIX = "members_";
+
+    private static final Map<String, List<Member>> memoryCache = new HashMap<>();
+    private static final Map<String, Long> memoryVersions = new HashMap<>();
+
+    public static class Member {
+        public final String enrollment;
+        public final String name;
+        public final String email;
+
+        public Member(String enrollment, String name, String email) {
+            this.enrollment = enrollment;
+            this.name = name;
+            this.email = email;
+        }
+    }
+
+    public interface RosterCallback {
+        void onRosterLoaded(@NonNull List<Member> members);
+        void onError(@NonNull DatabaseError error);
+    }
+
+    private DivisionRosterCache() { }
+
+    /**
+     * Loads the roster for a division, serving the on-device copy when its version is current
+     */
+    public static void load(@NonNull Context context, @NonNull String division, @NonNull RosterCallback callback) {
+        Context appContext = context.getApplicationContext();
+        FirebaseDatabase.getInstance().getReference(VERSIONS_NODE).child(division)
+                .addListenerForSingleValueEvent(new ValueEventListener() {
+                    @Override
+                    public void onDataChange(@NonNull DataSnapshot snapshot) {
+                        Long remoteVersion = snapshot.getValue(Long.class);
+                        if (remoteVersion == null) {
+                            Log.d(TAG, "No roster projection for " + division + ", rebuilding from Students");
+                            rebuildFromStudents(appContext, division, callback);
+                            return;
+                        }
+                        List<Member> cached = readCached(appContext, division, remoteVersion);
+                        if (cached != null) {
+                            Log.d(TAG, "Roster cache hit for " + division + " (v" + remoteVersion + ", "
+                                    + cached.size() + " members)");
+                            callback.onRosterLoaded(cached);
+                            return;
+                        }
+                        fetchRoster(appContext, division, remoteVersion, callback);
+                    }
+
+                    @Override
+                    public void onCancelled(@NonNull DatabaseError error) {
+                        Log.e(TAG, "Error reading roster version: " + error.getMessage());
+                        callback.onError(error);
+                    }
+                });
+    }
+
+    private static void fetchRoster(Context context, String division, long version, RosterCallback callback) {
+        FirebaseDatabase.getInstance().getReference(ROSTERS_NODE).child(division)
+                .addListenerForSingleValueEvent(new ValueEventListener() {
+                    @Override
+                    public void onDataChange(@NonNull DataSnapshot snapshot) {
+                        List<Member> members = new ArrayList<>();
+                        for (DataSnapshot entry : snapshot.getChildren()) {
+                            members.add(new Member(entry.getKey(),
+                                    entry.child("student_name").getValue(String.class),
+                                    entry.child("student_email").getValue(String.class)));
+                        }
+                        Log.d(TAG, "Fetched roster for " + division + " (v" + version + ", "
+                                + members.size() + " members)");
+                        writeCached(context, division, version, members);
+                        callback.onRosterLoaded(members);
+                    }
+
+                    @Override
+                    public void onCancelled(@NonNull DatabaseError error) {
+                        Log.e(TAG, "Error reading roster: " + error.getMessage());
+                        callback.onError(error);
+                    }
+                });
+    }
+
+    /**
+     * Brings one student's projection entry in line with their Students record, bumping the
+     * division's version only when the entry was missing or different
+     */
+    public static void syncMember(@NonNull String enrollment, String division, String name, String email) {
+        if (division == null || division.isEmpty()) return;
+        DatabaseReference entryRef = FirebaseDatabase.getInstance().getReference(ROSTERS_NODE).child(division).child(enrollment);
+        entryRef.addListenerForSingleValueEvent(new ValueEventListener() {
+            @Override
+            public void onDataChange(@NonNull DataSnapshot snapshot) {
+                if (snapshot.exists()
+                        && Objects.equals(name, snapshot.child("student_name").getValue(String.class))
+                        && Objects.equals(email, snapshot.child("student_email").getValue(String.class))) {
+                    return;
+                }
+                Map<String, Object> updates = new HashMap<>();
+                updates.put(ROSTERS_NODE + "/" + division + "/" + enrollment + "/student_name", name);
+                updates.put(ROSTERS_NODE + "/" + division + "/" + enrollment + "/student_email", email);
+                updates.put(VERSIONS_NODE + "/" + division, ServerValue.TIMESTAMP);
+                FirebaseDatabase.getInstance().getReference().updateChildren(updates);
+                Log.d(TAG, "Updated roster projection of " + division + " for " + enrollment);
+            }
+
+            @Override
+            public void onCancelled(@NonNull DatabaseError error) {
+                Log.w(TAG, "Could not check roster entry for " + enrollment + ": " + error.getMessage());
+            }
+        });
+    }
+
+    /**
+     * Rebuilds Rosters and RosterVersions for every division from a single read of Students.
+     * Pass a division to also receive that division's roster once the rebuild is written; if the
+     * write fails the callback gets the error instead.
+     */
+    public static void rebuildFromStudents(@NonNull Context context, String division, @NonNull RosterCallback callback) {
+        Context appContext = context.getApplicationContext();
+        DatabaseReference rootRef = FirebaseDatabase.getInstance().getReference();
+        rootRef.child("Students").addListenerForSingleValueEvent(new ValueEventListener() {
+            @Override
+            public void onDataChange(@NonNull DataSnapshot studentsSnap) {
+                Map<String, List<Member>> byDivision = new HashMap<>();
+
+                for (DataSnapshot student : studentsSnap.getChildren()) {
+                    String enrollment = student.getKey();
+                    String studentDivision = student.child("Division").getValue(String.class);
+                    if (enrollment == null || studentDivision == null || studentDivision.isEmpty()) continue;
+
+                    String name = student.child("student_name").getValue(String.class);
+                    String email = student.child("student_email").getValue(String.class);
+                    List<Member> members = byDivision.get(studentDivision);
+                    if (members == null) {
+                        members = new ArrayList<>();
+                        byDivision.put(studentDivision, members);
+                    }
+                    members.add(new Member(enrollment, name, email));
+                }
+
+                // Replace the whole projection so students who changed division are dropped
+                Map<String, Object> updates = new HashMap<>();
+                Map<String, Object> rosters = new HashMap<>();
+                for (Map.Entry<String, List<Member>> entry : byDivision.entrySet()) {
+                    Map<String, Object> divisionRoster = new HashMap<>();
+                    for (Member m : entry.getValue()) {
+                        Map<String, Object> projection = new HashMap<>();
+                        projection.put("student_name", m.name);
+                        projection.put("student_email", m.email);
+                        divisionRoster.put(m.enrollment, projection);
+                    }
+                    rosters.put(entry.getKey(), divisionRoster);
+                    updates.put(VERSIONS_NODE + "/" + entry.getKey(), ServerValue.TIMESTAMP);
+                }
+                updates.put(ROSTERS_NODE, rosters);
+
+                rootRef.updateChildren(updates).addOnCompleteListener(task -> {
+                    if (!task.isSuccessful()) {
+                        Log.e(TAG, "Failed to write roster projection: " + task.getException());
+                        callback.onError(DatabaseError.fromException(task.getException()));
+                        return;
+                    }
+                    Log.d(TAG, "Rebuilt roster projection for " + byDivision.size() + " division(s)");
+                    // The version stamp is server-assigned; leave the device cache to refresh on next load
+                    invalidate(appContext, division);
+                    List<Member> members = division != null ? byDivision.get(division) : null;
+                    callback.onRosterLoaded(members != null ? members : Collections.emptyList());
+                });
+            }
+
+            @Override
+            public void onCancelled(@NonNull DatabaseError error) {
+                Log.e(TAG, "Error rebuilding rosters: " + error.getMessage());
+                callback.onError(error);
+            }
+        });
+    }
+
+    /**
+     * Drops the cached roster for a division (or all divisions when null)
+     */
+    public static void invalidate(@NonNull Context context, String division) {
+        SharedPreferences prefs = context.getApplicationContext().getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        synchronized (memoryCache) {
+            if (division == null) {
+                memoryCache.clear();
+                memoryVersions.clear();
+                prefs.edit().clear().apply();
+                return;
+            }
+            memoryCache.remove(division);
+            memoryVersions.remove(division);
+        }
+        prefs.edit()
+                .remove(KEY_VERSION_PREFIX + division)
+                .remove(KEY_MEMBERS_PREFIX + division)
+                .apply();
+    }
+
+    private static List<Member> readCached(Context context, String division, long version) {
+        synchronized (memoryCache) {
+            Long memVersion = memoryVersions.get(division);
+            if (memVersion != null && memVersion == version) {
+                return memoryCache.get(division);
+            }
+        }
+
+        SharedPreferences prefs = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        if (prefs.getLong(KEY_VERSION_PREFIX + division, -1L) != version) return null;
+        String json = prefs.getString(KEY_MEMBERS_PREFIX + division, null);
+        if (json == null) return null;
+
+        try {
+            JSONArray array = new JSONArray(json);
+            List<Member> members = new ArrayList<>(array.length());
+            for (int i = 0; i < array.length(); i++) {
+                JSONObject o = array.getJSONObject(i);
+                members.add(new Member(o.getString("e"), o.optString("n", null), o.optString("m", null)));
+            }
+            synchronized (memoryCache) {
+                memoryCache.put(division, members);
+                memoryVersions.put(division, version);
+            }
+            return members;
+        } catch (JSONException e) {
+            Log.w(TAG, "Corrupt roster cache for " + division + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    private static void writeCached(Context context, String division, long version, List<Member> members) {
+        synchronized (memoryCache) {
+            memoryCache.put(division, members);
+            memoryVersions.put(division, version);
+        }
+
+        JSONArray array = new JSONArray();
+        try {
+            for (Member m : members) {
+                JSONObject o = new JSONObject();
+                o.put("e", m.enrollment);
+                if (m.name != null) o.put("n", m.name);
+                if (m.email != null) o.put("m", m.email);
+                array.put(o);
+            }
+        } catch (JSONException e) {
+            Log.w(TAG, "Failed to serialize roster cache: " + e.getMessage());
+            return;
+        }
+        context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE)
+                .edit()
+                .putLong(KEY_VERSION_PREFIX + division, version)
+                .putString(KEY_MEMBERS_PREFIX + division, array.toString())
+                .apply();
+    }
+}
@@ -16,9 +16,6 @@ import androidx.recyclerview.widget.RecyclerView;
 import com.google.firebase.auth.FirebaseAuth;
 import com.google.firebase.database.DataSnapshot;
 import com.google.firebase.database.DatabaseError;
-import com.google.firebase.database.DatabaseReference;
-import com.google.firebase.database.FirebaseDatabase;
-import com.google.firebase.database.ValueEventListener;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -38,7 +35,6 @@ public class FeesActivity extends BaseAuthenticatedActivity {
     private ImageView ivBack;
     
     private String currentStudentEnrollment;
-    private DatabaseReference studentsRef;
     private Fees currentFees;
 
     @Override
@@ -87,9 +83,6 @@ public class FeesActivity extends BaseAuthenticatedActivity {
         btnPayFees = findViewById(R.id.btn_pay_fees);
         btnDownloadReceipt = findViewById(R.id.btn_download_receipt);
         ivBack = findViewById(R.id.iv_back);
-        
-        // Initialize Firebase reference
-        studentsRef = FirebaseDatabase.getInstance().getReference("Students");
     }
 
     private void setupClickListeners() {
@@ -122,46 +115,41 @@ public class FeesActivity extends BaseAuthenticatedActivity {
         String userEmail = FirebaseAuth.getInstance().getCurrentUser().getEmail();
         Log.d("FeesActivity", "Searching for student with email: " + userEmail);
         
-        // Search for student enrollment in Firebase
-        studentsRef.orderByChild("student_email").equalTo(userEmail)
-            .addListenerForSingleValueEvent(new ValueEventListener() {
-                @Override
-                public void onDataChange(@NonNull DataSnapshot dataSnapshot) {
-                    if (dataSnapshot.exists()) {
-                        for (DataSnapshot studentSnapshot : dataSnapshot.getChildren()) {
-                            currentStudentEnrollment = studentSnapshot.getKey();
-                            Log.d("FeesActivity", "Found student enrollment: " + currentStudentEnrollment);
-                            
-                            // Load student data and fees
-                            loadStudentData(studentSnapshot);
-                            break; // Get the first match
-                        }
-                    } else {
-                        Log.e("FeesActivity", "No student found with email: " + userEmail);
-                        loadDefaultData();
-                    }
-                }
+        // Name, roll number and the live Fees node come from the shared session cache
+        StudentSessionCache.get(this).load(this, new StudentSessionCache.Callback() {
+            @Override
+            public void onReady(@NonNull StudentSessionCache.Snapshot snapshot) {
+                currentStudentEnrollment = snapshot.enrollment;
+                Log.d("FeesActivity", "Found student enrollment: " + currentStudentEnrollment);
+                loadStudentData(snapshot);
+            }
 
-                @Override
-                public void onCancelled(@NonNull DatabaseError error) {
-                    Log.e("FeesActivity", "Error searching for student: " + error.getMessage());
-                    loadDefaultData();
-                }
-            });
+            @Override
+            public void onNotFound() {
+                Log.e("FeesActivity", "No student found with email: " + userEmail);
+                loadDefaultData();
+            }
+
+            @Override
+            public void onError(@NonNull DatabaseError error) {
+                Log.e("FeesActivity", "Error searching for student: " + error.getMessage());
+                loadDefaultData();
+            }
+        });
     }
 
-    private void loadStudentData(DataSnapshot studentSnapshot) {
+    private void loadStudentData(StudentSessionCache.Snapshot snapshot) {
         try {
             // Load student basic info
-            String studentName = studentSnapshot.child("student_name").getValue(String.class);
-            String rollNo = studentSnapshot.child("roll_no").getValue(String.class);
+            String studentName = snapshot.profile.name;
+            String rollNo = snapshot.profile.rollNo;
             
             if (studentName != null) {
                 tvStudentName.setText(studentName + " (Roll: " + rollNo + ")");
             }
             
             // Load fees data
-            DataSnapshot feesSnapshot = studentSnapshot.child("Fees");
+            DataSnapshot feesSnapshot = snapshot.fees;
             if (feesSnapshot.exists()) {
                 loadFeesData(feesSnapshot);
             } else {
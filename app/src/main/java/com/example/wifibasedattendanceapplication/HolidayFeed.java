@@ -0,0 +1,152 @@
+package com.example.wifibasedattendanceapplication;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.WorkerThread;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Conditional download and streaming parse of a public holiday iCal feed.
+ *
+ * The request carries the validators of the copy already on the device (If-None-Match /
+ * If-Modified-Since), so an unchanged feed costs one 304 with no body. A changed feed is read line
+ * by line straight off the connection into a yyyy-MM-dd -> titles index; the body is never held
+ * as a whole. Plain Java so it can be exercised against a local HTTP server in unit tests.
+ */
+public final class HolidayFeed {
+
+    static final int CONNECT_TIMEOUT_MS = 10000;
+    static final int READ_TIMEOUT_MS = 15000;
+
+    public static class Result {
+        /** Null when the server answered 304 Not Modified */
+        public final Map<String, List<String>> byDate;
+        public final String etag;
+        public final String lastModified;
+
+        Result(Map<String, List<String>> byDate, String etag, String lastModified) {
+            this.byDate = byDate;
+            this.etag = etag;
+            this.lastModified = lastModified;
+        }
+
+        public boolean notModified() {
+            return byDate == null;
+        }
+    }
+
+    private HolidayFeed() { }
+
+    /**
+     * Fetches the feed unless it is unchanged since the given validators (either may be null)
+     */
+    @WorkerThread
+    public static Result fetch(@NonNull String feedUrl, String etag, String lastModified) throws IOException {
+        HttpURLConnection conn = (HttpURLConnection) new URL(feedUrl).openConnection();
+        try {
+            conn.setConnectTimeout(CONNECT_TIMEOUT_MS);
+            conn.setReadTimeout(READ_TIMEOUT_MS);
+            conn.setRequestMethod("GET");
+            if (etag != null) conn.setRequestProperty("If-None-Match", etag);
+            if (lastModified != null) conn.setRequestProperty("If-Modified-Since", lastModified);
+
+            int code = conn.getResponseCode();
+            if (code == HttpURLConnection.HTTP_NOT_MODIFIED) {
+                // Servers may omit the validators on a 304; keep the ones we sent
+                String newEtag = conn.getHeaderField("ETag");
+                String newLastModified = conn.getHeaderField("Last-Modified");
+                return new Result(null, newEtag != null ? newEtag : etag,
+                        newLastModified != null ? newLastModified : lastModified);
+            }
+            if (code != HttpURLConnection.HTTP_OK) {
+                throw new IOException("Holiday feed returned HTTP " + code);
+            }
+            try (BufferedReader reader = new BufferedReader(
+                    new InputStreamReader(conn.getInputStream(), StandardCharsets.UTF_8))) {
+                return new Result(parse(reader), conn.getHeaderField("ETag"), conn.getHeaderField("Last-Modified"));
+            }
+        } finally {
+            conn.disconnect();
+        }
+    }
+
+    /**
+     * Minimal iCal parsing: DTSTART and SUMMARY pairs inside VEVENT. Folded lines (continuations
+     * starting with a space or tab) are joined before they are looked at.
+     */
+    public static Map<String, List<String>> parse(@NonNull BufferedReader reader) throws IOException {
+        Map<String, List<String>> byDate = new HashMap<>();
+        String[] event = new String[2]; // [date key, summary] of the VEVENT being read
+        StringBuilder logical = null;
+        String raw;
+        while ((raw = reader.readLine()) != null) {
+            if (logical != null && !raw.isEmpty() && (raw.charAt(0) == ' ' || raw.charAt(0) == '\t')) {
+                logical.append(raw, 1, raw.length());
+                continue;
+            }
+            if (logical != null) handleLine(logical.toString(), event, byDate);
+            logical = new StringBuilder(raw);
+        }
+        if (logical != null) handleLine(logical.toString(), event, byDate);
+        return byDate;
+    }
+
+    private static void handleLine(String raw, String[] event, Map<String, List<String>> byDate) {
+        String line = raw.trim();
+        if (line.startsWith("BEGIN:VEVENT")) {
+            event[0] = null;
+            event[1] = null;
+        } else if (line.startsWith("DTSTART")) {
+            // DTSTART can be in UTC or local; most Google holiday DTSTART are date-only (YYYYMMDD)
+            event[0] = dateKey(line.substring(line.indexOf(':') + 1).trim());
+        } else if (line.startsWith("SUMMARY:") || line.startsWith("SUMMARY;")) {
+            event[1] = unescape(line.substring(line.indexOf(':') + 1).trim());
+        } else if (line.startsWith("END:VEVENT")) {
+            if (event[0] != null && event[1] != null && !event[1].isEmpty()) {
+                List<String> titles = byDate.get(event[0]);
+                if (titles == null) {
+                    titles = new ArrayList<>(1);
+                    byDate.put(event[0], titles);
+                }
+                if (!titles.contains(event[1])) titles.add(event[1]);
+            }
+            event[0] = null;
+            event[1] = null;
+        }
+    }
+
+    /**
+     * YYYYMMDD or YYYYMMDDT000000Z to yyyy-MM-dd; null if it is not a date
+     */
+    static String dateKey(String icsDate) {
+        if (icsDate == null || icsDate.length() < 8) return null;
+        for (int i = 0; i < 8; i++) {
+            if (!Character.isDigit(icsDate.charAt(i))) return null;
+        }
+        return icsDate.substring(0, 4) + "-" + icsDate.substring(4, 6) + "-" + icsDate.substring(6, 8);
+    }
+
+    private static String unescape(String text) {
+        if (text.indexOf('\\') < 0) return text;
+        StringBuilder sb = new StringBuilder(text.length());
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '\\' && i + 1 < text.length()) {
+                char next = text.charAt(++i);
+                sb.append(next == 'n' || next == 'N' ? ' ' : next);
+            } else {
+                sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+}
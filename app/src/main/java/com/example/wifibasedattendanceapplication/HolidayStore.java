@@ -0,0 +1,154 @@
+package com.example.wifibasedattendanceapplication;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * On-device copy of the public holiday calendar, so the holiday tab opens from disk and works offline.
+ *
+ * The yyyy-MM-dd -> titles index is kept in SharedPreferences together with the feed's ETag and
+ * Last-Modified. A load delivers the stored index straight away and, at most once per
+ * {@link #REFRESH_INTERVAL_MS}, asks the server whether the feed changed ({@link HolidayFeed}); only
+ * a changed feed is downloaded, parsed and delivered a second time. A load that arrives while a
+ * check is running joins it and is completed with its result. A failed check keeps the stored
+ * copy and is retried on the next open.
+ */
+public final class HolidayStore {
+
+    public static final String INDIA_HOLIDAY_ICS = "https://calendar.google.com/calendar/ical/en.indian%23holiday%40group.v.calendar.google.com/public/basic.ics";
+    public static final long REFRESH_INTERVAL_MS = 24L * 60 * 60 * 1000;
+    private static final String TAG = "HolidayStore";
+    private static final String PREFS_NAME = "holiday_cache";
+    private static final String KEY_INDEX = "index";
+    private static final String KEY_ETAG = "etag";
+    private static final String KEY_LAST_MODIFIED = "last_modified";
+    private static final String KEY_CHECKED_AT = "checked_at";
+
+    private static final ExecutorService executor = Executors.newSingleThreadExecutor();
+    private static final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private static Map<String, List<String>> memoryIndex;
+    // Callers of the check in flight, if any; empty when no check is running
+    private static final List<Callback> waiting = new ArrayList<>();
+
+    public interface Callback {
+        /** The stored index first (if there is one), then again if a refresh brought a changed feed */
+        void onHolidaysLoaded(@NonNull Map<String, List<String>> byDate);
+        /** The server check finished or was not due; updated is true if onHolidaysLoaded was called for it */
+        void onRefreshDone(boolean updated);
+    }
+
+    private HolidayStore() { }
+
+    /**
+     * Main thread. Serves the stored holidays and refreshes them in the background when they are a day old
+     */
+    public static void load(@NonNull Context context, @NonNull Callback callback) {
+        Context appContext = context.getApplicationContext();
+        SharedPreferences prefs = appContext.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        Map<String, List<String>> stored = readIndex(prefs);
+        if (stored != null) {
+            callback.onHolidaysLoaded(stored);
+        }
+
+        long checkedAt = prefs.getLong(KEY_CHECKED_AT, 0L);
+        if (stored != null && System.currentTimeMillis() - checkedAt < REFRESH_INTERVAL_MS) {
+            callback.onRefreshDone(false);
+            return;
+        }
+        waiting.add(callback);
+        if (waiting.size() > 1) return; // another screen instance is already checking
+        String etag = stored != null ? prefs.getString(KEY_ETAG, null) : null;
+        String lastModified = stored != null ? prefs.getString(KEY_LAST_MODIFIED, null) : null;
+
+        executor.execute(() -> {
+            Map<String, List<String>> fresh = null;
+            try {
+                HolidayFeed.Result result = HolidayFeed.fetch(INDIA_HOLIDAY_ICS, etag, lastModified);
+                SharedPreferences.Editor editor = prefs.edit()
+                        .putLong(KEY_CHECKED_AT, System.currentTimeMillis())
+                        .putString(KEY_ETAG, result.etag)
+                        .putString(KEY_LAST_MODIFIED, result.lastModified);
+                if (result.notModified()) {
+                    Log.d(TAG, "Holiday feed not modified");
+                } else {
+                    fresh = result.byDate;
+                    editor.putString(KEY_INDEX, serialize(fresh));
+                    Log.d(TAG, "Holiday feed updated: " + fresh.size() + " dates");
+                }
+                editor.apply();
+            } catch (Exception e) {
+                Log.e(TAG, "Holiday fetch failed: " + e.getMessage());
+            }
+
+            Map<String, List<String>> delivered = fresh;
+            mainHandler.post(() -> {
+                if (delivered != null) {
+                    memoryIndex = delivered;
+                }
+                List<Callback> callbacks = new ArrayList<>(waiting);
+                waiting.clear();
+                for (Callback waiter : callbacks) {
+                    if (delivered != null) {
+                        waiter.onHolidaysLoaded(delivered);
+                    }
+                    waiter.onRefreshDone(delivered != null);
+                }
+            });
+        });
+    }
+
+    private static Map<String, List<String>> readIndex(SharedPreferences prefs) {
+        if (memoryIndex != null) return memoryIndex;
+        String json = prefs.getString(KEY_INDEX, null);
+        if (json == null) return null;
+        try {
+            JSONObject o = new JSONObject(json);
+            Map<String, List<String>> byDate = new HashMap<>();
+            Iterator<String> keys = o.keys();
+            while (keys.hasNext()) {
+                String date = keys.next();
+                JSONArray array = o.getJSONArray(date);
+                List<String> titles = new ArrayList<>(array.length());
+                for (int i = 0; i < array.length(); i++) {
+                    titles.add(array.getString(i));
+                }
+                byDate.put(date, Collections.unmodifiableList(titles));
+            }
+            memoryIndex = byDate;
+            return byDate;
+        } catch (JSONException e) {
+            Log.w(TAG, "Corrupt holiday cache: " + e.getMessage());
+            return null;
+        }
+    }
+
+    private static String serialize(Map<String, List<String>> byDate) throws JSONException {
+        JSONObject o = new JSONObject();
+        for (Map.Entry<String, List<String>> entry : byDate.entrySet()) {
+            JSONArray array = new JSONArray();
+            for (String title : entry.getValue()) {
+                array.put(title);
+            }
+            o.put(entry.getKey(), array);
+        }
+        return o.toString();
+    }
+}
@@ -0,0 +1,153 @@
+package com.example.wifibasedattendanceapplication;
+
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import com.google.firebase.database.ChildEventListener;
+import com.google.firebase.database.Query;
+import com.google.firebase.database.ValueEventListener;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Owns the Firebase listeners of one screen.
+ *
+ * Subscriptions are keyed: registering a key that is already present detaches the old listener
+ * first, so a screen that re-runs its setup (refresh, onResume) keeps exactly one live listener
+ * per key. {@link BaseAuthenticatedActivity} detaches everything in onStop, re-attaches in onStart
+ * and forgets the subscriptions in onDestroy. Main thread only, like the listeners themselves.
+ */
+public class ListenerRegistry {
+
+    private static final String TAG = "ListenerRegistry";
+    private static final AtomicInteger totalLive = new AtomicInteger();
+
+    private static class Subscription {
+        final Query query;
+        final ValueEventListener valueListener;
+        final ChildEventListener childListener;
+        boolean attached;
+
+        Subscription(Query query, ValueEventListener valueListener, ChildEventListener childListener) {
+            this.query = query;
+            this.valueListener = valueListener;
+            this.childListener = childListener;
+        }
+
+        void attach() {
+            if (attached) return;
+            if (valueListener != null) query.addValueEventListener(valueListener);
+            else query.addChildEventListener(childListener);
+            attached = true;
+            totalLive.incrementAndGet();
+        }
+
+        void detach() {
+            if (!attached) return;
+            if (valueListener != null) query.removeEventListener(valueListener);
+            else query.removeEventListener(childListener);
+            attached = false;
+            totalLive.decrementAndGet();
+        }
+    }
+
+    private final String owner;
+    private final Map<String, Subscription> subscriptions = new LinkedHashMap<>();
+    private boolean started;
+
+    public ListenerRegistry(@NonNull String owner) {
+        this.owner = owner;
+    }
+
+    /**
+     * Registers a value listener under key, replacing any listener already held for that key
+     */
+    public void addValueListener(@NonNull String key, @NonNull Query query, @NonNull ValueEventListener listener) {
+        put(key, new Subscription(query, listener, null));
+    }
+
+    /**
+     * Registers a child listener under key, replacing any listener already held for that key
+     */
+    public void addChildListener(@NonNull String key, @NonNull Query query, @NonNull ChildEventListener listener) {
+        put(key, new Subscription(query, null, listener));
+    }
+
+    private void put(String key, Subscription subscription) {
+        Subscription previous = subscriptions.put(key, subscription);
+        if (previous != null) {
+            previous.detach();
+            Log.d(TAG, owner + ": replaced listener " + key);
+        }
+        if (started) subscription.attach();
+        logCounts();
+    }
+
+    public void remove(@NonNull String key) {
+        Subscription subscription = subscriptions.remove(key);
+        if (subscription != null) {
+            subscription.detach();
+            logCounts();
+        }
+    }
+
+    public boolean contains(@NonNull String key) {
+        return subscriptions.containsKey(key);
+    }
+
+    /**
+     * Attaches every registered subscription (onStart)
+     */
+    public void attachAll() {
+        started = true;
+        for (Subscription subscription : subscriptions.values()) {
+            subscription.attach();
+        }
+        logCounts();
+    }
+
+    /**
+     * Detaches every subscription but keeps it for the next attachAll (onStop)
+     */
+    public void detachAll() {
+        started = false;
+        for (Subscription subscription : subscriptions.values()) {
+            subscription.detach();
+        }
+        logCounts();
+    }
+
+    /**
+     * Detaches and forgets every subscription (onDestroy)
+     */
+    public void clear() {
+        detachAll();
+        subscriptions.clear();
+    }
+
+    /**
+     * Listeners of this registry currently attached to the database
+     */
+    public int liveCount() {
+        int live = 0;
+        for (Subscription subscription : subscriptions.values()) {
+            if (subscription.attached) live++;
+        }
+        return live;
+    }
+
+    /**
+     * Listeners attached across all registries in the process
+     */
+    public static int totalLiveCount() {
+        return totalLive.get();
+    }
+
+    private void logCounts() {
+        Log.d(TAG, owner + ": " + liveCount() + "/" + subscriptions.size() + " live, "
+                + totalLiveCount() + " in app");
+    }
+}
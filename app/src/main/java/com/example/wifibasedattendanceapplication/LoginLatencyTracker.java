@@ -0,0 +1,89 @@
+package com.example.wifibasedattendanceapplication;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Rolling login latency samples with p50/p95 summaries.
+ *
+ * Two series are kept: "attempt" (one enrollment lookup round trip) and "total" (auth success to
+ * the dashboard being launched, including retries). The last {@link #MAX_SAMPLES} samples of each
+ * series are persisted so percentiles survive app restarts, and every recorded sample logs the
+ * current summary under the "LoginLatency" tag.
+ */
+public final class LoginLatencyTracker {
+
+    public static final String SERIES_ATTEMPT = "attempt";
+    public static final String SERIES_TOTAL = "total";
+
+    private static final String TAG = "LoginLatency";
+    private static final String PREFS_NAME = "login_latency";
+    private static final int MAX_SAMPLES = 100;
+
+    private LoginLatencyTracker() { }
+
+    /**
+     * Records one latency sample and logs the updated percentiles for its series
+     */
+    public static synchronized void record(@NonNull Context context, @NonNull String series, long latencyMs) {
+        List<Long> samples = load(context, series);
+        samples.add(latencyMs);
+        while (samples.size() > MAX_SAMPLES) {
+            samples.remove(0);
+        }
+        save(context, series, samples);
+
+        Log.d(TAG, series + " latency=" + latencyMs + "ms, p50=" + percentile(samples, 50)
+                + "ms, p95=" + percentile(samples, 95) + "ms (n=" + samples.size() + ")");
+    }
+
+    /**
+     * Returns the requested percentile (0-100) of the stored samples, or -1 when there are none
+     */
+    public static synchronized long getPercentile(@NonNull Context context, @NonNull String series, int percentile) {
+        return percentile(load(context, series), percentile);
+    }
+
+    /**
+     * Nearest-rank percentile of the given samples
+     */
+    static long percentile(List<Long> samples, int percentile) {
+        if (samples.isEmpty()) return -1L;
+        List<Long> sorted = new ArrayList<>(samples);
+        Collections.sort(sorted);
+        int rank = (int) Math.ceil(percentile / 100.0 * sorted.size());
+        return sorted.get(Math.max(0, Math.min(sorted.size() - 1, rank - 1)));
+    }
+
+    private static List<Long> load(Context context, String series) {
+        String stored = prefs(context).getString(series, "");
+        List<Long> samples = new ArrayList<>();
+        if (stored.isEmpty()) return samples;
+        for (String part : stored.split(",")) {
+            try {
+                samples.add(Long.parseLong(part));
+            } catch (NumberFormatException ignored) { }
+        }
+        return samples;
+    }
+
+    private static void save(Context context, String series, List<Long> samples) {
+        StringBuilder sb = new StringBuilder();
+        for (Long sample : samples) {
+            if (sb.length() > 0) sb.append(',');
+            sb.append(sample);
+        }
+        prefs(context).edit().putString(series, sb.toString()).apply();
+    }
+
+    private static SharedPreferences prefs(Context context) {
+        return context.getApplicationContext().getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+    }
+}
@@ -4,6 +4,8 @@ import android.app.ProgressDialog;
 import android.content.Intent;
 import android.os.Bundle;
 import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
 import android.provider.Settings.Secure;
 import android.text.Editable;
 import android.text.TextWatcher;
@@ -35,6 +37,13 @@ public class LoginStudentActivity extends AppCompatActivity implements TextWatch
     ProgressDialog progressDialog;
     private DatabaseReference studentsRef;
     private String enrollmentNo;
+    private final Handler retryHandler = new Handler(Looper.getMainLooper());
+    private long loginStartedAt;
+
+    // Enrollment lookup retry policy: exponential backoff capped at MAX_RETRY_DELAY_MS
+    private static final int MAX_LOOKUP_ATTEMPTS = 3;
+    private static final long BASE_RETRY_DELAY_MS = 500;
+    private static final long MAX_RETRY_DELAY_MS = 4000;
 
 
     @Override
@@ -58,22 +67,6 @@ public class LoginStudentActivity extends AppCompatActivity implements TextWatch
         mAuth = FirebaseAuth.getInstance();
         studentsRef = FirebaseDatabase.getInstance().getReference("Students");
 
-        // Test database connection and paths
-        Log.d("LoginStudent", "Testing database connection...");
-        testDatabasePaths();
-        
-        studentsRef.addListenerForSingleValueEvent(new ValueEventListener() {
-            @Override
-            public void onDataChange(@NonNull DataSnapshot dataSnapshot) {
-                Log.d("LoginStudent", "Database connection test successful. Found " + dataSnapshot.getChildrenCount() + " students.");
-            }
-
-            @Override
-            public void onCancelled(@NonNull DatabaseError error) {
-                Log.e("LoginStudent", "Database connection test failed: " + error.getMessage());
-            }
-        });
-
         loginButton.setOnClickListener(new View.OnClickListener() {
             @Override
             public void onClick(View view) {
@@ -107,6 +100,7 @@ public class LoginStudentActivity extends AppCompatActivity implements TextWatch
                     public void onComplete(@NonNull Task<AuthResult> task) {
                         if (task.isSuccessful()) {
                             Log.d("Debug","Firebase Authentication successful for email: '" + loginEmail + "'");
+                            loginStartedAt = SystemClock.elapsedRealtime();
                             searchEnrollment();
                         } else {
                             Log.e("LoginStudent", "Firebase Authentication failed: " + task.getException().getMessage());
@@ -138,92 +132,81 @@ public class LoginStudentActivity extends AppCompatActivity implements TextWatch
                 }
             });
     }
-    private void searchEnrollmentWithRetry(String email, int retryCount) {
-        if (retryCount > 3) {
-            Toast.makeText(getApplicationContext(), "Email not found after multiple attempts. Please try again.", Toast.LENGTH_LONG).show();
-            closeProgressDialog();
-            return;
-        }
-
-        Log.d("LoginStudent", "Searching for email: '" + email + "' in database. Attempt: " + (retryCount + 1));
-        Log.d("LoginStudent", "Database reference path: " + studentsRef.toString());
+    private void searchEnrollmentWithRetry(String email, int attempt) {
+        Log.d("LoginStudent", "Resolving enrollment for email: '" + email + "'. Attempt: " + (attempt + 1));
+        long attemptStartedAt = SystemClock.elapsedRealtime();
 
-        // First, let's test if we can read the database at all
-        studentsRef.addListenerForSingleValueEvent(new ValueEventListener() {
+        // Point lookup through EmailIndex instead of downloading the whole Students node
+        StudentIdentityResolver.resolve(this, new StudentIdentityResolver.Callback() {
             @Override
-            public void onDataChange(@NonNull DataSnapshot dataSnapshot) {
-                Log.d("LoginStudent", "Database query completed. Total children: " + dataSnapshot.getChildrenCount());
-                
-                // Log the entire database structure for debugging
-                Log.d("LoginStudent", "=== DATABASE STRUCTURE DEBUG ===");
-                for (DataSnapshot studentSnapshot : dataSnapshot.getChildren()) {
-                    String studentKey = studentSnapshot.getKey();
-                    Log.d("LoginStudent", "Student Key: " + studentKey);
-                    
-                    // Log all fields for this student
-                    for (DataSnapshot fieldSnapshot : studentSnapshot.getChildren()) {
-                        String fieldKey = fieldSnapshot.getKey();
-                        Object fieldValue = fieldSnapshot.getValue();
-                        Log.d("LoginStudent", "  - " + fieldKey + ": " + fieldValue);
-                    }
-                    Log.d("LoginStudent", "---");
-                }
-                Log.d("LoginStudent", "=== END DATABASE STRUCTURE ===");
-                
-                boolean found = false;
-                for (DataSnapshot studentSnapshot : dataSnapshot.getChildren()) {
-                    String studentKey = studentSnapshot.getKey();
-                    String studentEmail = studentSnapshot.child("student_email").getValue(String.class);
-                    
-                    Log.d("LoginStudent", "Checking student: " + studentKey + " with email: '" + studentEmail + "'");
-                    
-                    if (studentEmail != null && studentEmail.equals(email)) {
-                        Log.d("LoginStudent", "MATCH FOUND! Student: " + studentKey + " with email: '" + studentEmail + "'");
-                        enrollmentNo = studentSnapshot.getKey();
-                        String hardwareAddress = fetchUniqueHardwareID();
-                        storeMacAddressInFirebase(enrollmentNo, hardwareAddress);
-                        Log.d("Debug","uniqueID: "+hardwareAddress);
-                        found = true;
-                        break;
-                    }
-                }
+            public void onResolved(@NonNull String enrollment) {
+                recordAttempt(attemptStartedAt);
+                Log.d("LoginStudent", "MATCH FOUND! Student: " + enrollment);
+                enrollmentNo = enrollment;
+                String hardwareAddress = fetchUniqueHardwareID();
+                storeMacAddressInFirebase(enrollmentNo, hardwareAddress);
+                Log.d("Debug","uniqueID: "+hardwareAddress);
+            }
 
-                if (!found) {
-                    Log.e("LoginStudent", "Email '" + email + "' NOT FOUND in database after checking all students");
-                    Log.e("LoginStudent", "Available student emails in database:");
-                    
-                    // Log all available emails for debugging
-                    for (DataSnapshot studentSnapshot : dataSnapshot.getChildren()) {
-                        String studentKey = studentSnapshot.getKey();
-                        String studentEmail = studentSnapshot.child("student_email").getValue(String.class);
-                        Log.e("LoginStudent", "  - " + studentKey + ": '" + studentEmail + "'");
-                    }
-                    
-                    // Email not found, retry after delay
-                    Log.d("LoginStudent", "Email not found, retrying in 2 seconds... Attempt: " + (retryCount + 1));
-                    new Handler().postDelayed(new Runnable() {
-                        @Override
-                        public void run() {
-                            searchEnrollmentWithRetry(email, retryCount + 1);
-                        }
-                    }, 2000); // 2 second delay
-                }
+            @Override
+            public void onNotFound() {
+                recordAttempt(attemptStartedAt);
+                // A freshly registered student may not be readable yet, so retry a bounded number of times
+                retryOrFail(email, attempt, "Email not found after multiple attempts. Please try again.");
             }
 
             @Override
-            public void onCancelled(@NonNull DatabaseError error) {
-                closeProgressDialog();
+            public void onError(@NonNull DatabaseError error) {
+                recordAttempt(attemptStartedAt);
                 Log.e("LoginStudent", "Database error: " + error.getMessage());
                 Log.e("LoginStudent", "Database error code: " + error.getCode());
                 if (error.getCode() == DatabaseError.PERMISSION_DENIED) {
+                    closeProgressDialog();
                     Toast.makeText(LoginStudentActivity.this, "Authentication required. Please login again.", Toast.LENGTH_LONG).show();
+                } else if (isTransient(error)) {
+                    retryOrFail(email, attempt, "Database error: " + error.getMessage());
                 } else {
+                    closeProgressDialog();
                     Toast.makeText(LoginStudentActivity.this, "Database error: " + error.getMessage(), Toast.LENGTH_SHORT).show();
                 }
             }
         });
     }
 
+    private void retryOrFail(String email, int attempt, String failureMessage) {
+        if (attempt + 1 >= MAX_LOOKUP_ATTEMPTS || isFinishing()) {
+            Log.e("LoginStudent", "Giving up on enrollment lookup for '" + email + "' after " + (attempt + 1) + " attempts");
+            Toast.makeText(getApplicationContext(), failureMessage, Toast.LENGTH_LONG).show();
+            closeProgressDialog();
+            return;
+        }
+
+        long delay = Math.min(MAX_RETRY_DELAY_MS, BASE_RETRY_DELAY_MS << attempt);
+        Log.d("LoginStudent", "Retrying enrollment lookup in " + delay + "ms... Attempt: " + (attempt + 2));
+        retryHandler.postDelayed(() -> searchEnrollmentWithRetry(email, attempt + 1), delay);
+    }
+
+    private boolean isTransient(DatabaseError error) {
+        int code = error.getCode();
+        return code == DatabaseError.NETWORK_ERROR
+                || code == DatabaseError.DISCONNECTED
+                || code == DatabaseError.UNAVAILABLE
+                || code == DatabaseError.MAX_RETRIES;
+    }
+
+    private void recordAttempt(long attemptStartedAt) {
+        LoginLatencyTracker.record(this, LoginLatencyTracker.SERIES_ATTEMPT,
+                SystemClock.elapsedRealtime() - attemptStartedAt);
+    }
+
+    private void recordLoginComplete() {
+        if (loginStartedAt > 0) {
+            LoginLatencyTracker.record(this, LoginLatencyTracker.SERIES_TOTAL,
+                    SystemClock.elapsedRealtime() - loginStartedAt);
+            loginStartedAt = 0;
+        }
+    }
+
     private String fetchUniqueHardwareID() {
 //        WifiManager manager = (WifiManager) getSystemService(Context.WIFI_SERVICE);
 //        if (manager != null) {
@@ -243,18 +226,21 @@ public class LoginStudentActivity extends AppCompatActivity implements TextWatch
                 String existingHardwareId = dataSnapshot.getValue(String.class);
                 if (existingHardwareId == null||existingHardwareId.isEmpty()) {
                     enrollmentRef.child("hardware_id").setValue(macAddress);
+                    recordLoginComplete();
                     startActivity(new Intent(getApplicationContext(), DashboardActivity.class));
                     Toast.makeText(getApplicationContext(), "Login successful!", Toast.LENGTH_SHORT).show();
                     closeProgressDialog();
                 }
                 else if (macAddress.equals(existingHardwareId)) {
                     // Same device login - allow login
+                    recordLoginComplete();
                     startActivity(new Intent(getApplicationContext(), DashboardActivity.class));
                     Toast.makeText(getApplicationContext(), "Login successful!", Toast.LENGTH_SHORT).show();
                     closeProgressDialog();
                 }
                 else{
                     startActivity(new Intent(getApplicationContext(), LoginActivity.class));
+                    StudentIdentityResolver.clear(LoginStudentActivity.this);
                     FirebaseAuth.getInstance().signOut();
                     Toast.makeText(LoginStudentActivity.this, "Cannot login on another device!", Toast.LENGTH_SHORT).show();
                     closeProgressDialog();
@@ -285,47 +271,6 @@ public class LoginStudentActivity extends AppCompatActivity implements TextWatch
         return false;
     }
 
-    // Test different database paths to debug the issue
-    private void testDatabasePaths() {
-        Log.d("LoginStudent", "=== TESTING DIFFERENT DATABASE PATHS ===");
-        
-        // Test root path
-        FirebaseDatabase.getInstance().getReference().addListenerForSingleValueEvent(new ValueEventListener() {
-            @Override
-            public void onDataChange(@NonNull DataSnapshot dataSnapshot) {
-                Log.d("LoginStudent", "Root database contains: " + dataSnapshot.getChildrenCount() + " top-level nodes");
-                for (DataSnapshot node : dataSnapshot.getChildren()) {
-                    Log.d("LoginStudent", "Root node: " + node.getKey());
-                }
-            }
-
-            @Override
-            public void onCancelled(@NonNull DatabaseError error) {
-                Log.e("LoginStudent", "Root database test failed: " + error.getMessage());
-            }
-        });
-        
-        // Test Students path specifically
-        FirebaseDatabase.getInstance().getReference("Students").addListenerForSingleValueEvent(new ValueEventListener() {
-            @Override
-            public void onDataChange(@NonNull DataSnapshot dataSnapshot) {
-                Log.d("LoginStudent", "Students path contains: " + dataSnapshot.getChildrenCount() + " students");
-                if (dataSnapshot.exists()) {
-                    Log.d("LoginStudent", "Students node exists and is accessible");
-                } else {
-                    Log.e("LoginStudent", "Students node does not exist or is not accessible");
-                }
-            }
-
-            @Override
-            public void onCancelled(@NonNull DatabaseError error) {
-                Log.e("LoginStudent", "Students path test failed: " + error.getMessage());
-            }
-        });
-        
-        Log.d("LoginStudent", "=== END DATABASE PATH TESTING ===");
-    }
-
     @Override
     public void beforeTextChanged(CharSequence charSequence, int i, int i1, int i2) {
         clearErrors();
@@ -341,6 +286,12 @@ public class LoginStudentActivity extends AppCompatActivity implements TextWatch
         clearErrors();
     }
 
+    @Override
+    protected void onDestroy() {
+        retryHandler.removeCallbacksAndMessages(null);
+        super.onDestroy();
+    }
+
     private void clearErrors() {
         emailInputLayout.setError(null);
         passwordInputLayout.setError(null);
@@ -0,0 +1,223 @@
+package com.example.wifibasedattendanceapplication;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import com.google.firebase.database.DataSnapshot;
+import com.google.firebase.database.DatabaseError;
+import com.google.firebase.database.DatabaseReference;
+import com.google.firebase.database.FirebaseDatabase;
+import com.google.firebase.database.ValueEventListener;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Durable on-device queue of "Mark Present" taps, keyed by (sessionId, enrollment).
+ *
+ * A tap is stored first, so the student gets an immediate confirmation. The write is then sent
+ * right away, and {@link MarkReplayWorker} replays whatever is still queued in the background with
+ * backoff, including after the app was killed. Each entry keeps the device time of the tap and the
+ * network/biometric evidence it passed, and replays write the same values (same mark_key), so
+ * repeated deliveries are harmless; marked_at is stamped once, on the first acknowledgement. The server decides whether a late mark still counts:
+ * database.rules.json only accepts a new mark_key while the session's session_status is "active"
+ * and its end_timestamp plus {@link SessionExpirySweeper#GRACE_PERIOD_MS} has not passed. The grace
+ * is intended: a session running past its scheduled end stays active until the sweeper expires
+ * it, and marks tapped offline during class may still land until then. A session the faculty ends
+ * is closed at once. After that, rewriting an unchanged mark_key is allowed only while both
+ * statuses still read as stored, so a mark that was stored but never acknowledged replays cleanly
+ * and one the faculty has since edited is refused. A rejected mark is dropped and reported to the
+ * student.
+ */
+public final class MarkQueue {
+
+    private static final String PREFS_NAME = "mark_queue";
+    private static final String TAG = "MarkQueue";
+    private static final Object lock = new Object();
+
+    public static class PendingMark {
+        public final String sessionId;
+        public final String enrollment;
+        public final String markKey;
+        public final long deviceMarkedAt;
+        public final String verificationMethod;
+        public final String ssid;
+        public final String bssid;
+
+        public PendingMark(@NonNull String sessionId, @NonNull String enrollment, @NonNull String markKey,
+                           long deviceMarkedAt, String verificationMethod,
+                           String ssid, String bssid) {
+            this.sessionId = sessionId;
+            this.enrollment = enrollment;
+            this.markKey = markKey;
+            this.deviceMarkedAt = deviceMarkedAt;
+            this.verificationMethod = verificationMethod;
+            this.ssid = ssid;
+            this.bssid = bssid;
+        }
+
+        Map<String, Object> toUpdates() {
+            Map<String, Object> verification = new HashMap<>();
+            verification.put("method", verificationMethod != null ? verificationMethod : "none");
+            verification.put("biometric", true);
+            if (ssid != null) verification.put("ssid", ssid);
+            if (bssid != null) verification.put("bssid", bssid);
+            return AttendanceMark.buildPresentUpdates(sessionId, enrollment, markKey, deviceMarkedAt, verification);
+        }
+
+        String toJson() throws JSONException {
+            JSONObject json = new JSONObject();
+            json.put("session_id", sessionId);
+            json.put("enrollment", enrollment);
+            json.put("mark_key", markKey);
+            json.put("device_marked_at", deviceMarkedAt);
+            if (verificationMethod != null) json.put("method", verificationMethod);
+            if (ssid != null) json.put("ssid", ssid);
+            if (bssid != null) json.put("bssid", bssid);
+            return json.toString();
+        }
+
+        static PendingMark fromJson(String raw) throws JSONException {
+            JSONObject json = new JSONObject(raw);
+            return new PendingMark(json.getString("session_id"), json.getString("enrollment"),
+                    json.getString("mark_key"), json.optLong("device_marked_at", 0L), optional(json, "method"),
+                    optional(json, "ssid"), optional(json, "bssid"));
+        }
+
+        private static String optional(JSONObject json, String key) {
+            return json.has(key) ? json.optString(key, null) : null;
+        }
+    }
+
+    private MarkQueue() { }
+
+    static String queueKey(String sessionId, String enrollment) {
+        return sessionId + "|" + enrollment;
+    }
+
+    private static SharedPreferences prefs(Context context) {
+        return context.getApplicationContext().getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+    }
+
+    /**
+     * Stores the mark, sends it immediately and schedules a background replay as a backstop
+     */
+    public static void submit(@NonNull Context context, @NonNull PendingMark mark) {
+        Context appContext = context.getApplicationContext();
+        synchronized (lock) {
+            try {
+                prefs(appContext).edit().putString(queueKey(mark.sessionId, mark.enrollment), mark.toJson()).apply();
+            } catch (JSONException e) {
+                Log.e(TAG, "Could not store mark for " + mark.enrollment + ": " + e.getMessage());
+            }
+        }
+        Log.d(TAG, "Queued mark " + mark.markKey + " for " + mark.sessionId);
+
+        FirebaseDatabase.getInstance().getReference().updateChildren(mark.toUpdates(), (error, ref) -> {
+            if (error == null) {
+                complete(appContext, mark);
+            } else if (error.getCode() == DatabaseError.PERMISSION_DENIED) {
+                storedStatusRef(mark).addListenerForSingleValueEvent(new ValueEventListener() {
+                    @Override
+                    public void onDataChange(@NonNull DataSnapshot snapshot) {
+                        denied(appContext, mark, error, snapshot.getValue(String.class));
+                    }
+
+                    @Override
+                    public void onCancelled(@NonNull DatabaseError readError) {
+                        Log.w(TAG, "Mark " + mark.markKey + " left for replay, status read failed: "
+                                + readError.getMessage());
+                    }
+                });
+            } else {
+                Log.w(TAG, "Mark " + mark.markKey + " left for replay: " + error.getMessage());
+            }
+        });
+        MarkReplayWorker.schedule(appContext);
+    }
+
+    public static boolean isQueued(@NonNull Context context, @NonNull String sessionId, @NonNull String enrollment) {
+        return prefs(context).contains(queueKey(sessionId, enrollment));
+    }
+
+    public static List<PendingMark> pending(@NonNull Context context) {
+        List<PendingMark> marks = new ArrayList<>();
+        synchronized (lock) {
+            for (Map.Entry<String, ?> entry : prefs(context).getAll().entrySet()) {
+                if (!(entry.getValue() instanceof String)) continue;
+                try {
+                    marks.add(PendingMark.fromJson((String) entry.getValue()));
+                } catch (JSONException e) {
+                    Log.e(TAG, "Dropping unreadable queued mark " + entry.getKey());
+                    prefs(context).edit().remove(entry.getKey()).apply();
+                }
+            }
+        }
+        return marks;
+    }
+
+    /**
+     * Removes the entry; only the caller that actually removed it gets true
+     */
+    private static boolean remove(Context context, PendingMark mark) {
+        synchronized (lock) {
+            String key = queueKey(mark.sessionId, mark.enrollment);
+            if (!prefs(context).contains(key)) return false;
+            prefs(context).edit().remove(key).apply();
+            return true;
+        }
+    }
+
+    /**
+     * The server accepted the mark. Counters move once, whichever path delivered it first.
+     */
+    static void complete(@NonNull Context context, @NonNull PendingMark mark) {
+        if (!remove(context, mark)) return;
+        AttendanceMark.stampMarkedAt(mark.sessionId, mark.enrollment);
+        SessionCounters.settle(mark.sessionId, mark.enrollment, AttendanceMark.STATUS_PRESENT);
+        AttendanceSummary.count(mark.enrollment, mark.sessionId, StudentAttendance.CODE_PRESENT);
+        Log.d(TAG, "Mark " + mark.markKey + " synced after "
+                + (System.currentTimeMillis() - mark.deviceMarkedAt) + "ms");
+    }
+
+    /**
+     * The student's session-level attendance_status, read back when a write is refused
+     */
+    static DatabaseReference storedStatusRef(@NonNull PendingMark mark) {
+        return FirebaseDatabase.getInstance().getReference("AttendanceReport").child(mark.sessionId)
+                .child("Students").child(mark.enrollment).child("attendance_status");
+    }
+
+    /**
+     * The server refused the write. An earlier delivery whose ack was lost, or another device, may
+     * already have recorded the student present; that counts as success. Otherwise the mark is rejected.
+     */
+    static void denied(@NonNull Context context, @NonNull PendingMark mark, @NonNull DatabaseError error,
+                       String storedStatus) {
+        if (AttendanceMark.STATUS_PRESENT.equals(storedStatus)) {
+            Log.d(TAG, "Mark " + mark.markKey + " refused but already stored as Present");
+            complete(context, mark);
+        } else {
+            reject(context, mark, error);
+        }
+    }
+
+    /**
+     * The server refused the mark (session closed before it arrived); drop it and tell the student
+     */
+    private static void reject(@NonNull Context context, @NonNull PendingMark mark, @NonNull DatabaseError error) {
+        if (!remove(context, mark)) return;
+        Log.w(TAG, "Mark " + mark.markKey + " rejected: " + error.getMessage());
+        NotificationHelper.notifyAttendanceResult(context, mark.markKey.hashCode(),
+                "Attendance not recorded",
+                "Your mark reached the server after the session closed. Please contact your faculty.");
+    }
+}
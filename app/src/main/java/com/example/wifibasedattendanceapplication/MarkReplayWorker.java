@@ -0,0 +1,117 @@
+package com.example.wifibasedattendanceapplication;
+
+import android.content.Context;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.work.BackoffPolicy;
+import androidx.work.Constraints;
+import androidx.work.ExistingWorkPolicy;
+import androidx.work.NetworkType;
+import androidx.work.OneTimeWorkRequest;
+import androidx.work.WorkManager;
+import androidx.work.Worker;
+import androidx.work.WorkerParameters;
+
+import com.google.android.gms.tasks.TaskCompletionSource;
+import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.database.DataSnapshot;
+import com.google.firebase.database.DatabaseError;
+import com.google.firebase.database.FirebaseDatabase;
+import com.google.firebase.database.ValueEventListener;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Replays queued attendance marks from {@link MarkQueue} once the device has a network.
+ *
+ * Marks still without an acknowledgement keep the work in exponential backoff. When the server
+ * refuses a mark, the stored status is read back first: a mark already recorded as Present (its
+ * first write landed but the ack was lost) completes normally, anything else is dropped by the queue.
+ */
+public class MarkReplayWorker extends Worker {
+
+    private static final String UNIQUE_NAME = "mark_replay";
+    private static final long WRITE_TIMEOUT_SECONDS = 30;
+    private static final long INITIAL_BACKOFF_SECONDS = 10;
+    private static final String TAG = "MarkReplayWorker";
+
+    public MarkReplayWorker(@NonNull Context context, @NonNull WorkerParameters params) {
+        super(context, params);
+    }
+
+    /**
+     * Enqueues the replay unless one is already pending or running; one run drains the whole queue
+     */
+    public static void schedule(@NonNull Context context) {
+        Constraints constraints = new Constraints.Builder()
+                .setRequiredNetworkType(NetworkType.CONNECTED)
+                .build();
+        OneTimeWorkRequest request = new OneTimeWorkRequest.Builder(MarkReplayWorker.class)
+                .setConstraints(constraints)
+                .setBackoffCriteria(BackoffPolicy.EXPONENTIAL, INITIAL_BACKOFF_SECONDS, TimeUnit.SECONDS)
+                .build();
+        WorkManager.getInstance(context.getApplicationContext())
+                .enqueueUniqueWork(UNIQUE_NAME, ExistingWorkPolicy.KEEP, request);
+    }
+
+    @NonNull
+    @Override
+    public Result doWork() {
+        Context context = getApplicationContext();
+        List<MarkQueue.PendingMark> marks = MarkQueue.pending(context);
+        if (marks.isEmpty()) return Result.success();
+
+        int left = 0;
+        for (MarkQueue.PendingMark mark : marks) {
+            try {
+                DatabaseError error = replay(mark);
+                if (error == null) {
+                    MarkQueue.complete(context, mark);
+                } else if (error.getCode() == DatabaseError.PERMISSION_DENIED) {
+                    MarkQueue.denied(context, mark, error, storedStatus(mark));
+                } else {
+                    left++;
+                    Log.w(TAG, "Replay of " + mark.markKey + " failed: " + error.getMessage());
+                }
+            } catch (Exception e) {
+                left++;
+                Log.w(TAG, "Replay of " + mark.markKey + " timed out: " + e.getMessage());
+            }
+        }
+        Log.d(TAG, "Replayed " + (marks.size() - left) + "/" + marks.size() + " queued marks (attempt "
+                + (getRunAttemptCount() + 1) + ")");
+        // A tap queued while this run was under way is not in its list; come back for it
+        return left == 0 && MarkQueue.pending(context).isEmpty() ? Result.success() : Result.retry();
+    }
+
+    /**
+     * The student's stored session-level status, to tell a lost ack from a real rejection
+     */
+    private static String storedStatus(MarkQueue.PendingMark mark) throws Exception {
+        TaskCompletionSource<String> source = new TaskCompletionSource<>();
+        MarkQueue.storedStatusRef(mark).addListenerForSingleValueEvent(new ValueEventListener() {
+            @Override
+            public void onDataChange(@NonNull DataSnapshot snapshot) {
+                source.trySetResult(snapshot.getValue(String.class));
+            }
+
+            @Override
+            public void onCancelled(@NonNull DatabaseError error) {
+                source.trySetException(error.toException());
+            }
+        });
+        return Tasks.await(source.getTask(), WRITE_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Sends the mark's multi-path update and waits for the server's answer; null means accepted
+     */
+    private static DatabaseError replay(MarkQueue.PendingMark mark) throws Exception {
+        TaskCompletionSource<DatabaseError> source = new TaskCompletionSource<>();
+        FirebaseDatabase.getInstance().getReference().updateChildren(mark.toUpdates(),
+                (error, ref) -> source.trySetResult(error));
+        return Tasks.await(source.getTask(), WRITE_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+    }
+}
@@ -9,11 +9,7 @@ import android.widget.TextView;
 import androidx.annotation.NonNull;
 
 import com.google.firebase.auth.FirebaseAuth;
-import com.google.firebase.database.DataSnapshot;
 import com.google.firebase.database.DatabaseError;
-import com.google.firebase.database.DatabaseReference;
-import com.google.firebase.database.FirebaseDatabase;
-import com.google.firebase.database.ValueEventListener;
 
 public class ProfileActivity extends BaseAuthenticatedActivity {
 
@@ -26,15 +22,11 @@ public class ProfileActivity extends BaseAuthenticatedActivity {
     private ImageView btnBack;
     private TextView btnDone;
 
-    private DatabaseReference studentsRef;
-
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_profile);
 
-        studentsRef = FirebaseDatabase.getInstance().getReference("Students");
-
         initViews();
         setupClicks();
         loadProfile();
@@ -66,35 +58,30 @@ public class ProfileActivity extends BaseAuthenticatedActivity {
             return;
         }
 
-        studentsRef.orderByChild("student_email").equalTo(email)
-                .addListenerForSingleValueEvent(new ValueEventListener() {
-                    @Override
-                    public void onDataChange(@NonNull DataSnapshot snapshot) {
-                        if (!snapshot.exists()) {
-                            Log.w(TAG, "Student not found for email: " + email);
-                            bindPlaceholders();
-                            return;
-                        }
-
-                        // Take the first matched student
-                        for (DataSnapshot child : snapshot.getChildren()) {
-                            bindFromSnapshot(child);
-                            break;
-                        }
-                    }
-
-                    @Override
-                    public void onCancelled(@NonNull DatabaseError error) {
-                        Log.e(TAG, "loadProfile cancelled: " + error.getMessage());
-                        bindPlaceholders();
-                    }
-                });
+        StudentSessionCache.get(this).load(this, new StudentSessionCache.Callback() {
+            @Override
+            public void onReady(@NonNull StudentSessionCache.Snapshot snapshot) {
+                bindFromProfile(snapshot.profile);
+            }
+
+            @Override
+            public void onNotFound() {
+                Log.w(TAG, "Student not found for email: " + email);
+                bindPlaceholders();
+            }
+
+            @Override
+            public void onError(@NonNull DatabaseError error) {
+                Log.e(TAG, "loadProfile cancelled: " + error.getMessage());
+                bindPlaceholders();
+            }
+        });
     }
 
-    private void bindFromSnapshot(DataSnapshot s) {
-        String name = getStringValue(s, "student_name", "Student");
-        String division = getStringValue(s, "Division", null);
-        String rollNo = getStringValue(s, "roll_no", null);
+    private void bindFromProfile(StudentSessionCache.Profile profile) {
+        String name = valueOr(profile.name, "Student");
+        String division = profile.division;
+        String rollNo = profile.rollNo;
         tvName.setText(name);
         String classRoll;
         if (division != null || rollNo != null) {
@@ -105,8 +92,8 @@ public class ProfileActivity extends BaseAuthenticatedActivity {
             classRoll = "Class";
         }
         tvClassRoll.setText(classRoll);
-        tvAcademicYear.setText(getStringValue(s, "academic_year", "2024-2025"));
-        tvStudentEmail.setText(getStringValue(s, "student_email", ""));
+        tvAcademicYear.setText(valueOr(profile.academicYear, "2024-2025"));
+        tvStudentEmail.setText(valueOr(profile.email, ""));
     }
 
     private void bindPlaceholders() {
@@ -120,8 +107,7 @@ public class ProfileActivity extends BaseAuthenticatedActivity {
         tvClassRoll.setText("Class");
     }
 
-    private String getStringValue(DataSnapshot s, String key, String fallback) {
-        String v = s.child(key).getValue(String.class);
+    private String valueOr(String v, String fallback) {
         return v != null ? v : fallback;
     }
 
@@ -0,0 +1,115 @@
+package com.example.wifibasedattendanceapplication;
+
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import com.google.firebase.database.DatabaseReference;
+import com.google.firebase.database.FirebaseDatabase;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Initializes a session roster with multi-path updateChildren writes.
+ *
+ * Each student contributes two paths:
+ *   AttendanceReport/{sessionId}/Students/{enr}/attendance_status = "Not Marked"
+ *   Students/{enr}/Attendance/{sessionId} = { status: "A", subject, period_date, start_ms, day_key }
+ *
+ * Every committed batch also adds its students to the session's not_marked_count.
+ *
+ * A division that fits in one batch is committed as a single atomic write. Very large rosters are
+ * split into batches of {@link #MAX_STUDENTS_PER_BATCH} students, written one after another so that
+ * each batch is still atomic and a failure stops before the next batch is sent.
+ */
+public class RosterInitializer {
+
+    private static final String TAG = "RosterInitializer";
+    public static final int MAX_STUDENTS_PER_BATCH = 250;
+
+    private final DatabaseReference rootRef;
+    private final int studentsPerBatch;
+
+    public interface Callback {
+        void onBatchCommitted(int batchIndex, int batchCount, int studentsInBatch, long latencyMs);
+        void onComplete(int totalStudents, int batchCount, long totalLatencyMs);
+        void onError(int failedBatchIndex, @NonNull Exception e);
+    }
+
+    public RosterInitializer() {
+        this(FirebaseDatabase.getInstance().getReference(), MAX_STUDENTS_PER_BATCH);
+    }
+
+    public RosterInitializer(@NonNull DatabaseReference rootRef, int studentsPerBatch) {
+        this.rootRef = rootRef;
+        this.studentsPerBatch = Math.max(1, studentsPerBatch);
+    }
+
+    /**
+     * Builds the multi-path update map for one batch of enrollments
+     */
+    public static Map<String, Object> buildRosterUpdates(@NonNull String sessionId,
+                                                         @NonNull StudentAttendance.SessionDetails details,
+                                                         @NonNull List<String> enrollments) {
+        Map<String, Object> updates = new HashMap<>();
+        for (String enrollmentNo : enrollments) {
+            updates.put("AttendanceReport/" + sessionId + "/Students/" + enrollmentNo + "/attendance_status", "Not Marked");
+            // default absent until marked
+            updates.put(StudentAttendance.entryPath(enrollmentNo, sessionId),
+                    StudentAttendance.entryValue(StudentAttendance.CODE_ABSENT, details));
+        }
+        return updates;
+    }
+
+    public void initialize(@NonNull String sessionId, @NonNull StudentAttendance.SessionDetails details,
+                           @NonNull List<String> enrollments, @NonNull Callback callback) {
+        List<List<String>> batches = new ArrayList<>();
+        for (int i = 0; i < enrollments.size(); i += studentsPerBatch) {
+            batches.add(enrollments.subList(i, Math.min(enrollments.size(), i + studentsPerBatch)));
+        }
+
+        if (batches.isEmpty()) {
+            callback.onComplete(0, 0, 0L);
+            return;
+        }
+
+        Log.d(TAG, "Initializing " + enrollments.size() + " students for " + sessionId
+                + " in " + batches.size() + " batch(es)");
+        commitBatch(sessionId, details, batches, 0, 0L, enrollments.size(), callback);
+    }
+
+    private void commitBatch(String sessionId, StudentAttendance.SessionDetails details,
+                             List<List<String>> batches, int index, long elapsedMs,
+                             int totalStudents, Callback callback) {
+        List<String> batch = batches.get(index);
+        Map<String, Object> updates = buildRosterUpdates(sessionId, details, batch);
+        long startedAt = SystemClock.elapsedRealtime();
+
+        rootRef.updateChildren(updates).addOnCompleteListener(task -> {
+            long latencyMs = SystemClock.elapsedRealtime() - startedAt;
+            if (!task.isSuccessful()) {
+                Exception e = task.getException() != null ? task.getException()
+                        : new IllegalStateException("Roster batch write failed");
+                Log.e(TAG, "Batch " + (index + 1) + "/" + batches.size() + " failed after " + latencyMs + "ms", e);
+                callback.onError(index, e);
+                return;
+            }
+
+            Log.d(TAG, "Batch " + (index + 1) + "/" + batches.size() + " committed: "
+                    + batch.size() + " students in " + latencyMs + "ms");
+            SessionCounters.addNotMarked(sessionId, batch);
+            callback.onBatchCommitted(index, batches.size(), batch.size(), latencyMs);
+
+            long totalMs = elapsedMs + latencyMs;
+            if (index + 1 < batches.size()) {
+                commitBatch(sessionId, details, batches, index + 1, totalMs, totalStudents, callback);
+            } else {
+                callback.onComplete(totalStudents, batches.size(), totalMs);
+            }
+        });
+    }
+}
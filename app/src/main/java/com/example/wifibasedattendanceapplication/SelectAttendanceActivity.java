@@ -1,7 +1,6 @@
 package com.example.wifibasedattendanceapplication;
 
 import androidx.annotation.NonNull;
-import androidx.appcompat.app.AppCompatActivity;
 
 import android.content.Intent;
 import android.os.Bundle;
@@ -21,7 +20,7 @@ import java.text.SimpleDateFormat;
 import java.util.Date;
 import java.util.Locale;
 
-public class SelectAttendanceActivity extends AppCompatActivity {
+public class SelectAttendanceActivity extends BaseAuthenticatedActivity {
 
     private static final String TAG = "SelectAttendance";
     
@@ -35,6 +34,7 @@ public class SelectAttendanceActivity extends AppCompatActivity {
     private String requiredSsid; // Optional SSID that must be connected (faculty hotspot)
     private boolean allowUniversityWifi; // If true, allow recognized university Wi‑Fi as an alternative
     private static final int LOCATION_PERMISSION_REQUEST_CODE = 3211;
+    private String verificationMethod; // Which network check the tap passed, kept with a queued mark
     private int biometricRetryCount = 0;
     private static final int MAX_BIOMETRIC_RETRIES = 1;
 
@@ -286,8 +286,12 @@ public class SelectAttendanceActivity extends AppCompatActivity {
         studentAttendanceRef.addListenerForSingleValueEvent(new ValueEventListener() {
             @Override
             public void onDataChange(@NonNull DataSnapshot dataSnapshot) {
-                if (dataSnapshot.exists()) {
-                    String status = safeString(dataSnapshot.getValue());
+                if (MarkQueue.isQueued(SelectAttendanceActivity.this, sessionId, studentEnrollment)) {
+                    // Marked on this device and still syncing
+                    presentButton.setText("Attendance Marked (syncing)");
+                    presentButton.setEnabled(false);
+                } else if (dataSnapshot.exists()) {
+                    String status = safeString(StudentAttendance.Entry.fromSnapshot(dataSnapshot).status);
                     if ("P".equals(status)) {
                         // Already marked present
                         presentButton.setText("Already Marked Present");
@@ -339,6 +343,7 @@ public class SelectAttendanceActivity extends AppCompatActivity {
                         Toast.makeText(SelectAttendanceActivity.this, msg, Toast.LENGTH_LONG).show();
                         return;
                     }
+                    verificationMethod = onFacultyHotspot ? "faculty_hotspot" : "university_wifi";
                 } else if (allowUniversityWifi) {
                     // No hotspot specified, but faculty allowed uni Wi‑Fi → require recognized campus network
                     if (!isConnectedToUniversityNetwork()) {
@@ -347,6 +352,9 @@ public class SelectAttendanceActivity extends AppCompatActivity {
                                 Toast.LENGTH_LONG).show();
                         return;
                     }
+                    verificationMethod = "university_wifi";
+                } else {
+                    verificationMethod = "unrestricted";
                 }
                 // Require strong biometric authentication before marking attendance
                 if (!BiometricAuthUtil.isStrongBiometricAvailable(SelectAttendanceActivity.this)) {
@@ -482,57 +490,44 @@ public class SelectAttendanceActivity extends AppCompatActivity {
 
         Log.d(TAG, "Marking attendance for student " + studentEnrollment + " in session " + sessionId);
 
-        // Disable button to prevent multiple clicks
+        // The mark is stored on the device first and synced by MarkQueue (immediately when the
+        // network allows, otherwise by a background replay), so the student is not left waiting on an ack
+        String markKey = AttendanceMark.markKey(this, sessionId, studentEnrollment);
+        String[] wifi = currentWifiIdentity();
+        MarkQueue.submit(this, new MarkQueue.PendingMark(sessionId, studentEnrollment, markKey,
+                System.currentTimeMillis(), verificationMethod, wifi[0], wifi[1]));
+
         presentButton.setEnabled(false);
-        presentButton.setText("Marking Attendance...");
-
-        // Mark attendance as present in both locations
-        studentAttendanceRef.setValue("P").addOnCompleteListener(task -> {
-            if (task.isSuccessful()) {
-                Log.d(TAG, "Successfully marked student attendance as Present");
-                
-                // Also update the session-level attendance
-                DatabaseReference sessionAttendanceRef = FirebaseDatabase.getInstance()
-                    .getReference("AttendanceReport")
-                    .child(sessionId)
-                    .child("Students")
-                    .child(studentEnrollment)
-                    .child("attendance_status");
-                    
-                sessionAttendanceRef.setValue("Present").addOnCompleteListener(sessionTask -> {
-                    if (sessionTask.isSuccessful()) {
-                        Log.d(TAG, "Successfully updated session-level attendance");
-                        
-                        // Success - show confirmation
-                        presentButton.setText("Attendance Marked!");
-                        Toast.makeText(SelectAttendanceActivity.this, 
-                            "Attendance marked successfully!", Toast.LENGTH_LONG).show();
-                        
-                        // Navigate to confirmation screen after delay
-                        new android.os.Handler().postDelayed(() -> {
-                            Intent intent = new Intent(SelectAttendanceActivity.this, 
-                                activity_presence_recorded.class);
-                            startActivity(intent);
-                            finish();
-                        }, 2000);
-                    } else {
-                        // Session update failed
-                        Log.e(TAG, "Failed to update session attendance: " + sessionTask.getException());
-                        Toast.makeText(SelectAttendanceActivity.this, 
-                            "Attendance marked but session update failed!", Toast.LENGTH_SHORT).show();
-                        presentButton.setEnabled(true);
-                        presentButton.setText("Mark Present");
-                    }
-                });
-            } else {
-                // Student attendance update failed
-                Log.e(TAG, "Failed to mark attendance: " + task.getException());
-                Toast.makeText(SelectAttendanceActivity.this, 
-                    "Failed to mark attendance. Please try again!", Toast.LENGTH_SHORT).show();
-                presentButton.setEnabled(true);
-                presentButton.setText("Mark Present");
+        presentButton.setText("Attendance Marked!");
+        Toast.makeText(SelectAttendanceActivity.this,
+            "Attendance recorded! It will sync automatically if the network is slow.", Toast.LENGTH_LONG).show();
+
+        // Navigate to confirmation screen after delay
+        new android.os.Handler().postDelayed(() -> {
+            Intent intent = new Intent(SelectAttendanceActivity.this,
+                activity_presence_recorded.class);
+            startActivity(intent);
+            finish();
+        }, 2000);
+    }
+
+    /**
+     * SSID and BSSID of the current Wi-Fi, kept as evidence with a queued mark (nulls if unavailable)
+     */
+    private String[] currentWifiIdentity() {
+        try {
+            android.net.wifi.WifiManager wifiManager = (android.net.wifi.WifiManager) getApplicationContext().getSystemService(android.content.Context.WIFI_SERVICE);
+            if (wifiManager == null || !wifiManager.isWifiEnabled()) return new String[]{null, null};
+            android.net.wifi.WifiInfo info = wifiManager.getConnectionInfo();
+            if (info == null) return new String[]{null, null};
+            String ssid = info.getSSID();
+            if (ssid != null && ssid.startsWith("\"") && ssid.endsWith("\"")) {
+                ssid = ssid.substring(1, ssid.length() - 1);
             }
-        });
+            return new String[]{ssid, info.getBSSID()};
+        } catch (SecurityException se) {
+            return new String[]{null, null};
+        }
     }
 
     private void startSessionMonitoring() {
@@ -542,7 +537,8 @@ public class SelectAttendanceActivity extends AppCompatActivity {
             .child(sessionId)
             .child("session_status");
             
-        sessionStatusRef.addValueEventListener(new ValueEventListener() {
+        // Held by the registry: detached when the screen stops, never duplicated on re-entry
+        listeners.addValueListener("session_status", sessionStatusRef, new ValueEventListener() {
             @Override
             public void onDataChange(@NonNull DataSnapshot dataSnapshot) {
                 if (dataSnapshot.exists()) {
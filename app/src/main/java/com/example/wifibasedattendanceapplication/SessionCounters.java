@@ -0,0 +1,326 @@
+package com.example.wifibasedattendanceapplication;
+
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import com.google.firebase.database.DataSnapshot;
+import com.google.firebase.database.DatabaseError;
+import com.google.firebase.database.DatabaseReference;
+import com.google.firebase.database.FirebaseDatabase;
+import com.google.firebase.database.MutableData;
+import com.google.firebase.database.Transaction;
+import com.google.firebase.database.ValueEventListener;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Per-session attendance counters kept next to the session so reports need a single small read.
+ *
+ * Layout: AttendanceReport/{sessionId}/attendance_counts = {
+ *     present_count, absent_count, not_marked_count,
+ *     counted: { {enrollment}: counter the student is counted under }
+ * }
+ *
+ * Everything lives in one child so every change is a single runTransaction over a small node (a
+ * transaction on the session itself would pull down its whole Students map). A student without a
+ * "counted" entry is counted as not marked, which is how rostering adds them ({@link #addNotMarked}
+ * skips students a settle reached first). {@link #settle}
+ * moves a student from the counter recorded for them to the one for the status just written, in
+ * the same transaction that updates the marker, so a transition is applied once however many
+ * devices or retries report it. {@link #reconcile} rebuilds the counters from the session roster,
+ * also transactionally, when they are missing or suspected to have drifted.
+ */
+public final class SessionCounters {
+
+    public static final String NODE = "attendance_counts";
+    public static final String PRESENT = "present_count";
+    public static final String ABSENT = "absent_count";
+    public static final String NOT_MARKED = "not_marked_count";
+    static final String COUNTED = "counted";
+    private static final String TAG = "SessionCounters";
+
+    public static class Counts {
+        public final long present;
+        public final long absent;
+        public final long notMarked;
+
+        public Counts(long present, long absent, long notMarked) {
+            this.present = present;
+            this.absent = absent;
+            this.notMarked = notMarked;
+        }
+
+        public long total() {
+            return present + absent + notMarked;
+        }
+
+        /**
+         * These counts with one student moved from counter "from" to counter "to"; none goes below zero
+         */
+        public Counts moved(String from, String to) {
+            return plus(delta(PRESENT, from, to), delta(ABSENT, from, to), delta(NOT_MARKED, from, to));
+        }
+
+        public Counts plus(long presentDelta, long absentDelta, long notMarkedDelta) {
+            return new Counts(Math.max(0L, present + presentDelta),
+                    Math.max(0L, absent + absentDelta),
+                    Math.max(0L, notMarked + notMarkedDelta));
+        }
+    }
+
+    public interface CountsCallback {
+        void onCounts(@NonNull Counts counts);
+        void onError(@NonNull DatabaseError error);
+    }
+
+    private SessionCounters() { }
+
+    private static DatabaseReference countsRef(String sessionId) {
+        return FirebaseDatabase.getInstance().getReference("AttendanceReport").child(sessionId).child(NODE);
+    }
+
+    /**
+     * Maps a stored status ("Present"/"P", "Absent"/"A", anything else) to its counter field
+     */
+    public static String counterFor(String status) {
+        if ("Present".equalsIgnoreCase(status) || "P".equalsIgnoreCase(status)) return PRESENT;
+        if ("Absent".equalsIgnoreCase(status) || "A".equalsIgnoreCase(status)) return ABSENT;
+        return NOT_MARKED;
+    }
+
+    /**
+     * Counts one student under the counter for the status that was just written to their
+     * attendance_status, moving them off whatever counter they were counted under before
+     */
+    public static void settle(@NonNull String sessionId, @NonNull String enrollment, String status) {
+        String to = counterFor(status);
+        final String[] from = new String[1];
+        countsRef(sessionId).runTransaction(new Transaction.Handler() {
+            @NonNull
+            @Override
+            public Transaction.Result doTransaction(@NonNull MutableData current) {
+                // An empty node is settled from zero: if the server holds counters it reruns this
+                // with them, and if the roster has not been counted yet addNotMarked skips this student
+                MutableData marker = current.child(COUNTED).child(enrollment);
+                String previous = marker.getValue(String.class);
+                Counts next = settled(read(current), previous, status);
+                if (next == null) {
+                    return Transaction.abort();
+                }
+                from[0] = previous != null ? previous : NOT_MARKED;
+                write(current, next);
+                marker.setValue(to);
+                return Transaction.success(current);
+            }
+
+            @Override
+            public void onComplete(DatabaseError error, boolean committed, DataSnapshot snapshot) {
+                if (error != null) {
+                    Log.e(TAG, "Counter update failed for " + sessionId + "/" + enrollment + ": " + error.getMessage());
+                } else if (committed && from[0] != null) {
+                    Log.d(TAG, "Counters for " + sessionId + ": " + enrollment + " " + from[0] + " -> " + to);
+                }
+            }
+        });
+    }
+
+    /**
+     * The counts once a student whose marker is "counted" (null: none yet, so not marked) is
+     * settled at the counter for status; null if they are already counted there
+     */
+    static Counts settled(@NonNull Counts counts, String counted, String status) {
+        String from = counted != null ? counted : NOT_MARKED;
+        String to = counterFor(status);
+        return from.equals(to) ? null : counts.moved(from, to);
+    }
+
+    /**
+     * Adds newly rostered students to not_marked_count, except those a settle has already counted
+     * (a mark that landed before its roster batch)
+     */
+    public static void addNotMarked(@NonNull String sessionId, @NonNull List<String> enrollments) {
+        if (enrollments.isEmpty()) return;
+        countsRef(sessionId).runTransaction(new Transaction.Handler() {
+            @NonNull
+            @Override
+            public Transaction.Result doTransaction(@NonNull MutableData current) {
+                Set<String> counted = new HashSet<>();
+                for (MutableData marker : current.child(COUNTED).getChildren()) {
+                    counted.add(marker.getKey());
+                }
+                write(current, rostered(read(current), enrollments, counted));
+                return Transaction.success(current);
+            }
+
+            @Override
+            public void onComplete(DatabaseError error, boolean committed, DataSnapshot snapshot) {
+                if (error != null) {
+                    Log.e(TAG, "Counter update failed for " + sessionId + ": " + error.getMessage());
+                } else {
+                    Log.d(TAG, "Counters for " + sessionId + ": rostered " + enrollments.size() + " students");
+                }
+            }
+        });
+    }
+
+    /**
+     * The counts once enrollments are rostered; those with a counted marker are already in a counter
+     */
+    static Counts rostered(@NonNull Counts counts, @NonNull Collection<String> enrollments,
+                           @NonNull Collection<String> counted) {
+        int added = 0;
+        for (String enrollment : enrollments) {
+            if (!counted.contains(enrollment)) added++;
+        }
+        return counts.plus(0, 0, added);
+    }
+
+    /**
+     * Change to one counter when a student moves from counter "from" to counter "to"
+     */
+    static int delta(String counter, String from, String to) {
+        return (counter.equals(to) ? 1 : 0) - (counter.equals(from) ? 1 : 0);
+    }
+
+    private static Counts read(MutableData data) {
+        return new Counts(read(data, PRESENT), read(data, ABSENT), read(data, NOT_MARKED));
+    }
+
+    private static long read(MutableData data, String counter) {
+        Long value = data.child(counter).getValue(Long.class);
+        return value != null ? value : 0L;
+    }
+
+    private static void write(MutableData data, Counts counts) {
+        data.child(PRESENT).setValue(counts.present);
+        data.child(ABSENT).setValue(counts.absent);
+        data.child(NOT_MARKED).setValue(counts.notMarked);
+    }
+
+    /**
+     * Keeps the callback current with a value listener on the counters node, registered in
+     * listeners under key. A session without counters is reconciled once; the written counters
+     * then arrive through the same listener.
+     */
+    public static void watch(@NonNull ListenerRegistry listeners, @NonNull String key, @NonNull String sessionId,
+                             @NonNull CountsCallback callback) {
+        listeners.addValueListener(key, countsRef(sessionId), new ValueEventListener() {
+            private boolean reconciled;
+
+            @Override
+            public void onDataChange(@NonNull DataSnapshot snapshot) {
+                if (!snapshot.exists()) {
+                    if (reconciled) return;
+                    reconciled = true;
+                    Log.d(TAG, "No counters for " + sessionId + ", reconciling from roster");
+                    reconcile(sessionId, null);
+                    return;
+                }
+                callback.onCounts(fromSnapshot(snapshot));
+            }
+
+            @Override
+            public void onCancelled(@NonNull DatabaseError error) {
+                callback.onError(error);
+            }
+        });
+    }
+
+    /**
+     * Reconciliation job: recounts AttendanceReport/{sessionId}/Students and rewrites the counters
+     * and every student's counted marker in one transaction, so marks settled while the roster was
+     * being read are not overwritten. Statuses only move away from not marked, so where the roster
+     * read and a marker disagree the further one wins: a marker ahead of the read was settled after
+     * it, a read ahead of the marker is a mark whose settle never ran. The callback is optional.
+     */
+    public static void reconcile(@NonNull String sessionId, CountsCallback callback) {
+        FirebaseDatabase.getInstance().getReference("AttendanceReport").child(sessionId).child("Students")
+                .addListenerForSingleValueEvent(new ValueEventListener() {
+                    @Override
+                    public void onDataChange(@NonNull DataSnapshot studentsSnap) {
+                        Map<String, String> roster = new HashMap<>();
+                        for (DataSnapshot student : studentsSnap.getChildren()) {
+                            if (student.getKey() == null) continue;
+                            Object status = student.child("attendance_status").getValue();
+                            roster.put(student.getKey(), counterFor(status != null ? String.valueOf(status) : null));
+                        }
+                        recount(sessionId, roster, callback);
+                    }
+
+                    @Override
+                    public void onCancelled(@NonNull DatabaseError error) {
+                        Log.e(TAG, "Reconcile failed for " + sessionId + ": " + error.getMessage());
+                        if (callback != null) callback.onError(error);
+                    }
+                });
+    }
+
+    private static void recount(String sessionId, Map<String, String> roster, CountsCallback callback) {
+        countsRef(sessionId).runTransaction(new Transaction.Handler() {
+            @NonNull
+            @Override
+            public Transaction.Result doTransaction(@NonNull MutableData current) {
+                Map<String, String> counters = new HashMap<>(roster);
+                for (MutableData marker : current.child(COUNTED).getChildren()) {
+                    String counted = marker.getValue(String.class);
+                    if (marker.getKey() != null && counted != null) {
+                        counters.put(marker.getKey(), further(counters.get(marker.getKey()), counted));
+                    }
+                }
+                long present = 0, absent = 0, notMarked = 0;
+                Map<String, Object> markers = new HashMap<>();
+                for (Map.Entry<String, String> entry : counters.entrySet()) {
+                    String counter = entry.getValue();
+                    if (PRESENT.equals(counter)) present++;
+                    else if (ABSENT.equals(counter)) absent++;
+                    else notMarked++;
+                    markers.put(entry.getKey(), counter);
+                }
+                write(current, new Counts(present, absent, notMarked));
+                current.child(COUNTED).setValue(markers);
+                return Transaction.success(current);
+            }
+
+            @Override
+            public void onComplete(DatabaseError error, boolean committed, DataSnapshot snapshot) {
+                if (error != null) {
+                    Log.e(TAG, "Failed to write reconciled counters for " + sessionId + ": " + error.getMessage());
+                    if (callback != null) callback.onError(error);
+                    return;
+                }
+                Counts counts = fromSnapshot(snapshot);
+                Log.d(TAG, "Reconciled " + sessionId + ": present " + counts.present
+                        + ", absent " + counts.absent + ", not marked " + counts.notMarked);
+                if (callback != null) callback.onCounts(counts);
+            }
+        });
+    }
+
+    // Of two counters for one student, the one further from not marked
+    private static String further(String a, String b) {
+        if (a == null) return b;
+        if (b == null) return a;
+        return rank(b) > rank(a) ? b : a;
+    }
+
+    private static int rank(String counter) {
+        if (PRESENT.equals(counter)) return 2;
+        if (ABSENT.equals(counter)) return 1;
+        return 0;
+    }
+
+    private static Counts fromSnapshot(DataSnapshot snapshot) {
+        Long present = snapshot.child(PRESENT).getValue(Long.class);
+        Long absent = snapshot.child(ABSENT).getValue(Long.class);
+        Long notMarked = snapshot.child(NOT_MARKED).getValue(Long.class);
+        return new Counts(present != null ? present : 0L,
+                absent != null ? absent : 0L,
+                notMarked != null ? notMarked : 0L);
+    }
+}
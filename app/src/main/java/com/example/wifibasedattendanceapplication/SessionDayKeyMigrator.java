@@ -0,0 +1,50 @@
+package com.example.wifibasedattendanceapplication;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.WorkerThread;
+
+import com.google.firebase.database.DataSnapshot;
+
+import java.util.Map;
+
+/**
+ * One-off backfill of {@link SessionTime#DAY_KEY} on sessions, and on their students' attendance
+ * entries, written before day keys existed.
+ *
+ * Uses {@link StudentAttendanceMigrator#walk}, with its cursor under
+ * Maintenance/migrations/session_day_key. Sessions that already carry a day key are only
+ * read. Only day_key leaves are written, on the session and on its roster members' existing
+ * object entries, so statuses and the summary's counted markers are left as they are. Legacy
+ * string entries and active sessions are skipped; readers derive their day from the start time
+ * until then.
+ *
+ * Runs after the student attendance migration in {@link DataMigrationWorker}. Blocking.
+ */
+public final class SessionDayKeyMigrator {
+
+    private static final String STATE_PATH = "Maintenance/migrations/session_day_key";
+    private static final String TAG = "DayKeyMigrator";
+
+    private SessionDayKeyMigrator() { }
+
+    @WorkerThread
+    public static StudentAttendanceMigrator.Stats migrate() throws Exception {
+        return StudentAttendanceMigrator.walk(STATE_PATH, TAG, SessionDayKeyMigrator::putDayKey);
+    }
+
+    private static int putDayKey(@NonNull DataSnapshot session, @NonNull Map<String, Object> updates) throws Exception {
+        if (session.hasChild(SessionTime.DAY_KEY)) return 0;
+        int dayKey = SessionTime.dayKeyOf(session);
+        if (dayKey <= 0) return 0;
+        updates.put("AttendanceReport/" + session.getKey() + "/" + SessionTime.DAY_KEY, dayKey);
+        int added = 0;
+        for (Map.Entry<String, StudentAttendance.Entry> entry : StudentAttendanceMigrator.readEntries(session).entrySet()) {
+            // A leaf under a legacy string would replace it; StudentAttendance.load completes those
+            if (entry.getValue().legacy) continue;
+            updates.put(StudentAttendance.entryPath(entry.getKey(), session.getKey()) + "/" + StudentAttendance.DAY_KEY,
+                    dayKey);
+            added++;
+        }
+        return added;
+    }
+}
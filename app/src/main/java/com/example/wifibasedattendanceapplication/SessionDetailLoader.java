@@ -0,0 +1,153 @@
+package com.example.wifibasedattendanceapplication;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import com.google.firebase.database.DataSnapshot;
+import com.google.firebase.database.DatabaseError;
+import com.google.firebase.database.FirebaseDatabase;
+import com.google.firebase.database.ValueEventListener;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Shared reader of AttendanceReport/{sessionId} nodes for callers that still need one session per
+ * entry (legacy attendance entries, see {@link StudentAttendance#load}).
+ *
+ * At most {@link #MAX_IN_FLIGHT} reads run at once across every caller; the rest wait in a queue.
+ * A session that is already queued or in flight is not read again: the new caller joins the
+ * pending read, so the calendar, the chatbot and a summary rebuild asking for the same sessions at
+ * the same time cost one read each. Every {@link #load} completes within {@link #TIMEOUT_MS}; a read
+ * that has not answered by then is left out of the result instead of holding up the caller.
+ * Main thread only.
+ */
+public final class SessionDetailLoader {
+
+    static final int MAX_IN_FLIGHT = 8;
+    static final long TIMEOUT_MS = 15 * 1000;
+    private static final String TAG = "SessionDetailLoader";
+
+    private static final Handler mainHandler = new Handler(Looper.getMainLooper());
+    // sessionId -> loads waiting for it, for every session queued or in flight
+    private static final Map<String, List<Batch>> waiters = new HashMap<>();
+    private static final ArrayDeque<String> queue = new ArrayDeque<>();
+    private static int inFlight;
+
+    public interface Callback {
+        /**
+         * Sessions that exist, by id. Missing ids were deleted, failed or, if complete is false,
+         * had not answered within the timeout.
+         */
+        void onLoaded(@NonNull Map<String, DataSnapshot> sessions, boolean complete);
+    }
+
+    private SessionDetailLoader() { }
+
+    public static void load(@NonNull Collection<String> sessionIds, @NonNull Callback callback) {
+        Batch batch = new Batch(callback);
+        for (String sessionId : new LinkedHashSet<>(sessionIds)) {
+            batch.remaining++;
+            List<Batch> pending = waiters.get(sessionId);
+            if (pending != null) {
+                pending.add(batch); // already queued or being read for someone else
+                continue;
+            }
+            pending = new ArrayList<>();
+            pending.add(batch);
+            waiters.put(sessionId, pending);
+            queue.add(sessionId);
+        }
+        if (batch.remaining == 0) {
+            callback.onLoaded(batch.sessions, true);
+            return;
+        }
+        mainHandler.postDelayed(batch.timeout, TIMEOUT_MS);
+        pump();
+    }
+
+    private static void pump() {
+        while (inFlight < MAX_IN_FLIGHT && !queue.isEmpty()) {
+            String sessionId = queue.poll();
+            inFlight++;
+            FirebaseDatabase.getInstance().getReference("AttendanceReport").child(sessionId)
+                    .addListenerForSingleValueEvent(new ValueEventListener() {
+                        @Override
+                        public void onDataChange(@NonNull DataSnapshot snapshot) {
+                            settle(sessionId, snapshot.exists() ? snapshot : null);
+                        }
+
+                        @Override
+                        public void onCancelled(@NonNull DatabaseError error) {
+                            Log.e(TAG, "Session read failed for " + sessionId + ": " + error.getMessage());
+                            settle(sessionId, null);
+                        }
+                    });
+        }
+    }
+
+    private static void settle(String sessionId, DataSnapshot session) {
+        inFlight--;
+        List<Batch> pending = waiters.remove(sessionId);
+        if (pending != null) {
+            for (Batch batch : pending) {
+                batch.settle(sessionId, session);
+            }
+        }
+        pump();
+    }
+
+    private static class Batch {
+        final Callback callback;
+        final Map<String, DataSnapshot> sessions = new HashMap<>();
+        final Runnable timeout = new Runnable() {
+            @Override
+            public void run() {
+                expire();
+            }
+        };
+        int remaining;
+        boolean done;
+
+        Batch(Callback callback) {
+            this.callback = callback;
+        }
+
+        void settle(String sessionId, DataSnapshot session) {
+            if (done) return;
+            if (session != null) sessions.put(sessionId, session);
+            remaining--;
+            if (remaining == 0) {
+                done = true;
+                mainHandler.removeCallbacks(timeout);
+                callback.onLoaded(sessions, true);
+            }
+        }
+
+        void expire() {
+            if (done) return;
+            done = true;
+            Log.w(TAG, "Timed out with " + remaining + " sessions outstanding");
+            // Sessions nobody else waits for and that have not been sent yet are dropped from the queue
+            List<String> abandoned = new ArrayList<>();
+            for (Map.Entry<String, List<Batch>> entry : waiters.entrySet()) {
+                List<Batch> pending = entry.getValue();
+                pending.remove(this);
+                if (pending.isEmpty() && queue.contains(entry.getKey())) abandoned.add(entry.getKey());
+            }
+            for (String sessionId : abandoned) {
+                queue.remove(sessionId);
+                waiters.remove(sessionId);
+            }
+            callback.onLoaded(sessions, false);
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package com.example.wifibasedattendanceapplication;
+
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import com.google.firebase.database.ChildEventListener;
+import com.google.firebase.database.DataSnapshot;
+import com.google.firebase.database.DatabaseError;
+import com.google.firebase.database.FirebaseDatabase;
+import com.google.firebase.database.Query;
+import com.google.firebase.database.ValueEventListener;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Subscribes to one division's SessionEvents stream and delivers each event once.
+ *
+ * Only events written at or after the start time are downloaded. Event times are stamped by the
+ * server, so {@link #startFromServerTime} computes the start from the server clock rather than the
+ * device's. Each session's event of a given type is delivered at most once per monitor, however
+ * often it is restarted. The listener lives in the screen's {@link ListenerRegistry} under one key
+ * per division, so start() replaces any earlier subscription and callers that re-run their session
+ * check do not stack listeners.
+ */
+public class SessionEventMonitor {
+
+    public interface Listener {
+        void onSessionEvent(@NonNull SessionEvents.Event event);
+    }
+
+    private static final String TAG = "SessionEventMonitor";
+
+    private final ListenerRegistry registry;
+    private final String division;
+    // sessionId/type of every event already delivered
+    private final Set<String> delivered = new HashSet<>();
+
+    public SessionEventMonitor(@NonNull ListenerRegistry registry, @NonNull String division) {
+        this.registry = registry;
+        this.division = division;
+    }
+
+    private String key() {
+        return SessionEvents.NODE + "/" + division;
+    }
+
+    /**
+     * Listens for events the server stamped within marginMs before now, or later. The margin
+     * should cover the time since the caller last looked at session state, so an event written
+     * while that lookup was answering is not missed.
+     */
+    public void startFromServerTime(long marginMs, @NonNull Listener listener) {
+        FirebaseDatabase.getInstance().getReference(".info/serverTimeOffset")
+                .addListenerForSingleValueEvent(new ValueEventListener() {
+                    @Override
+                    public void onDataChange(@NonNull DataSnapshot snapshot) {
+                        Long offset = snapshot.getValue(Long.class);
+                        start(System.currentTimeMillis() + (offset != null ? offset : 0L) - marginMs, listener);
+                    }
+
+                    @Override
+                    public void onCancelled(@NonNull DatabaseError error) {
+                        Log.w(TAG, "Server time offset unavailable, using the device clock: " + error.getMessage());
+                        start(System.currentTimeMillis() - marginMs, listener);
+                    }
+                });
+    }
+
+    /**
+     * Listens for events stamped at or after sinceMillis, in server time
+     */
+    public void start(long sinceMillis, @NonNull Listener listener) {
+        Query query = FirebaseDatabase.getInstance().getReference(SessionEvents.NODE).child(division)
+                .orderByChild(SessionEvents.AT).startAt(sinceMillis);
+        registry.addChildListener(key(), query, new ChildEventListener() {
+            @Override
+            public void onChildAdded(@NonNull DataSnapshot snapshot, String previousChildName) {
+                SessionEvents.Event event = SessionEvents.Event.fromSnapshot(snapshot);
+                if (event == null || !delivered.add(event.sessionId + "/" + event.type)) return;
+                Log.d(TAG, "Division " + division + ": " + event.type + " " + event.sessionId);
+                listener.onSessionEvent(event);
+            }
+
+            @Override
+            public void onChildChanged(@NonNull DataSnapshot snapshot, String previousChildName) { }
+
+            @Override
+            public void onChildRemoved(@NonNull DataSnapshot snapshot) { }
+
+            @Override
+            public void onChildMoved(@NonNull DataSnapshot snapshot, String previousChildName) { }
+
+            @Override
+            public void onCancelled(@NonNull DatabaseError error) {
+                Log.e(TAG, "Session events cancelled for " + division + ": " + error.getMessage());
+            }
+        });
+        Log.d(TAG, "Monitoring session events for division " + division);
+    }
+
+    public void stop() {
+        registry.remove(key());
+    }
+}
@@ -0,0 +1,98 @@
+package com.example.wifibasedattendanceapplication;
+
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import com.google.firebase.database.DataSnapshot;
+import com.google.firebase.database.FirebaseDatabase;
+import com.google.firebase.database.ServerValue;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Compact per-division stream of session lifecycle events.
+ *
+ * Layout: SessionEvents/{division}/{sessionId}_{type} = {session_id, type, subject, period_date, at}
+ *
+ * Writers add an event in the same multi-path update that changes the session, so students
+ * subscribe to their own division's small stream (see {@link SessionEventMonitor}) instead of
+ * receiving every roster and mark write under AttendanceReport. Keys are deterministic, so a
+ * replayed write leaves exactly one event per session and type.
+ */
+public final class SessionEvents {
+
+    public static final String NODE = "SessionEvents";
+    public static final String TYPE_STARTED = "started";
+    public static final String TYPE_ENDED = "ended";
+    public static final String TYPE_EXPIRED = "expired";
+    public static final String AT = "at";
+    private static final String TAG = "SessionEvents";
+
+    public static class Event {
+        public final String sessionId;
+        public final String type;
+        public final String subject;
+        public final String periodDate;
+        public final long at;
+
+        Event(String sessionId, String type, String subject, String periodDate, long at) {
+            this.sessionId = sessionId;
+            this.type = type;
+            this.subject = subject;
+            this.periodDate = periodDate;
+            this.at = at;
+        }
+
+        static Event fromSnapshot(DataSnapshot snapshot) {
+            String sessionId = snapshot.child("session_id").getValue(String.class);
+            String type = snapshot.child("type").getValue(String.class);
+            if (sessionId == null || type == null) return null;
+            Long at = snapshot.child(AT).getValue(Long.class);
+            return new Event(sessionId, type,
+                    snapshot.child("subject").getValue(String.class),
+                    snapshot.child("period_date").getValue(String.class),
+                    at != null ? at : 0L);
+        }
+    }
+
+    private SessionEvents() { }
+
+    /**
+     * Path of a session's event of the given type, relative to the database root
+     */
+    public static String eventPath(String division, String sessionId, String type) {
+        return NODE + "/" + division + "/" + sessionId + "_" + type;
+    }
+
+    /**
+     * Adds the event to a root-level multi-path update map
+     */
+    public static void putEvent(Map<String, Object> rootUpdates, String division, String sessionId,
+                                String type, String subject, String periodDate) {
+        if (division == null || division.isEmpty() || sessionId == null) return;
+        Map<String, Object> event = new HashMap<>();
+        event.put("session_id", sessionId);
+        event.put("type", type);
+        if (subject != null) event.put("subject", subject);
+        if (periodDate != null) event.put("period_date", periodDate);
+        event.put(AT, ServerValue.TIMESTAMP);
+        rootUpdates.put(eventPath(division, sessionId, type), event);
+    }
+
+    /**
+     * Writes a single event on its own, for transitions that are not part of another update
+     */
+    public static void publish(@NonNull String division, @NonNull String sessionId, @NonNull String type,
+                               String subject, String periodDate) {
+        Map<String, Object> updates = new HashMap<>();
+        putEvent(updates, division, sessionId, type, subject, periodDate);
+        if (updates.isEmpty()) return;
+        FirebaseDatabase.getInstance().getReference().updateChildren(updates).addOnCompleteListener(task -> {
+            if (!task.isSuccessful()) {
+                Log.e(TAG, "Failed to publish " + type + " for " + sessionId + ": " + task.getException());
+            }
+        });
+    }
+}
@@ -0,0 +1,233 @@
+package com.example.wifibasedattendanceapplication;
+
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.WorkerThread;
+
+import com.google.android.gms.tasks.TaskCompletionSource;
+import com.google.firebase.database.DataSnapshot;
+import com.google.firebase.database.DatabaseError;
+import com.google.firebase.database.DatabaseReference;
+import com.google.firebase.database.FirebaseDatabase;
+import com.google.firebase.database.MutableData;
+import com.google.firebase.database.ServerValue;
+import com.google.firebase.database.Transaction;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Single place where active sessions past their end time are flipped to "expired".
+ *
+ * A sweep first takes a lease at Maintenance/session_expiry/lease so that, however many faculty
+ * devices run the worker, only one sweep happens at a time. The lease is stamped with the server's
+ * clock and database.rules.json refuses to replace a lease younger than {@link #LEASE_MS} held by
+ * someone else, so device clocks play no part; the sweep removes its lease when it finishes. It
+ * then reads only sessions with session_status == "active" (indexed), and flips each overdue one,
+ * judged against server time, with a transaction on its session_status leaf, so a session moves
+ * to "expired" exactly once even if two sweeps overlap. Metrics for the last sweep are written to
+ * Maintenance/session_expiry/last_sweep.
+ *
+ * Blocking: run from {@link SessionExpiryWorker} or any other background thread.
+ */
+public final class SessionExpirySweeper {
+
+    public static final String STATUS_ACTIVE = "active";
+    public static final String STATUS_EXPIRED = "expired";
+    // 30 minutes after end_timestamp; database.rules.json accepts marks on active sessions until then
+    static final long GRACE_PERIOD_MS = 30 * 60 * 1000;
+    // Must match the lease rule in database.rules.json
+    static final long LEASE_MS = 10 * 60 * 1000;
+    private static final String MAINTENANCE_PATH = "Maintenance/session_expiry";
+    private static final String TAG = "ExpirySweeper";
+
+    public static class SweepStats {
+        public boolean leaseAcquired;
+        public int scanned;
+        public int expired;
+        public int notDue;
+        public int alreadyFlipped;
+        public int failed;
+        public long durationMs;
+
+        Map<String, Object> toMap() {
+            Map<String, Object> values = new HashMap<>();
+            values.put("finished_at", ServerValue.TIMESTAMP);
+            values.put("scanned", scanned);
+            values.put("expired", expired);
+            values.put("not_due", notDue);
+            values.put("already_flipped", alreadyFlipped);
+            values.put("failed", failed);
+            values.put("duration_ms", durationMs);
+            return values;
+        }
+
+        @NonNull
+        @Override
+        public String toString() {
+            return "lease=" + leaseAcquired + " scanned=" + scanned + " expired=" + expired
+                    + " notDue=" + notDue + " alreadyFlipped=" + alreadyFlipped
+                    + " failed=" + failed + " in " + durationMs + "ms";
+        }
+    }
+
+    private SessionExpirySweeper() { }
+
+    /**
+     * True once a session's end time plus the grace period has passed
+     */
+    static boolean isOverdue(Long endTimestamp, long now) {
+        return endTimestamp != null && now > endTimestamp + GRACE_PERIOD_MS;
+    }
+
+    /**
+     * Runs one sweep if no other device holds the lease
+     */
+    @WorkerThread
+    public static SweepStats sweep() throws Exception {
+        long started = System.currentTimeMillis();
+        SweepStats stats = new SweepStats();
+        DatabaseReference maintenance = FirebaseDatabase.getInstance().getReference(MAINTENANCE_PATH);
+        DatabaseReference lease = maintenance.child("lease");
+        String holder = UUID.randomUUID().toString();
+
+        stats.leaseAcquired = acquireLease(lease, holder);
+        if (!stats.leaseAcquired) {
+            Log.d(TAG, "Another sweep holds the lease, skipping");
+            return stats;
+        }
+
+        try {
+            DataSnapshot active = SessionQuery.awaitValue(SessionQuery.active());
+            Long offset = SessionQuery.awaitValue(FirebaseDatabase.getInstance().getReference(".info/serverTimeOffset"))
+                    .getValue(Long.class);
+            long now = System.currentTimeMillis() + (offset != null ? offset : 0L);
+            for (DataSnapshot session : active.getChildren()) {
+                String sessionId = session.getKey();
+                if (sessionId == null) continue;
+                stats.scanned++;
+
+                if (!isOverdue(session.child(SessionQuery.END).getValue(Long.class), now)) {
+                    stats.notDue++;
+                    continue;
+                }
+                try {
+                    if (expireOnce(sessionId)) {
+                        stats.expired++;
+                        String division = session.child("division").getValue(String.class);
+                        Map<String, Object> cleanup = new HashMap<>();
+                        ActiveSessionIndex.removeEntry(cleanup, division, sessionId);
+                        SessionEvents.putEvent(cleanup, division, sessionId, SessionEvents.TYPE_EXPIRED,
+                                session.child("subject").getValue(String.class),
+                                session.child("period_date").getValue(String.class));
+                        if (!cleanup.isEmpty()) {
+                            FirebaseDatabase.getInstance().getReference().updateChildren(cleanup);
+                        }
+                        SessionCounters.reconcile(sessionId, null);
+                        AttendanceSummary.countSession(sessionId);
+                        Log.d(TAG, "Session " + sessionId + " marked as expired");
+                    } else {
+                        stats.alreadyFlipped++;
+                    }
+                } catch (Exception e) {
+                    stats.failed++;
+                    Log.e(TAG, "Failed to expire " + sessionId + ": " + e.getMessage());
+                }
+            }
+
+            stats.durationMs = System.currentTimeMillis() - started;
+            maintenance.child("last_sweep").setValue(stats.toMap());
+            Log.d(TAG, "Sweep done: " + stats);
+            return stats;
+        } finally {
+            releaseLease(lease, holder);
+        }
+    }
+
+    /**
+     * Takes the sweep lease, stamped with server time; false if the rules refused it because
+     * another holder's lease has not lapsed
+     */
+    private static boolean acquireLease(DatabaseReference leaseRef, String holder) throws Exception {
+        Map<String, Object> lease = new HashMap<>();
+        lease.put("holder", holder);
+        lease.put("acquired_at", ServerValue.TIMESTAMP);
+        TaskCompletionSource<Boolean> source = new TaskCompletionSource<>();
+        leaseRef.setValue(lease, (error, ref) -> {
+            if (error == null) {
+                source.trySetResult(true);
+            } else if (error.getCode() == DatabaseError.PERMISSION_DENIED) {
+                source.trySetResult(false);
+            } else {
+                source.trySetException(error.toException());
+            }
+        });
+        return SessionQuery.await(source.getTask());
+    }
+
+    /**
+     * Removes the lease if it is still this sweep's; not waited for, a lost release only means the
+     * next sweep waits for the lease to lapse
+     */
+    private static void releaseLease(DatabaseReference leaseRef, String holder) {
+        leaseRef.runTransaction(new Transaction.Handler() {
+            @NonNull
+            @Override
+            public Transaction.Result doTransaction(@NonNull MutableData current) {
+                if (current.getValue() == null) {
+                    // Nothing cached locally yet: let the server answer with the real value
+                    return Transaction.success(current);
+                }
+                if (!holder.equals(current.child("holder").getValue(String.class))) {
+                    return Transaction.abort();
+                }
+                current.setValue(null);
+                return Transaction.success(current);
+            }
+
+            @Override
+            public void onComplete(DatabaseError error, boolean committed, DataSnapshot snapshot) {
+                if (error != null) {
+                    Log.w(TAG, "Could not release the sweep lease: " + error.getMessage());
+                }
+            }
+        });
+    }
+
+    /**
+     * Flips session_status from "active" to "expired"; false if it was no longer active
+     */
+    private static boolean expireOnce(String sessionId) throws Exception {
+        TaskCompletionSource<Boolean> source = new TaskCompletionSource<>();
+        FirebaseDatabase.getInstance().getReference("AttendanceReport").child(sessionId)
+                .child(SessionQuery.STATUS)
+                .runTransaction(new Transaction.Handler() {
+                    @NonNull
+                    @Override
+                    public Transaction.Result doTransaction(@NonNull MutableData current) {
+                        String status = current.getValue(String.class);
+                        if (status == null) {
+                            // Nothing cached locally yet: let the server answer with the real value
+                            return Transaction.success(current);
+                        }
+                        if (!STATUS_ACTIVE.equals(status)) {
+                            return Transaction.abort();
+                        }
+                        current.setValue(STATUS_EXPIRED);
+                        return Transaction.success(current);
+                    }
+
+                    @Override
+                    public void onComplete(DatabaseError error, boolean committed, DataSnapshot snapshot) {
+                        if (error != null) {
+                            source.trySetException(error.toException());
+                        } else {
+                            source.trySetResult(committed && STATUS_EXPIRED.equals(snapshot.getValue(String.class)));
+                        }
+                    }
+                });
+        return SessionQuery.await(source.getTask());
+    }
+}
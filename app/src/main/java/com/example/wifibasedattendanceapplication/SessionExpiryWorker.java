@@ -0,0 +1,59 @@
+package com.example.wifibasedattendanceapplication;
+
+import android.content.Context;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.work.Constraints;
+import androidx.work.ExistingPeriodicWorkPolicy;
+import androidx.work.NetworkType;
+import androidx.work.PeriodicWorkRequest;
+import androidx.work.WorkManager;
+import androidx.work.Worker;
+import androidx.work.WorkerParameters;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Periodic background job that runs {@link SessionExpirySweeper}.
+ *
+ * Scheduled from the faculty side only; the sweeper's lease keeps concurrent devices from
+ * sweeping twice in the same interval.
+ */
+public class SessionExpiryWorker extends Worker {
+
+    private static final String UNIQUE_NAME = "session_expiry_sweep";
+    private static final long INTERVAL_MINUTES = 15; // WorkManager's minimum periodic interval
+    private static final String TAG = "SessionExpiryWorker";
+
+    public SessionExpiryWorker(@NonNull Context context, @NonNull WorkerParameters params) {
+        super(context, params);
+    }
+
+    /**
+     * Enqueues the periodic sweep once; later calls keep the existing schedule
+     */
+    public static void schedule(@NonNull Context context) {
+        Constraints constraints = new Constraints.Builder()
+                .setRequiredNetworkType(NetworkType.CONNECTED)
+                .build();
+        PeriodicWorkRequest request = new PeriodicWorkRequest.Builder(
+                SessionExpiryWorker.class, INTERVAL_MINUTES, TimeUnit.MINUTES)
+                .setConstraints(constraints)
+                .build();
+        WorkManager.getInstance(context.getApplicationContext())
+                .enqueueUniquePeriodicWork(UNIQUE_NAME, ExistingPeriodicWorkPolicy.KEEP, request);
+    }
+
+    @NonNull
+    @Override
+    public Result doWork() {
+        try {
+            SessionExpirySweeper.sweep();
+            return Result.success();
+        } catch (Exception e) {
+            Log.e(TAG, "Expiry sweep failed: " + e.getMessage());
+            return Result.retry();
+        }
+    }
+}
@@ -0,0 +1,210 @@
+package com.example.wifibasedattendanceapplication;
+
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.WorkerThread;
+
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.TaskCompletionSource;
+import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.database.DataSnapshot;
+import com.google.firebase.database.DatabaseError;
+import com.google.firebase.database.DatabaseReference;
+import com.google.firebase.database.FirebaseDatabase;
+import com.google.firebase.database.Query;
+import com.google.firebase.database.ValueEventListener;
+
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time-ordered reads over AttendanceReport.
+ *
+ * Session keys are attendance_session_id_<millis>, but every session also carries a numeric
+ * "timestamp" (start) and "end_timestamp". Both are declared in .indexOn (database.rules.json), so
+ * these queries are answered from the server index and only the sessions inside the requested
+ * window are downloaded, instead of the whole tree being filtered on the client.
+ */
+public final class SessionQuery {
+
+    public static final String START = "timestamp";
+    public static final String END = "end_timestamp";
+    public static final String STATUS = "session_status";
+    public static final int DEFAULT_PAGE_SIZE = 25;
+    // Upper bound for one blocking read or write; offline, the database would otherwise wait forever
+    static final long AWAIT_TIMEOUT_SECONDS = 30;
+    private static final String TAG = "SessionQuery";
+
+    public interface PageCallback {
+        /**
+         * One page of sessions, newest first. Return false to stop paging.
+         */
+        boolean onPage(@NonNull List<DataSnapshot> sessions);
+        void onComplete(int scanned);
+        void onError(@NonNull DatabaseError error);
+    }
+
+    private SessionQuery() { }
+
+    private static DatabaseReference reports() {
+        return FirebaseDatabase.getInstance().getReference("AttendanceReport");
+    }
+
+    /**
+     * Sessions ordered by start time
+     */
+    public static Query byStart() {
+        return reports().orderByChild(START);
+    }
+
+    /**
+     * Sessions started at or after fromMillis
+     */
+    public static Query startedSince(long fromMillis) {
+        return byStart().startAt(fromMillis);
+    }
+
+    /**
+     * Sessions started within [fromMillis, toMillis]
+     */
+    public static Query startedBetween(long fromMillis, long toMillis) {
+        return byStart().startAt(fromMillis).endAt(toMillis);
+    }
+
+    /**
+     * Sessions started on the local calendar day containing dayMillis
+     */
+    public static Query startedOnDay(long dayMillis) {
+        Calendar day = Calendar.getInstance();
+        day.setTimeInMillis(dayMillis);
+        day.set(Calendar.HOUR_OF_DAY, 0);
+        day.set(Calendar.MINUTE, 0);
+        day.set(Calendar.SECOND, 0);
+        day.set(Calendar.MILLISECOND, 0);
+        long start = day.getTimeInMillis();
+        day.add(Calendar.DAY_OF_MONTH, 1);
+        return startedBetween(start, day.getTimeInMillis() - 1);
+    }
+
+    /**
+     * The newest count sessions by start time
+     */
+    public static Query latest(int count) {
+        return byStart().limitToLast(count);
+    }
+
+    /**
+     * Sessions whose end_timestamp is at or after fromMillis
+     */
+    public static Query endedSince(long fromMillis) {
+        return reports().orderByChild(END).startAt(fromMillis);
+    }
+
+    /**
+     * Sessions whose session_status is still "active"
+     */
+    public static Query active() {
+        return reports().orderByChild(STATUS).equalTo("active");
+    }
+
+    /**
+     * Sessions with no start timestamp at all (they sort first under orderByChild)
+     */
+    public static Query missingStart() {
+        return byStart().equalTo((String) null);
+    }
+
+    /**
+     * Pages backwards through sessions started within [fromMillis, toMillis], newest first.
+     *
+     * Each page is endAt(cursor).limitToLast(pageSize); the cursor is the (timestamp, key) of the
+     * oldest session of the previous page, so sessions sharing a timestamp are neither skipped nor
+     * repeated. Callbacks arrive on the main thread like any other listener.
+     */
+    public static void pageNewestFirst(long fromMillis, long toMillis, int pageSize, @NonNull PageCallback callback) {
+        requestPage(fromMillis, toMillis, null, null, Math.max(1, pageSize), 0, callback);
+    }
+
+    private static void requestPage(long fromMillis, long toMillis, Long cursorStart, String cursorKey,
+                                    int pageSize, int scannedSoFar, PageCallback callback) {
+        Query window = byStart().startAt(fromMillis);
+        Query page = cursorKey == null
+                ? window.endAt(toMillis).limitToLast(pageSize)
+                : window.endAt(cursorStart, cursorKey).limitToLast(pageSize + 1);
+        int limit = cursorKey == null ? pageSize : pageSize + 1;
+
+        page.addListenerForSingleValueEvent(new ValueEventListener() {
+            @Override
+            public void onDataChange(@NonNull DataSnapshot snapshot) {
+                List<DataSnapshot> sessions = new ArrayList<>();
+                int received = 0;
+                for (DataSnapshot session : snapshot.getChildren()) {
+                    received++;
+                    if (session.getKey() == null || session.getKey().equals(cursorKey)) continue;
+                    sessions.add(session);
+                }
+                Collections.reverse(sessions);
+                int scanned = scannedSoFar + sessions.size();
+
+                boolean more = callback.onPage(sessions);
+                if (!more || received < limit || sessions.isEmpty()) {
+                    callback.onComplete(scanned);
+                    return;
+                }
+                DataSnapshot oldest = sessions.get(sessions.size() - 1);
+                Long oldestStart = oldest.child(START).getValue(Long.class);
+                if (oldestStart == null) {
+                    callback.onComplete(scanned);
+                    return;
+                }
+                requestPage(fromMillis, toMillis, oldestStart, oldest.getKey(), pageSize, scanned, callback);
+            }
+
+            @Override
+            public void onCancelled(@NonNull DatabaseError error) {
+                Log.e(TAG, "Session page failed: " + error.getMessage());
+                callback.onError(error);
+            }
+        });
+    }
+
+    /**
+     * Blocking single-value read for background threads (exports, workers) only. Throws a
+     * TimeoutException after {@link #AWAIT_TIMEOUT_SECONDS}, so the caller fails or is retried.
+     */
+    @WorkerThread
+    static DataSnapshot awaitValue(Query query) throws Exception {
+        return await(valueTask(query));
+    }
+
+    /**
+     * Starts a single-value read without waiting, so a worker can issue several before awaiting them
+     */
+    static Task<DataSnapshot> valueTask(Query query) {
+        TaskCompletionSource<DataSnapshot> source = new TaskCompletionSource<>();
+        query.addListenerForSingleValueEvent(new ValueEventListener() {
+            @Override
+            public void onDataChange(@NonNull DataSnapshot snapshot) {
+                source.trySetResult(snapshot);
+            }
+
+            @Override
+            public void onCancelled(@NonNull DatabaseError error) {
+                source.trySetException(error.toException());
+            }
+        });
+        return source.getTask();
+    }
+
+    /**
+     * Waits for a database task (a write, a transaction) for at most {@link #AWAIT_TIMEOUT_SECONDS}
+     */
+    @WorkerThread
+    static <T> T await(Task<T> task) throws Exception {
+        return Tasks.await(task, AWAIT_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+    }
+}
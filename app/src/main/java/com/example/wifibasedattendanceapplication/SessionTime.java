@@ -0,0 +1,103 @@
+package com.example.wifibasedattendanceapplication;
+
+import androidx.annotation.NonNull;
+
+import com.google.firebase.database.DataSnapshot;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Locale;
+
+/**
+ * Canonical session dates and times.
+ *
+ * Every session carries its start as epoch millis ("timestamp") and its calendar day as a yyyyMMdd
+ * integer ({@link #DAY_KEY}, e.g. 20261017), and so does every student attendance entry. Readers
+ * compare and group by those numbers. The period_date ("dd/MM/yy") and start_time ("14 PM")
+ * strings are kept for display only and are parsed solely for sessions written before day keys
+ * existed, until {@link SessionDayKeyMigrator} has filled them in.
+ *
+ * The formatters are java.time and immutable, so unlike SimpleDateFormat they can be shared
+ * across threads. Days are in the device's time zone, the zone the session was created in.
+ */
+public final class SessionTime {
+
+    public static final String DAY_KEY = "day_key";
+
+    public static final DateTimeFormatter PERIOD_DATE = DateTimeFormatter.ofPattern("dd/MM/yy", Locale.US);
+    public static final DateTimeFormatter ISO_DATE = DateTimeFormatter.ISO_LOCAL_DATE;
+    public static final DateTimeFormatter DISPLAY_DATE = DateTimeFormatter.ofPattern("dd MMM yyyy", Locale.US);
+    public static final DateTimeFormatter DAY_NAME = DateTimeFormatter.ofPattern("EEEE", Locale.US);
+    public static final DateTimeFormatter CLOCK_TIME = DateTimeFormatter.ofPattern("h:mm a", Locale.US);
+    public static final DateTimeFormatter CLOCK_HOUR = DateTimeFormatter.ofPattern("h a", Locale.US);
+
+    // Formats old clients wrote; the first one that parses wins
+    private static final DateTimeFormatter[] LEGACY_PERIOD_DATES = {
+            DateTimeFormatter.ofPattern("d/M/yyyy", Locale.US),
+            DateTimeFormatter.ofPattern("d/M/yy", Locale.US),
+            DateTimeFormatter.ofPattern("d-M-yyyy", Locale.US),
+            DateTimeFormatter.ofPattern("d-M-yy", Locale.US),
+            DateTimeFormatter.ISO_LOCAL_DATE
+    };
+
+    private SessionTime() { }
+
+    public static ZoneId zone() {
+        return ZoneId.systemDefault();
+    }
+
+    public static LocalDate toDate(long epochMillis) {
+        return Instant.ofEpochMilli(epochMillis).atZone(zone()).toLocalDate();
+    }
+
+    public static int dayKey(@NonNull LocalDate date) {
+        return date.getYear() * 10000 + date.getMonthValue() * 100 + date.getDayOfMonth();
+    }
+
+    public static int dayKey(long epochMillis) {
+        return dayKey(toDate(epochMillis));
+    }
+
+    public static int today() {
+        return dayKey(LocalDate.now(zone()));
+    }
+
+    public static LocalDate toDate(int dayKey) {
+        return LocalDate.of(dayKey / 10000, dayKey / 100 % 100, dayKey % 100);
+    }
+
+    public static String formatDay(int dayKey, @NonNull DateTimeFormatter formatter) {
+        return formatter.format(toDate(dayKey));
+    }
+
+    public static String format(long epochMillis, @NonNull DateTimeFormatter formatter) {
+        return formatter.format(Instant.ofEpochMilli(epochMillis).atZone(zone()));
+    }
+
+    /**
+     * Day key of a legacy period_date string, or 0 if it is missing or not a date
+     */
+    public static int parsePeriodDate(String periodDate) {
+        if (periodDate == null || periodDate.isEmpty()) return 0;
+        for (DateTimeFormatter formatter : LEGACY_PERIOD_DATES) {
+            try {
+                return dayKey(LocalDate.parse(periodDate.trim(), formatter));
+            } catch (DateTimeParseException ignored) { }
+        }
+        return 0;
+    }
+
+    /**
+     * A session's day key: the stored one, else derived from its start time or period_date; 0 if none
+     */
+    public static int dayKeyOf(@NonNull DataSnapshot session) {
+        Integer stored = session.child(DAY_KEY).getValue(Integer.class);
+        if (stored != null && stored > 0) return stored;
+        Long start = session.child(SessionQuery.START).getValue(Long.class);
+        if (start != null && start > 0) return dayKey(start);
+        return parsePeriodDate(session.child("period_date").getValue(String.class));
+    }
+}
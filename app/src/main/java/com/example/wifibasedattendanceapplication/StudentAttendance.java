@@ -0,0 +1,256 @@
+package com.example.wifibasedattendanceapplication;
+
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import com.google.firebase.database.DataSnapshot;
+import com.google.firebase.database.DatabaseError;
+import com.google.firebase.database.FirebaseDatabase;
+import com.google.firebase.database.ValueEventListener;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The per-student attendance entry at Students/{enr}/Attendance/{sessionId}.
+ *
+ * Entries carry everything the student screens need:
+ *   { status: "P" | "A", subject, period_date, start_ms, day_key }
+ * so a student's history is a single read of Students/{enr}/Attendance instead of one
+ * AttendanceReport/{sessionId} read per session. Marking present only rewrites the status leaf.
+ *
+ * Entries written before this format are a bare "P"/"A" string. {@link #load} still accepts them,
+ * fills in the details from the session once and writes the full entry back;
+ * {@link StudentAttendanceMigrator} converts the rest of the tree in the background.
+ */
+public final class StudentAttendance {
+
+    public static final String STATUS = "status";
+    public static final String SUBJECT = "subject";
+    public static final String PERIOD_DATE = "period_date";
+    public static final String START_MS = "start_ms";
+    public static final String DAY_KEY = SessionTime.DAY_KEY;
+    public static final String CODE_PRESENT = "P";
+    public static final String CODE_ABSENT = "A";
+    private static final String TAG = "StudentAttendance";
+
+    public interface LoadCallback {
+        void onLoaded(@NonNull List<Entry> entries);
+        void onError(@NonNull DatabaseError error);
+    }
+
+    /**
+     * Session fields copied onto every student entry
+     */
+    public static class SessionDetails {
+        public final String subject;
+        public final String periodDate;
+        public final long startMs;
+        /** yyyyMMdd, see {@link SessionTime}; 0 if unknown */
+        public final int dayKey;
+
+        public SessionDetails(String subject, String periodDate, long startMs, int dayKey) {
+            this.subject = subject;
+            this.periodDate = periodDate;
+            this.startMs = startMs;
+            this.dayKey = dayKey;
+        }
+
+        public static SessionDetails fromSession(@NonNull DataSnapshot session) {
+            Long start = session.child(SessionQuery.START).getValue(Long.class);
+            return new SessionDetails(session.child("subject").getValue(String.class),
+                    session.child("period_date").getValue(String.class), start != null ? start : 0L,
+                    SessionTime.dayKeyOf(session));
+        }
+    }
+
+    public static class Entry {
+        public final String sessionId;
+        public final String status;
+        public final String subject;
+        public final String periodDate;
+        public final long startMs;
+        /** yyyyMMdd, see {@link SessionTime}; 0 if unknown */
+        public final int dayKey;
+        /** Stored as a bare "P"/"A" string on the server */
+        final boolean legacy;
+
+        Entry(String sessionId, String status, String subject, String periodDate, long startMs, int dayKey,
+              boolean legacy) {
+            this.sessionId = sessionId;
+            this.status = status;
+            this.subject = subject;
+            this.periodDate = periodDate;
+            this.startMs = startMs;
+            this.dayKey = dayKey;
+            this.legacy = legacy;
+        }
+
+        public boolean isPresent() {
+            return isPresentCode(status);
+        }
+
+        /**
+         * False for legacy string entries whose session details have not been filled in
+         */
+        public boolean hasDetails() {
+            return subject != null;
+        }
+
+        /**
+         * Only sessions with a subject count towards attendance
+         */
+        public boolean hasSubject() {
+            return subject != null && !subject.isEmpty();
+        }
+
+        Entry withDetails(SessionDetails details) {
+            return new Entry(sessionId, status, details.subject, details.periodDate, details.startMs,
+                    details.dayKey, legacy);
+        }
+
+        /**
+         * Reads either the current object entry or a legacy "P"/"A" string
+         */
+        public static Entry fromSnapshot(@NonNull DataSnapshot snapshot) {
+            Object raw = snapshot.getValue();
+            if (raw instanceof String) {
+                return new Entry(snapshot.getKey(), (String) raw, null, null, 0L, 0, true);
+            }
+            Long start = snapshot.child(START_MS).getValue(Long.class);
+            Integer dayKey = snapshot.child(DAY_KEY).getValue(Integer.class);
+            String periodDate = snapshot.child(PERIOD_DATE).getValue(String.class);
+            long startMs = start != null ? start : 0L;
+            if (dayKey == null || dayKey <= 0) {
+                // Written before day keys; derive it once here rather than in every reader
+                dayKey = startMs > 0 ? SessionTime.dayKey(startMs) : SessionTime.parsePeriodDate(periodDate);
+            }
+            return new Entry(snapshot.getKey(),
+                    snapshot.child(STATUS).getValue(String.class),
+                    snapshot.child(SUBJECT).getValue(String.class),
+                    periodDate, startMs, dayKey, false);
+        }
+    }
+
+    private StudentAttendance() { }
+
+    public static boolean isPresentCode(String status) {
+        return CODE_PRESENT.equalsIgnoreCase(status) || AttendanceMark.STATUS_PRESENT.equalsIgnoreCase(status);
+    }
+
+    public static String entryPath(@NonNull String enrollment, @NonNull String sessionId) {
+        return "Students/" + enrollment + "/Attendance/" + sessionId;
+    }
+
+    public static String statusPath(@NonNull String enrollment, @NonNull String sessionId) {
+        return entryPath(enrollment, sessionId) + "/" + STATUS;
+    }
+
+    /**
+     * Full entry value for a roster write or a migration
+     */
+    public static Map<String, Object> entryValue(@NonNull String status, @NonNull SessionDetails details) {
+        Map<String, Object> value = new HashMap<>();
+        value.put(STATUS, status);
+        if (details.subject != null) value.put(SUBJECT, details.subject);
+        if (details.periodDate != null) value.put(PERIOD_DATE, details.periodDate);
+        value.put(START_MS, details.startMs);
+        if (details.dayKey > 0) value.put(DAY_KEY, details.dayKey);
+        return value;
+    }
+
+    /**
+     * Adds the entry's fields as separate leaf paths. A legacy string entry is replaced by the
+     * object, and fields this write does not touch (the summary's counted marker) are kept.
+     */
+    public static void putEntryFields(@NonNull Map<String, Object> updates, @NonNull String enrollment,
+                                      @NonNull String sessionId, @NonNull String status,
+                                      @NonNull SessionDetails details) {
+        updates.put(statusPath(enrollment, sessionId), status);
+        putDetailFields(updates, enrollment, sessionId, details);
+    }
+
+    /**
+     * Adds the session details of an existing object entry, leaving its status and marker alone
+     */
+    public static void putDetailFields(@NonNull Map<String, Object> updates, @NonNull String enrollment,
+                                       @NonNull String sessionId, @NonNull SessionDetails details) {
+        String path = entryPath(enrollment, sessionId) + "/";
+        if (details.subject != null) updates.put(path + SUBJECT, details.subject);
+        if (details.periodDate != null) updates.put(path + PERIOD_DATE, details.periodDate);
+        updates.put(path + START_MS, details.startMs);
+        if (details.dayKey > 0) updates.put(path + DAY_KEY, details.dayKey);
+    }
+
+    /**
+     * One read of the student's entries. Legacy entries are completed from their session (one read
+     * each through {@link SessionDetailLoader}, only until they are migrated) before the callback
+     * runs on the main thread.
+     */
+    public static void load(@NonNull String enrollment, @NonNull LoadCallback callback) {
+        FirebaseDatabase.getInstance().getReference("Students").child(enrollment).child("Attendance")
+                .addListenerForSingleValueEvent(new ValueEventListener() {
+                    @Override
+                    public void onDataChange(@NonNull DataSnapshot snapshot) {
+                        List<Entry> entries = new ArrayList<>();
+                        List<Integer> legacy = new ArrayList<>();
+                        for (DataSnapshot child : snapshot.getChildren()) {
+                            if (child.getKey() == null) continue;
+                            Entry entry = Entry.fromSnapshot(child);
+                            if (!entry.hasDetails()) legacy.add(entries.size());
+                            entries.add(entry);
+                        }
+                        if (legacy.isEmpty()) {
+                            callback.onLoaded(entries);
+                        } else {
+                            Log.d(TAG, enrollment + ": completing " + legacy.size() + " legacy entries");
+                            completeLegacy(enrollment, entries, legacy, callback);
+                        }
+                    }
+
+                    @Override
+                    public void onCancelled(@NonNull DatabaseError error) {
+                        Log.e(TAG, "Attendance read failed for " + enrollment + ": " + error.getMessage());
+                        callback.onError(error);
+                    }
+                });
+    }
+
+    private static void completeLegacy(String enrollment, List<Entry> entries, List<Integer> legacy,
+                                       LoadCallback callback) {
+        List<String> sessionIds = new ArrayList<>();
+        for (int index : legacy) {
+            sessionIds.add(entries.get(index).sessionId);
+        }
+        SessionDetailLoader.load(sessionIds, new SessionDetailLoader.Callback() {
+            @Override
+            public void onLoaded(@NonNull Map<String, DataSnapshot> sessions, boolean complete) {
+                Map<String, Object> backfill = new HashMap<>();
+                for (int index : legacy) {
+                    Entry entry = entries.get(index);
+                    DataSnapshot session = sessions.get(entry.sessionId);
+                    if (session == null) continue; // deleted, failed or timed out; stays without details
+                    SessionDetails details = SessionDetails.fromSession(session);
+                    entries.set(index, entry.withDetails(details));
+                    // An active session can still be marked; leave its entry to the migrator
+                    if (!SessionExpirySweeper.STATUS_ACTIVE.equals(
+                            session.child(SessionQuery.STATUS).getValue(String.class))) {
+                        putEntryFields(backfill, enrollment, entry.sessionId,
+                                entry.status != null ? entry.status : CODE_ABSENT, details);
+                    }
+                }
+                if (!backfill.isEmpty()) {
+                    FirebaseDatabase.getInstance().getReference().updateChildren(backfill);
+                }
+                if (!complete) {
+                    Log.w(TAG, enrollment + ": session details incomplete, " + sessions.size() + "/"
+                            + legacy.size() + " resolved");
+                }
+                callback.onLoaded(entries);
+            }
+        });
+    }
+}
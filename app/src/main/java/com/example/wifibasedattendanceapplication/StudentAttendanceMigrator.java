@@ -0,0 +1,218 @@
+package com.example.wifibasedattendanceapplication;
+
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.WorkerThread;
+
+import com.google.android.gms.tasks.Task;
+import com.google.firebase.database.DataSnapshot;
+import com.google.firebase.database.DatabaseReference;
+import com.google.firebase.database.FirebaseDatabase;
+import com.google.firebase.database.Query;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * One-off conversion of legacy Students/{enr}/Attendance/{sessionId} = "P"/"A" strings into
+ * {@link StudentAttendance} entries.
+ *
+ * Walks AttendanceReport oldest first in pages of {@link #SESSIONS_PER_PAGE} sessions (timestamp
+ * index), completes every roster member's entry with the session's details and commits the
+ * result in multi-path writes of at most {@link #MAX_PATHS_PER_WRITE} leaf paths. The (timestamp,
+ * key) cursor is saved under Maintenance/migrations/student_attendance after every page, so an
+ * interrupted run resumes where it stopped and a finished run is a single read.
+ *
+ * The student's own record is the source of truth for the status: marking wrote it before the
+ * session's Students map, so a session left at "Not Marked" by a failed second write must not turn
+ * a "P" into "A". Each roster member's entry is therefore read first (one read per member, all of a
+ * session's issued together); an existing status is kept and only a missing entry takes the
+ * session's.
+ *
+ * Active sessions are skipped because students can still mark them; their entries are completed
+ * by {@link StudentAttendance#load} once the session has ended. Sessions without a timestamp are
+ * orphans and are left to the session cleanup.
+ *
+ * Blocking: run from {@link DataMigrationWorker} or any other background thread.
+ */
+public final class StudentAttendanceMigrator {
+
+    static final int SESSIONS_PER_PAGE = 50;
+    static final int MAX_PATHS_PER_WRITE = 2000;
+    private static final String STATE_PATH = "Maintenance/migrations/student_attendance";
+    private static final String TAG = "AttendanceMigrator";
+
+    public static class Stats {
+        public boolean alreadyDone;
+        public int pages;
+        public int sessions;
+        public int skippedActive;
+        public int entries;
+        public long durationMs;
+
+        @NonNull
+        @Override
+        public String toString() {
+            return "alreadyDone=" + alreadyDone + " pages=" + pages + " sessions=" + sessions
+                    + " skippedActive=" + skippedActive + " entries=" + entries + " in " + durationMs + "ms";
+        }
+    }
+
+    private StudentAttendanceMigrator() { }
+
+    /**
+     * The status a migrated entry keeps: the student's own record when there is one (it was written
+     * first when marking and is what faculty edits), the session's attendance_status otherwise
+     */
+    static String codeFor(String studentStatus, String sessionAttendanceStatus) {
+        if (studentStatus != null && !studentStatus.isEmpty()) {
+            return StudentAttendance.isPresentCode(studentStatus)
+                    ? StudentAttendance.CODE_PRESENT : StudentAttendance.CODE_ABSENT;
+        }
+        return AttendanceMark.STATUS_PRESENT.equals(sessionAttendanceStatus)
+                ? StudentAttendance.CODE_PRESENT : StudentAttendance.CODE_ABSENT;
+    }
+
+    /**
+     * Adds the writes that migrate one student's entry for a session. An object entry only gets
+     * the session details; a legacy string is replaced by an object keeping its status; a missing
+     * entry is created from the session's status.
+     */
+    static void putEntry(@NonNull Map<String, Object> updates, @NonNull String enrollment, @NonNull String sessionId,
+                         StudentAttendance.Entry existing, String sessionAttendanceStatus,
+                         @NonNull StudentAttendance.SessionDetails details) {
+        if (existing != null && !existing.legacy && existing.status != null) {
+            StudentAttendance.putDetailFields(updates, enrollment, sessionId, details);
+            return;
+        }
+        String code = codeFor(existing != null ? existing.status : null, sessionAttendanceStatus);
+        StudentAttendance.putEntryFields(updates, enrollment, sessionId, code, details);
+    }
+
+    /**
+     * The current entry of every roster member of one session that has one, by enrollment. The
+     * reads are issued together and then awaited.
+     */
+    @WorkerThread
+    static Map<String, StudentAttendance.Entry> readEntries(@NonNull DataSnapshot session) throws Exception {
+        DatabaseReference root = FirebaseDatabase.getInstance().getReference();
+        Map<String, Task<DataSnapshot>> reads = new HashMap<>();
+        for (DataSnapshot student : session.child("Students").getChildren()) {
+            String enrollment = student.getKey();
+            if (enrollment == null) continue;
+            reads.put(enrollment, SessionQuery.valueTask(
+                    root.child(StudentAttendance.entryPath(enrollment, session.getKey()))));
+        }
+        Map<String, StudentAttendance.Entry> entries = new HashMap<>();
+        for (Map.Entry<String, Task<DataSnapshot>> read : reads.entrySet()) {
+            DataSnapshot entry = SessionQuery.await(read.getValue());
+            if (entry.exists()) entries.put(read.getKey(), StudentAttendance.Entry.fromSnapshot(entry));
+        }
+        return entries;
+    }
+
+    /**
+     * Migrates the entry of every roster member of one session
+     */
+    @WorkerThread
+    static int migrateSession(@NonNull DataSnapshot session, @NonNull Map<String, Object> updates) throws Exception {
+        StudentAttendance.SessionDetails details = StudentAttendance.SessionDetails.fromSession(session);
+        Map<String, StudentAttendance.Entry> existing = readEntries(session);
+        int added = 0;
+        for (DataSnapshot student : session.child("Students").getChildren()) {
+            String enrollment = student.getKey();
+            if (enrollment == null) continue;
+            putEntry(updates, enrollment, session.getKey(), existing.get(enrollment),
+                    student.child("attendance_status").getValue(String.class), details);
+            added++;
+        }
+        return added;
+    }
+
+    /**
+     * One session of the walk; adds its writes to updates and returns the entries it wrote
+     */
+    interface SessionVisitor {
+        int visit(@NonNull DataSnapshot session, @NonNull Map<String, Object> updates) throws Exception;
+    }
+
+    @WorkerThread
+    public static Stats migrate() throws Exception {
+        return walk(STATE_PATH, TAG, StudentAttendanceMigrator::migrateSession);
+    }
+
+    /**
+     * Pages through every ended session oldest first, resuming from and saving the cursor under
+     * statePath, and commits what the visitor adds in writes of at most {@link #MAX_PATHS_PER_WRITE}
+     * paths. A finished walk is marked done there and not repeated.
+     */
+    @WorkerThread
+    static Stats walk(@NonNull String statePath, @NonNull String tag, @NonNull SessionVisitor visitor) throws Exception {
+        long started = System.currentTimeMillis();
+        Stats stats = new Stats();
+        DatabaseReference root = FirebaseDatabase.getInstance().getReference();
+        DatabaseReference state = root.child(statePath);
+
+        DataSnapshot saved = SessionQuery.awaitValue(state);
+        if (Boolean.TRUE.equals(saved.child("done").getValue(Boolean.class))) {
+            stats.alreadyDone = true;
+            return stats;
+        }
+        Long cursorStart = saved.child("cursor_start").getValue(Long.class);
+        String cursorKey = saved.child("cursor_key").getValue(String.class);
+
+        while (true) {
+            boolean resuming = cursorStart != null && cursorKey != null;
+            int limit = resuming ? SESSIONS_PER_PAGE + 1 : SESSIONS_PER_PAGE;
+            Query page = resuming
+                    ? SessionQuery.byStart().startAt(cursorStart, cursorKey).limitToFirst(limit)
+                    : SessionQuery.byStart().startAt(0).limitToFirst(limit);
+            DataSnapshot snapshot = SessionQuery.awaitValue(page);
+            stats.pages++;
+
+            Map<String, Object> updates = new HashMap<>();
+            DataSnapshot last = null;
+            int received = 0;
+            for (DataSnapshot session : snapshot.getChildren()) {
+                received++;
+                if (session.getKey() == null || (resuming && session.getKey().equals(cursorKey))) continue;
+                last = session;
+                stats.sessions++;
+                if (SessionExpirySweeper.STATUS_ACTIVE.equals(session.child(SessionQuery.STATUS).getValue(String.class))) {
+                    stats.skippedActive++;
+                    continue;
+                }
+                stats.entries += visitor.visit(session, updates);
+                if (updates.size() >= MAX_PATHS_PER_WRITE) {
+                    SessionQuery.await(root.updateChildren(updates));
+                    updates.clear();
+                }
+            }
+            if (!updates.isEmpty()) {
+                SessionQuery.await(root.updateChildren(updates));
+            }
+
+            Long lastStart = last != null ? last.child(SessionQuery.START).getValue(Long.class) : null;
+            if (last == null || lastStart == null || received < limit) {
+                break;
+            }
+            cursorStart = lastStart;
+            cursorKey = last.getKey();
+            Map<String, Object> cursor = new HashMap<>();
+            cursor.put("cursor_start", cursorStart);
+            cursor.put("cursor_key", cursorKey);
+            SessionQuery.await(state.updateChildren(cursor));
+            Log.d(tag, "Page " + stats.pages + " done, " + stats.entries + " entries so far");
+        }
+
+        stats.durationMs = System.currentTimeMillis() - started;
+        Map<String, Object> done = new HashMap<>();
+        done.put("done", true);
+        done.put("finished_at", System.currentTimeMillis());
+        done.put("entries", stats.entries);
+        SessionQuery.await(state.updateChildren(done));
+        Log.d(tag, "Migration finished: " + stats);
+        return stats;
+    }
+}
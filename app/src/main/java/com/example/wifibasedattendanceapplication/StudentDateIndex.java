@@ -0,0 +1,231 @@
+package com.example.wifibasedattendanceapplication;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import com.google.firebase.database.ChildEventListener;
+import com.google.firebase.database.DataSnapshot;
+import com.google.firebase.database.DatabaseError;
+import com.google.firebase.database.FirebaseDatabase;
+import com.google.firebase.database.Query;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * One student's attendance entries grouped by day ({@link SessionTime} yyyyMMdd key), for the calendar.
+ *
+ * Built once per screen from Students/{enr}/Attendance ({@link StudentAttendance#load}) and then
+ * kept current by a child listener on the entries that started within {@link #LIVE_WINDOW_MS},
+ * the only ones a mark or a session end can still change. The index is also saved on device, so
+ * the calendar renders immediately on the next open while the fresh read is in flight. Looking
+ * up a day is a map lookup; no database read happens when the student taps through dates.
+ * Main thread only.
+ */
+public class StudentDateIndex {
+
+    static final long LIVE_WINDOW_MS = 24L * 60 * 60 * 1000;
+    private static final String TAG = "StudentDateIndex";
+    private static final String PREFS_NAME = "student_date_index";
+    private static final String KEY_ENTRIES_PREFIX = "entries_";
+
+    public interface Listener {
+        /** The index changed (restored, loaded or a live update); re-render the selected day */
+        void onIndexChanged();
+    }
+
+    private final Context appContext;
+    private final String enrollment;
+    // sessionId -> entry, and the day grouping derived from it
+    private final Map<String, StudentAttendance.Entry> bySession = new HashMap<>();
+    private final Map<Integer, List<StudentAttendance.Entry>> byDate = new HashMap<>();
+
+    public StudentDateIndex(@NonNull Context context, @NonNull String enrollment) {
+        this.appContext = context.getApplicationContext();
+        this.enrollment = enrollment;
+    }
+
+    /**
+     * Entries of one day ordered by start time; empty if there are none
+     */
+    @NonNull
+    public List<StudentAttendance.Entry> entriesOn(int dayKey) {
+        List<StudentAttendance.Entry> entries = byDate.get(dayKey);
+        return entries != null ? entries : Collections.emptyList();
+    }
+
+    public boolean isEmpty() {
+        return bySession.isEmpty();
+    }
+
+    /**
+     * Restores the saved index, reloads it from the database and keeps it live through the
+     * screen's registry (detached on stop like every other listener of the screen)
+     */
+    public void start(@NonNull ListenerRegistry registry, @NonNull Listener listener) {
+        if (restore()) {
+            Log.d(TAG, "Restored " + bySession.size() + " entries for " + enrollment);
+            listener.onIndexChanged();
+        }
+
+        StudentAttendance.load(enrollment, new StudentAttendance.LoadCallback() {
+            @Override
+            public void onLoaded(@NonNull List<StudentAttendance.Entry> entries) {
+                bySession.clear();
+                byDate.clear();
+                for (StudentAttendance.Entry entry : entries) {
+                    put(entry);
+                }
+                save();
+                Log.d(TAG, "Indexed " + entries.size() + " entries over " + byDate.size() + " days for " + enrollment);
+                listener.onIndexChanged();
+                watchRecent(registry, listener);
+            }
+
+            @Override
+            public void onError(@NonNull DatabaseError error) {
+                Log.e(TAG, "Attendance read failed for " + enrollment + ": " + error.getMessage());
+            }
+        });
+    }
+
+    /**
+     * Adds entries found elsewhere (the report scan fallback) and saves the index
+     */
+    public void addAll(@NonNull List<StudentAttendance.Entry> entries) {
+        for (StudentAttendance.Entry entry : entries) {
+            put(entry);
+        }
+        save();
+    }
+
+    private void watchRecent(ListenerRegistry registry, Listener listener) {
+        Query recent = FirebaseDatabase.getInstance().getReference("Students").child(enrollment).child("Attendance")
+                .orderByChild(StudentAttendance.START_MS)
+                .startAt(System.currentTimeMillis() - LIVE_WINDOW_MS);
+        registry.addChildListener(TAG + "/" + enrollment, recent, new ChildEventListener() {
+            @Override
+            public void onChildAdded(@NonNull DataSnapshot snapshot, String previousChildName) {
+                update(snapshot);
+            }
+
+            @Override
+            public void onChildChanged(@NonNull DataSnapshot snapshot, String previousChildName) {
+                update(snapshot);
+            }
+
+            @Override
+            public void onChildRemoved(@NonNull DataSnapshot snapshot) {
+                if (snapshot.getKey() != null && remove(snapshot.getKey())) {
+                    save();
+                    listener.onIndexChanged();
+                }
+            }
+
+            @Override
+            public void onChildMoved(@NonNull DataSnapshot snapshot, String previousChildName) { }
+
+            @Override
+            public void onCancelled(@NonNull DatabaseError error) {
+                Log.e(TAG, "Live attendance updates cancelled for " + enrollment + ": " + error.getMessage());
+            }
+
+            private void update(DataSnapshot snapshot) {
+                if (snapshot.getKey() == null) return;
+                StudentAttendance.Entry entry = StudentAttendance.Entry.fromSnapshot(snapshot);
+                if (!entry.hasDetails()) return; // legacy string; StudentAttendance.load completes these
+                StudentAttendance.Entry known = bySession.get(entry.sessionId);
+                if (known != null && sameAs(known, entry)) return; // e.g. only the summary's counted marker moved
+                put(entry);
+                save();
+                listener.onIndexChanged();
+            }
+        });
+    }
+
+    private void put(StudentAttendance.Entry entry) {
+        remove(entry.sessionId);
+        if (entry.dayKey <= 0) return;
+        bySession.put(entry.sessionId, entry);
+        List<StudentAttendance.Entry> day = byDate.get(entry.dayKey);
+        if (day == null) {
+            day = new ArrayList<>();
+            byDate.put(entry.dayKey, day);
+        }
+        // Keep each day ordered by start time; days hold a handful of sessions
+        int at = day.size();
+        while (at > 0 && day.get(at - 1).startMs > entry.startMs) at--;
+        day.add(at, entry);
+    }
+
+    private boolean remove(String sessionId) {
+        StudentAttendance.Entry previous = bySession.remove(sessionId);
+        if (previous == null) return false;
+        List<StudentAttendance.Entry> day = byDate.get(previous.dayKey);
+        if (day != null) {
+            day.remove(previous);
+            if (day.isEmpty()) byDate.remove(previous.dayKey);
+        }
+        return true;
+    }
+
+    private static boolean sameAs(StudentAttendance.Entry a, StudentAttendance.Entry b) {
+        return a.startMs == b.startMs && a.dayKey == b.dayKey && equal(a.status, b.status)
+                && equal(a.subject, b.subject);
+    }
+
+    private static boolean equal(String a, String b) {
+        return a == null ? b == null : a.equals(b);
+    }
+
+    private boolean restore() {
+        String json = appContext.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE)
+                .getString(KEY_ENTRIES_PREFIX + enrollment, null);
+        if (json == null) return false;
+        try {
+            JSONArray array = new JSONArray(json);
+            for (int i = 0; i < array.length(); i++) {
+                JSONObject o = array.getJSONObject(i);
+                put(new StudentAttendance.Entry(o.getString("i"), o.optString("c", null), o.optString("s", null),
+                        o.optString("d", null), o.optLong("t", 0L), o.optInt("k", 0), false));
+            }
+            return !bySession.isEmpty();
+        } catch (JSONException e) {
+            Log.w(TAG, "Corrupt date index for " + enrollment + ": " + e.getMessage());
+            bySession.clear();
+            byDate.clear();
+            return false;
+        }
+    }
+
+    private void save() {
+        JSONArray array = new JSONArray();
+        try {
+            for (StudentAttendance.Entry entry : bySession.values()) {
+                JSONObject o = new JSONObject();
+                o.put("i", entry.sessionId);
+                if (entry.status != null) o.put("c", entry.status);
+                if (entry.subject != null) o.put("s", entry.subject);
+                if (entry.periodDate != null) o.put("d", entry.periodDate);
+                if (entry.startMs > 0) o.put("t", entry.startMs);
+                o.put("k", entry.dayKey);
+                array.put(o);
+            }
+        } catch (JSONException e) {
+            Log.w(TAG, "Failed to serialize date index: " + e.getMessage());
+            return;
+        }
+        SharedPreferences prefs = appContext.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        prefs.edit().putString(KEY_ENTRIES_PREFIX + enrollment, array.toString()).apply();
+    }
+}
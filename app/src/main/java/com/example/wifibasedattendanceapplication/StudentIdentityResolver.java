@@ -0,0 +1,198 @@
+package com.example.wifibasedattendanceapplication;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import com.google.firebase.auth.FirebaseAuth;
+import com.google.firebase.auth.FirebaseUser;
+import com.google.firebase.database.DataSnapshot;
+import com.google.firebase.database.DatabaseError;
+import com.google.firebase.database.FirebaseDatabase;
+import com.google.firebase.database.ValueEventListener;
+
+import java.util.Locale;
+
+/**
+ * Resolves the signed-in student's enrollment number from their email.
+ *
+ * Lookup order: in-process memo, on-disk memo, then a point read of
+ * EmailIndex/{encodedEmail} = enrollment. When the index has no entry yet the Students node is
+ * queried by student_email once and the index entry is written back, so later lookups on any
+ * device are a single small read. database.rules.json only accepts an index entry under the
+ * signed-in user's own encoded email that points at a student with that email, so a user can
+ * neither claim someone else's enrollment nor redirect someone else's lookup.
+ */
+public final class StudentIdentityResolver {
+
+    public static final String NODE = "EmailIndex";
+    private static final String TAG = "StudentIdentity";
+    private static final String PREFS_NAME = "student_identity";
+    private static final String KEY_EMAIL = "email";
+    private static final String KEY_ENROLLMENT = "enrollment";
+
+    private static String memoEmail;
+    private static String memoEnrollment;
+
+    public interface Callback {
+        void onResolved(@NonNull String enrollment);
+        void onNotFound();
+        void onError(@NonNull DatabaseError error);
+    }
+
+    private StudentIdentityResolver() { }
+
+    /**
+     * Encodes an email into a valid Realtime Database key (lower-cased, '.' becomes ','); the
+     * EmailIndex rule in database.rules.json repeats this encoding and must stay in step with it
+     */
+    public static String encodeEmail(@NonNull String email) {
+        String lower = email.trim().toLowerCase(Locale.US);
+        StringBuilder sb = new StringBuilder(lower.length());
+        for (int i = 0; i < lower.length(); i++) {
+            char c = lower.charAt(i);
+            switch (c) {
+                case '.': sb.append(','); break;
+                case '#': sb.append("%23"); break;
+                case '$': sb.append("%24"); break;
+                case '[': sb.append("%5B"); break;
+                case ']': sb.append("%5D"); break;
+                case '/': sb.append("%2F"); break;
+                default: sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Returns the memoized enrollment for the current user without touching the network, or null
+     */
+    public static synchronized String getCachedEnrollment(@NonNull Context context) {
+        String email = currentEmail();
+        if (email == null) return null;
+        if (email.equalsIgnoreCase(memoEmail)) return memoEnrollment;
+
+        SharedPreferences prefs = context.getApplicationContext().getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        String storedEmail = prefs.getString(KEY_EMAIL, null);
+        String storedEnrollment = prefs.getString(KEY_ENROLLMENT, null);
+        if (storedEnrollment != null && email.equalsIgnoreCase(storedEmail)) {
+            memoEmail = email;
+            memoEnrollment = storedEnrollment;
+            return storedEnrollment;
+        }
+        return null;
+    }
+
+    /**
+     * Memoizes an enrollment resolved elsewhere (e.g. at login) and makes sure the index has it.
+     * The index write is refused unless email is the signed-in user's and matches the student's
+     * student_email.
+     */
+    public static void remember(@NonNull Context context, @NonNull String email, @NonNull String enrollment) {
+        memoize(context, email, enrollment);
+        FirebaseDatabase.getInstance().getReference(NODE).child(encodeEmail(email)).setValue(enrollment);
+    }
+
+    private static void memoize(Context context, String email, String enrollment) {
+        synchronized (StudentIdentityResolver.class) {
+            memoEmail = email;
+            memoEnrollment = enrollment;
+        }
+        context.getApplicationContext().getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE)
+                .edit()
+                .putString(KEY_EMAIL, email)
+                .putString(KEY_ENROLLMENT, enrollment)
+                .apply();
+    }
+
+    /**
+     * Forgets the memoized identity; call on sign out
+     */
+    public static void clear(@NonNull Context context) {
+        synchronized (StudentIdentityResolver.class) {
+            memoEmail = null;
+            memoEnrollment = null;
+        }
+        context.getApplicationContext().getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE)
+                .edit()
+                .clear()
+                .apply();
+    }
+
+    /**
+     * Resolves the current user's enrollment, memoizing the result for the rest of the login
+     */
+    public static void resolve(@NonNull Context context, @NonNull Callback callback) {
+        String email = currentEmail();
+        if (email == null) {
+            callback.onNotFound();
+            return;
+        }
+
+        String cached = getCachedEnrollment(context);
+        if (cached != null) {
+            callback.onResolved(cached);
+            return;
+        }
+
+        Context appContext = context.getApplicationContext();
+        FirebaseDatabase.getInstance().getReference(NODE).child(encodeEmail(email))
+                .addListenerForSingleValueEvent(new ValueEventListener() {
+                    @Override
+                    public void onDataChange(@NonNull DataSnapshot snapshot) {
+                        String enrollment = snapshot.getValue(String.class);
+                        if (enrollment != null && !enrollment.isEmpty()) {
+                            Log.d(TAG, "Resolved " + email + " via EmailIndex: " + enrollment);
+                            memoize(appContext, email, enrollment);
+                            callback.onResolved(enrollment);
+                        } else {
+                            resolveFromStudents(appContext, email, callback);
+                        }
+                    }
+
+                    @Override
+                    public void onCancelled(@NonNull DatabaseError error) {
+                        Log.e(TAG, "EmailIndex lookup failed: " + error.getMessage());
+                        callback.onError(error);
+                    }
+                });
+    }
+
+    /**
+     * One-time fallback for emails not yet in the index; backfills the entry on success
+     */
+    private static void resolveFromStudents(Context context, String email, Callback callback) {
+        Log.d(TAG, "No EmailIndex entry for " + email + ", querying Students");
+        FirebaseDatabase.getInstance().getReference("Students")
+                .orderByChild("student_email").equalTo(email)
+                .limitToFirst(1)
+                .addListenerForSingleValueEvent(new ValueEventListener() {
+                    @Override
+                    public void onDataChange(@NonNull DataSnapshot snapshot) {
+                        for (DataSnapshot student : snapshot.getChildren()) {
+                            String enrollment = student.getKey();
+                            if (enrollment != null) {
+                                remember(context, email, enrollment);
+                                callback.onResolved(enrollment);
+                                return;
+                            }
+                        }
+                        Log.w(TAG, "No student found with email: " + email);
+                        callback.onNotFound();
+                    }
+
+                    @Override
+                    public void onCancelled(@NonNull DatabaseError error) {
+                        Log.e(TAG, "Students email query failed: " + error.getMessage());
+                        callback.onError(error);
+                    }
+                });
+    }
+
+    private static String currentEmail() {
+        FirebaseUser user = FirebaseAuth.getInstance().getCurrentUser();
+        return user != null ? user.getEmail() : null;
+    }
+}
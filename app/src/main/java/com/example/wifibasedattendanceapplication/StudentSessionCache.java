@@ -0,0 +1,299 @@
+package com.example.wifibasedattendanceapplication;
+
+import android.content.Context;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import com.google.firebase.database.DataSnapshot;
+import com.google.firebase.database.DatabaseError;
+import com.google.firebase.database.DatabaseReference;
+import com.google.firebase.database.FirebaseDatabase;
+import com.google.firebase.database.ValueEventListener;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The signed-in student's data shared by every student screen, owned by
+ * {@link WifiAttendanceApplication}.
+ *
+ * Holds the resolved enrollment, the profile fields, the Fees node and the {@link AttendanceSummary}.
+ * Profile fields are read one by one (never the whole Students/{enr} node, which carries the full
+ * attendance history) and are trusted for {@link #PROFILE_TTL_MS}. Fees and AttendanceSummary are
+ * kept current by value listeners attached on the first load, so marks and payments show up
+ * without a refetch. Once loaded, {@link #load} answers synchronously from memory; concurrent loads
+ * share one fetch. Everything is dropped on sign out. Main thread only.
+ */
+public class StudentSessionCache {
+
+    public static final long PROFILE_TTL_MS = 10 * 60 * 1000;
+    static final String[] PROFILE_FIELDS = {
+            "student_name", "Division", "Branch", "roll_no", "academic_year", "student_email"
+    };
+    private static final String TAG = "StudentSessionCache";
+
+    public static class Profile {
+        public final String name;
+        public final String division;
+        public final String branch;
+        public final String rollNo;
+        public final String academicYear;
+        public final String email;
+
+        Profile(Map<String, String> fields) {
+            name = fields.get("student_name");
+            division = fields.get("Division");
+            branch = fields.get("Branch");
+            rollNo = fields.get("roll_no");
+            academicYear = fields.get("academic_year");
+            email = fields.get("student_email");
+        }
+    }
+
+    public static class Snapshot {
+        public final String enrollment;
+        public final Profile profile;
+        /** Students/{enr}/Fees; may not exist */
+        public final DataSnapshot fees;
+        public final AttendanceSummary.Summary attendance;
+
+        Snapshot(String enrollment, Profile profile, DataSnapshot fees, AttendanceSummary.Summary attendance) {
+            this.enrollment = enrollment;
+            this.profile = profile;
+            this.fees = fees;
+            this.attendance = attendance;
+        }
+    }
+
+    public interface Callback {
+        void onReady(@NonNull Snapshot snapshot);
+        void onNotFound();
+        void onError(@NonNull DatabaseError error);
+    }
+
+    private final List<Callback> waiting = new ArrayList<>();
+    private String enrollment;
+    private Profile profile;
+    private long profileLoadedAt;
+    private boolean profileLoading;
+    private DataSnapshot fees;
+    private AttendanceSummary.Summary attendance;
+    private DatabaseReference feesRef;
+    private DatabaseReference summaryRef;
+    private ValueEventListener feesListener;
+    private ValueEventListener summaryListener;
+
+    public static StudentSessionCache get(@NonNull Context context) {
+        return ((WifiAttendanceApplication) context.getApplicationContext()).getStudentSessionCache();
+    }
+
+    /**
+     * The cached snapshot if it is complete and fresh, without touching the network; otherwise null
+     */
+    public Snapshot peek(@NonNull Context context) {
+        if (enrollment == null || !enrollment.equals(StudentIdentityResolver.getCachedEnrollment(context))) return null;
+        return isReady() ? snapshot() : null;
+    }
+
+    public void load(@NonNull Context context, @NonNull Callback callback) {
+        Snapshot cached = peek(context);
+        if (cached != null) {
+            callback.onReady(cached);
+            return;
+        }
+        waiting.add(callback);
+        if (waiting.size() > 1) return; // a fetch is already running
+
+        StudentIdentityResolver.resolve(context, new StudentIdentityResolver.Callback() {
+            @Override
+            public void onResolved(@NonNull String resolved) {
+                if (!resolved.equals(enrollment)) {
+                    detach();
+                    reset();
+                    enrollment = resolved;
+                }
+                attach(resolved);
+                if (!isProfileFresh()) fetchProfile(resolved);
+                deliverIfReady();
+            }
+
+            @Override
+            public void onNotFound() {
+                List<Callback> callbacks = drain();
+                for (Callback c : callbacks) c.onNotFound();
+            }
+
+            @Override
+            public void onError(@NonNull DatabaseError error) {
+                fail(error);
+            }
+        });
+    }
+
+    /**
+     * Forces the profile to be read again on the next load; the live nodes stay attached
+     */
+    public void invalidate() {
+        profileLoadedAt = 0L;
+    }
+
+    /**
+     * Detaches the listeners and forgets the student (sign out)
+     */
+    public void clear() {
+        detach();
+        reset();
+        enrollment = null;
+        List<Callback> callbacks = drain();
+        for (Callback c : callbacks) c.onNotFound();
+    }
+
+    private void reset() {
+        profile = null;
+        profileLoadedAt = 0L;
+        profileLoading = false;
+        fees = null;
+        attendance = null;
+    }
+
+    private boolean isProfileFresh() {
+        return profile != null && SystemClock.elapsedRealtime() - profileLoadedAt < PROFILE_TTL_MS;
+    }
+
+    private boolean isReady() {
+        return isProfileFresh() && fees != null && attendance != null;
+    }
+
+    private Snapshot snapshot() {
+        return new Snapshot(enrollment, profile, fees, attendance);
+    }
+
+    private void fetchProfile(String forEnrollment) {
+        if (profileLoading) return;
+        profileLoading = true;
+        Map<String, String> fields = new HashMap<>();
+        final int[] remaining = {PROFILE_FIELDS.length};
+        DatabaseReference studentRef = FirebaseDatabase.getInstance().getReference("Students").child(forEnrollment);
+        for (String field : PROFILE_FIELDS) {
+            studentRef.child(field).addListenerForSingleValueEvent(new ValueEventListener() {
+                @Override
+                public void onDataChange(@NonNull DataSnapshot snapshot) {
+                    Object value = snapshot.getValue();
+                    if (value != null) fields.put(field, String.valueOf(value));
+                    finish(null);
+                }
+
+                @Override
+                public void onCancelled(@NonNull DatabaseError error) {
+                    finish(error);
+                }
+
+                private void finish(DatabaseError error) {
+                    if (!forEnrollment.equals(enrollment) || !profileLoading) return;
+                    if (error != null) {
+                        profileLoading = false;
+                        Log.e(TAG, "Profile read failed: " + error.getMessage());
+                        fail(error);
+                        return;
+                    }
+                    remaining[0]--;
+                    if (remaining[0] > 0) return;
+                    profileLoading = false;
+                    profile = new Profile(fields);
+                    profileLoadedAt = SystemClock.elapsedRealtime();
+                    // Students are registered outside the app; keep the division roster projection in step
+                    DivisionRosterCache.syncMember(forEnrollment, profile.division, profile.name, profile.email);
+                    deliverIfReady();
+                }
+            });
+        }
+    }
+
+    private void attach(String forEnrollment) {
+        if (feesListener != null) return;
+        DatabaseReference studentRef = FirebaseDatabase.getInstance().getReference("Students").child(forEnrollment);
+        feesRef = studentRef.child("Fees");
+        summaryRef = studentRef.child(AttendanceSummary.NODE);
+
+        feesListener = new ValueEventListener() {
+            @Override
+            public void onDataChange(@NonNull DataSnapshot snapshot) {
+                fees = snapshot;
+                deliverIfReady();
+            }
+
+            @Override
+            public void onCancelled(@NonNull DatabaseError error) {
+                Log.e(TAG, "Fees listener cancelled: " + error.getMessage());
+                detach();
+                fail(error);
+            }
+        };
+        summaryListener = new ValueEventListener() {
+            @Override
+            public void onDataChange(@NonNull DataSnapshot snapshot) {
+                if (!snapshot.exists()) {
+                    // First use: build it; the write comes back through this listener
+                    AttendanceSummary.rebuild(forEnrollment, new AttendanceSummary.SummaryCallback() {
+                        @Override
+                        public void onSummary(@NonNull AttendanceSummary.Summary summary) {
+                            if (attendance == null && forEnrollment.equals(enrollment)) {
+                                attendance = summary;
+                                deliverIfReady();
+                            }
+                        }
+
+                        @Override
+                        public void onError(@NonNull DatabaseError error) {
+                            fail(error);
+                        }
+                    });
+                    return;
+                }
+                attendance = AttendanceSummary.Summary.fromSnapshot(snapshot);
+                deliverIfReady();
+            }
+
+            @Override
+            public void onCancelled(@NonNull DatabaseError error) {
+                Log.e(TAG, "Summary listener cancelled: " + error.getMessage());
+                detach();
+                fail(error);
+            }
+        };
+        feesRef.addValueEventListener(feesListener);
+        summaryRef.addValueEventListener(summaryListener);
+        Log.d(TAG, "Watching fees and attendance summary for " + forEnrollment);
+    }
+
+    private void detach() {
+        if (feesListener != null) feesRef.removeEventListener(feesListener);
+        if (summaryListener != null) summaryRef.removeEventListener(summaryListener);
+        feesListener = null;
+        summaryListener = null;
+        fees = null;
+        attendance = null;
+    }
+
+    private void deliverIfReady() {
+        if (waiting.isEmpty() || !isReady()) return;
+        Snapshot ready = snapshot();
+        List<Callback> callbacks = drain();
+        for (Callback c : callbacks) c.onReady(ready);
+    }
+
+    private void fail(DatabaseError error) {
+        List<Callback> callbacks = drain();
+        for (Callback c : callbacks) c.onError(error);
+    }
+
+    private List<Callback> drain() {
+        List<Callback> callbacks = new ArrayList<>(waiting);
+        waiting.clear();
+        return callbacks;
+    }
+}
@@ -16,6 +16,7 @@ import android.net.NetworkInfo;
 import android.net.wifi.WifiInfo;
 import android.net.wifi.WifiManager;
 import android.os.Bundle;
+import android.os.SystemClock;
 import android.util.Log;
 import android.view.View;
 import android.widget.Button;
@@ -27,12 +28,11 @@ import com.google.firebase.database.DatabaseError;
 import com.google.firebase.database.DatabaseReference;
 import com.google.firebase.database.FirebaseDatabase;
 import com.google.firebase.database.ValueEventListener;
-import com.google.firebase.database.ChildEventListener;
 import com.google.firebase.database.ServerValue;
 
+import java.util.HashSet;
 import java.util.List;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.Set;
 
 public class SubmitAttendanceActivity extends BaseAuthenticatedActivity {
     // Configuration - Set this to true for university environments
@@ -42,6 +42,10 @@ public class SubmitAttendanceActivity extends BaseAuthenticatedActivity {
     Button btn_logout, btn_test_wifi;
     private DatabaseReference attendanceReportRef;
     private String currentStudentEnrollment;
+    private SessionEventMonitor sessionEventMonitor;
+    // Sessions a started event has already opened, so a replayed event does not open them twice
+    private final Set<String> openedSessions = new HashSet<>();
+    private static final long EVENT_MARGIN_MS = 30 * 1000;
     private static final String PREFS_NAME = "attendance_prefs";
     private static final String KEY_NOTIFIED_PREFIX = "notified_session_";
 
@@ -71,15 +75,6 @@ public class SubmitAttendanceActivity extends BaseAuthenticatedActivity {
             }, 1000);
         }
     }
-    
-    @Override
-    protected void onPause() {
-        super.onPause();
-        // Clean up any listeners to prevent memory leaks
-        if (attendanceReportRef != null) {
-            // Note: We can't remove specific listeners here, but this helps with cleanup
-        }
-    }
 
     private void getCurrentStudentEnrollment() {
         // Get current user's email
@@ -97,89 +92,43 @@ public class SubmitAttendanceActivity extends BaseAuthenticatedActivity {
         
         Log.d("SubmitAttendance", "Searching for student with email: " + userEmail);
         
-        // Search for student enrollment in Firebase
-        DatabaseReference studentsRef = FirebaseDatabase.getInstance().getReference("Students");
-        studentsRef.orderByChild("student_email").equalTo(userEmail)
-            .addListenerForSingleValueEvent(new ValueEventListener() {
-                @Override
-                public void onDataChange(@NonNull DataSnapshot dataSnapshot) {
-                    if (dataSnapshot.exists()) {
-                        for (DataSnapshot studentSnapshot : dataSnapshot.getChildren()) {
-                            currentStudentEnrollment = studentSnapshot.getKey();
-                            Log.d("SubmitAttendance", "Found student enrollment: " + currentStudentEnrollment);
-                            
-                            // Verify student data is complete
-                            verifyStudentData(studentSnapshot);
-                            break; // Get the first match
-                        }
-                        
-                        // Now that we have the enrollment, check WiFi and proceed
-                        if (currentStudentEnrollment != null) {
-                            // Check location permissions before checking WiFi
-                            if (hasLocationPermissions()) {
-                                checkWifi();
-                            } else {
-                                requestLocationPermissions();
-                            }
-                        } else {
-                            Toast.makeText(SubmitAttendanceActivity.this, 
-                                "Student enrollment not found. Please contact administrator.", Toast.LENGTH_LONG).show();
-                        }
-                    } else {
-                        Log.e("SubmitAttendance", "No student found with email: " + userEmail);
-                        
-                        // Let's check what students exist in the database
-                        studentsRef.addListenerForSingleValueEvent(new ValueEventListener() {
-                            @Override
-                            public void onDataChange(@NonNull DataSnapshot allStudentsSnapshot) {
-                                Log.d("SubmitAttendance", "Total students in database: " + allStudentsSnapshot.getChildrenCount());
-                                for (DataSnapshot student : allStudentsSnapshot.getChildren()) {
-                                    String studentEmail = student.child("student_email").getValue(String.class);
-                                    Log.d("SubmitAttendance", "Student " + student.getKey() + " has email: " + studentEmail);
-                                }
-                            }
-                            
-                            @Override
-                            public void onCancelled(@NonNull DatabaseError error) {
-                                Log.e("SubmitAttendance", "Error checking all students: " + error.getMessage());
-                            }
-                        });
-                        
-                        Toast.makeText(SubmitAttendanceActivity.this, 
-                            "Student account not found. Please contact administrator.", Toast.LENGTH_LONG).show();
-                        // Redirect to login
-                        Intent intent = new Intent(SubmitAttendanceActivity.this, LoginStudentActivity.class);
-                        startActivity(intent);
-                        finish();
-                    }
+        StudentIdentityResolver.resolve(this, new StudentIdentityResolver.Callback() {
+            @Override
+            public void onResolved(@NonNull String enrollment) {
+                currentStudentEnrollment = enrollment;
+                Log.d("SubmitAttendance", "Found student enrollment: " + currentStudentEnrollment);
+                
+                // Now that we have the enrollment, check WiFi and proceed
+                // Check location permissions before checking WiFi
+                if (hasLocationPermissions()) {
+                    checkWifi();
+                } else {
+                    requestLocationPermissions();
                 }
+            }
 
-                @Override
-                public void onCancelled(@NonNull DatabaseError databaseError) {
-                    Log.e("SubmitAttendance", "Error finding student enrollment: " + databaseError.getMessage());
-                    Toast.makeText(SubmitAttendanceActivity.this, 
-                        "Database error. Please try again.", Toast.LENGTH_SHORT).show();
-                    // Redirect to login
-                    Intent intent = new Intent(SubmitAttendanceActivity.this, LoginStudentActivity.class);
-                    startActivity(intent);
-                    finish();
-                }
-            });
-    }
+            @Override
+            public void onNotFound() {
+                Log.e("SubmitAttendance", "No student found with email: " + userEmail);
+                Toast.makeText(SubmitAttendanceActivity.this, 
+                    "Student account not found. Please contact administrator.", Toast.LENGTH_LONG).show();
+                // Redirect to login
+                Intent intent = new Intent(SubmitAttendanceActivity.this, LoginStudentActivity.class);
+                startActivity(intent);
+                finish();
+            }
 
-    private void verifyStudentData(DataSnapshot studentSnapshot) {
-        String studentName = studentSnapshot.child("student_name").getValue(String.class);
-        String studentEmail = studentSnapshot.child("student_email").getValue(String.class);
-        String studentDivision = studentSnapshot.child("Division").getValue(String.class);
-        
-        Log.d("SubmitAttendance", "Student data verification:");
-        Log.d("SubmitAttendance", "  Name: " + studentName);
-        Log.d("SubmitAttendance", "  Email: " + studentEmail);
-        Log.d("SubmitAttendance", "  Division: " + studentDivision);
-        
-        if (studentName == null || studentEmail == null || studentDivision == null) {
-            Log.w("SubmitAttendance", "Student data is incomplete");
-        }
+            @Override
+            public void onError(@NonNull DatabaseError databaseError) {
+                Log.e("SubmitAttendance", "Error finding student enrollment: " + databaseError.getMessage());
+                Toast.makeText(SubmitAttendanceActivity.this, 
+                    "Database error. Please try again.", Toast.LENGTH_SHORT).show();
+                // Redirect to login
+                Intent intent = new Intent(SubmitAttendanceActivity.this, LoginStudentActivity.class);
+                startActivity(intent);
+                finish();
+            }
+        });
     }
 
     private void checkWifi() {
@@ -202,38 +151,38 @@ public class SubmitAttendanceActivity extends BaseAuthenticatedActivity {
         Log.d("SubmitAttendance", "Checking for active sessions for student: " + currentStudentEnrollment);
         attendanceReportRef = FirebaseDatabase.getInstance().getReference("AttendanceReport");
         
-        // First, let's clean up expired sessions
-        cleanupExpiredSessions();
+        // Expired sessions are flipped by SessionExpiryWorker; the index lookup below already
+        // ignores sessions past their grace period
         
-        // Get student's division first
-        DatabaseReference studentRef = FirebaseDatabase.getInstance().getReference("Students").child(currentStudentEnrollment);
-        studentRef.addListenerForSingleValueEvent(new ValueEventListener() {
+        // Get student's division first (from the shared session cache)
+        StudentSessionCache.get(this).load(this, new StudentSessionCache.Callback() {
             @Override
-            public void onDataChange(@NonNull DataSnapshot studentSnapshot) {
-                if (studentSnapshot.exists()) {
-                    String studentDivision = studentSnapshot.child("Division").getValue(String.class);
-                    
-                    if (studentDivision == null) {
-                        Toast.makeText(SubmitAttendanceActivity.this, 
-                            "Student division information is missing. Please contact administrator.", 
-                            Toast.LENGTH_LONG).show();
-                        return;
-                    }
-                    
-                    Log.d("SubmitAttendance", "Student " + currentStudentEnrollment + 
-                          " belongs to Division: " + studentDivision);
-                    
-                    // Now check for active sessions matching student's division
-                    checkSessionsForStudentDivision(studentDivision);
-                } else {
+            public void onReady(@NonNull StudentSessionCache.Snapshot snapshot) {
+                String studentDivision = snapshot.profile.division;
+                
+                if (studentDivision == null) {
                     Toast.makeText(SubmitAttendanceActivity.this, 
-                        "Student information not found. Please contact administrator.", 
+                        "Student division information is missing. Please contact administrator.", 
                         Toast.LENGTH_LONG).show();
+                    return;
                 }
+                
+                Log.d("SubmitAttendance", "Student " + currentStudentEnrollment + 
+                      " belongs to Division: " + studentDivision);
+                
+                // Now check for active sessions matching student's division
+                checkSessionsForStudentDivision(studentDivision);
             }
             
             @Override
-            public void onCancelled(@NonNull DatabaseError error) {
+            public void onNotFound() {
+                Toast.makeText(SubmitAttendanceActivity.this, 
+                    "Student information not found. Please contact administrator.", 
+                    Toast.LENGTH_LONG).show();
+            }
+            
+            @Override
+            public void onError(@NonNull DatabaseError error) {
                 Log.e("SubmitAttendance", "Error getting student information: " + error.getMessage());
                 Toast.makeText(SubmitAttendanceActivity.this, 
                     "Error retrieving student information. Please try again.", 
@@ -245,93 +194,36 @@ public class SubmitAttendanceActivity extends BaseAuthenticatedActivity {
     private void checkSessionsForStudentDivision(String studentDivision) {
         Log.d("SubmitAttendance", "Checking for sessions matching Division: " + studentDivision);
         
-        // Check for active sessions that match student's division
-        attendanceReportRef.addListenerForSingleValueEvent(new ValueEventListener() {
+        // Resolve the active session from the per-division index (one small read)
+        long lookupStartedAt = SystemClock.elapsedRealtime();
+        ActiveSessionIndex.findActiveSession(studentDivision, new ActiveSessionIndex.LookupCallback() {
             @Override
-            public void onDataChange(@NonNull DataSnapshot dataSnapshot) {
-                Log.d("SubmitAttendance", "Found " + dataSnapshot.getChildrenCount() + " total sessions");
+            public void onActiveSession(@NonNull String activeSessionId) {
+                Log.d("SubmitAttendance", "Found active session: " + activeSessionId + 
+                      " for Division: " + studentDivision);
+                // Check if student is part of this session
+                checkStudentInSession(activeSessionId);
+            }
+
+            @Override
+            public void onNoActiveSession() {
+                Log.w("SubmitAttendance", "No active sessions found for Division: " + studentDivision);
                 
-                String activeSessionId = null;
-                long currentTime = System.currentTimeMillis();
-                long bestSessionTime = 0;
+                // Show more helpful message with conversion info
+                String displayDivision = convertAbbreviationToDisplayName(studentDivision);
+                String message = "No active attendance sessions found for your Division (" + displayDivision + "). Please wait for faculty to start a session.";
+                Toast.makeText(SubmitAttendanceActivity.this, message, Toast.LENGTH_LONG).show();
                 
-                // Find the most recent active session matching student's division
-                for (DataSnapshot sessionSnapshot : dataSnapshot.getChildren()) {
-                    String sessionKey = sessionSnapshot.getKey();
-                    String sessionDivision = sessionSnapshot.child("division").getValue(String.class);
-                    String sessionStatus = sessionSnapshot.child("session_status").getValue(String.class);
-                    Long endTimestamp = sessionSnapshot.child("end_timestamp").getValue(Long.class);
-                    Long timestamp = sessionSnapshot.child("timestamp").getValue(Long.class);
-                    
-                    Log.d("SubmitAttendance", "Checking session: " + sessionKey + 
-                          " with division: " + sessionDivision + 
-                          ", status: " + sessionStatus + 
-                          ", end_timestamp: " + endTimestamp);
-                    
-                    // Check if session matches student's division
-                    if (!studentDivision.equals(sessionDivision)) {
-                        Log.d("SubmitAttendance", "Session " + sessionKey + " does not match student's division");
-                        continue;
-                    }
-                    
-                    Log.d("SubmitAttendance", "Session " + sessionKey + " matches student's division!");
-                    
-                    if (timestamp != null) {
-                        // Check if session is active and within time limits
-                        boolean isActive = "active".equals(sessionStatus);
-                        boolean isWithinTime = true; // Remove 24-hour restriction for now
-                        boolean isNotExpired = endTimestamp == null || currentTime <= (endTimestamp + (30 * 60 * 1000)); // 30 min grace period
-                        
-                        Log.d("SubmitAttendance", "Session " + sessionKey + " validation: active=" + isActive + 
-                              ", withinTime=" + isWithinTime + ", notExpired=" + isNotExpired);
-                        
-                        if (isActive && isWithinTime && isNotExpired) {
-                            // Find the most recent valid session
-                            if (timestamp > bestSessionTime) {
-                                bestSessionTime = timestamp;
-                                activeSessionId = sessionSnapshot.getKey();
-                                Log.d("SubmitAttendance", "New best active session found: " + activeSessionId + " at " + bestSessionTime);
-                            }
-                        } else {
-                            if (!isActive) {
-                                Log.d("SubmitAttendance", "Session " + sessionKey + " is not active (status: " + sessionStatus + ")");
-                            }
-                            if (!isWithinTime) {
-                                Log.d("SubmitAttendance", "Session " + sessionKey + " is too old");
-                            }
-                            if (!isNotExpired) {
-                                Log.d("SubmitAttendance", "Session " + sessionKey + " has expired (including grace period)");
-                            }
-                        }
-                    } else {
-                        Log.w("SubmitAttendance", "Session " + sessionKey + " has no timestamp");
-                    }
-                }
+                Log.d("SubmitAttendance", "Display message: " + message);
                 
-                if (activeSessionId != null) {
-                    Log.d("SubmitAttendance", "Found active session: " + activeSessionId + 
-                          " for Division: " + studentDivision);
-                    // Check if student is part of this session
-                    checkStudentInSession(activeSessionId);
-                } else {
-                    Log.w("SubmitAttendance", "No active sessions found for Division: " + studentDivision);
-                    
-                    // Show more helpful message with conversion info
-                    String displayDivision = convertAbbreviationToDisplayName(studentDivision);
-                    String message = "No active attendance sessions found for your Division (" + displayDivision + "). Please wait for faculty to start a session.";
-                    Toast.makeText(SubmitAttendanceActivity.this, message, Toast.LENGTH_LONG).show();
-                    
-                    Log.d("SubmitAttendance", "Display message: " + message);
-                    
-                    // First, scan for any already-ended sessions we haven't notified about
-                    scanForEndedSessionsAndNotify(studentDivision, dataSnapshot);
-                    // Then start real-time monitoring for future sessions/changes
-                    startRealTimeSessionMonitoring(studentDivision);
-                }
+                // First, scan for any already-ended sessions we haven't notified about
+                loadRecentlyEndedSessions(studentDivision);
+                // Then start real-time monitoring for future sessions/changes
+                startRealTimeSessionMonitoring(studentDivision, lookupStartedAt);
             }
 
             @Override
-            public void onCancelled(@NonNull DatabaseError databaseError) {
+            public void onError(@NonNull DatabaseError databaseError) {
                 Log.e("SubmitAttendance", "Error checking sessions: " + databaseError.getMessage());
                 Toast.makeText(SubmitAttendanceActivity.this, 
                     "Error checking sessions. Please try again.", Toast.LENGTH_SHORT).show();
@@ -339,6 +231,25 @@ public class SubmitAttendanceActivity extends BaseAuthenticatedActivity {
         });
     }
 
+    /**
+     * Reads only sessions that ended within the notification window instead of the whole tree
+     */
+    private void loadRecentlyEndedSessions(String studentDivision) {
+        long notifyWindowMs = 2 * 60 * 60 * 1000;
+        SessionQuery.endedSince(System.currentTimeMillis() - notifyWindowMs)
+            .addListenerForSingleValueEvent(new ValueEventListener() {
+                @Override
+                public void onDataChange(@NonNull DataSnapshot dataSnapshot) {
+                    scanForEndedSessionsAndNotify(studentDivision, dataSnapshot);
+                }
+
+                @Override
+                public void onCancelled(@NonNull DatabaseError databaseError) {
+                    Log.e("SubmitAttendance", "Error loading recently ended sessions: " + databaseError.getMessage());
+                }
+            });
+    }
+
     private void scanForEndedSessionsAndNotify(String studentDivision, @NonNull DataSnapshot allSessions) {
         String latestEndedSessionId = null;
         String latestSubject = null;
@@ -378,53 +289,29 @@ public class SubmitAttendanceActivity extends BaseAuthenticatedActivity {
     /**
      * Starts real-time monitoring for new sessions matching the student's division and group
      */
-    private void startRealTimeSessionMonitoring(String studentDivision) {
+    private void startRealTimeSessionMonitoring(String studentDivision, long lookupStartedAt) {
         Log.d("SubmitAttendance", "Starting real-time session monitoring for Division: " + studentDivision);
 
-        attendanceReportRef.addChildEventListener(new ChildEventListener() {
-            @Override
-            public void onChildAdded(@NonNull DataSnapshot snapshot, String previousChildName) { }
-
-            @Override
-            public void onChildChanged(@NonNull DataSnapshot sessionSnapshot, String previousChildName) {
-                String sessionKey = sessionSnapshot.getKey();
-                String sessionDivision = sessionSnapshot.child("division").getValue(String.class);
-                String sessionStatus = sessionSnapshot.child("session_status").getValue(String.class);
-                Long timestamp = sessionSnapshot.child("timestamp").getValue(Long.class);
-                String subject = sessionSnapshot.child("subject").getValue(String.class);
-                String periodDate = sessionSnapshot.child("period_date").getValue(String.class);
-
-                if (sessionKey == null) return;
-
-                // Resume redirect on new active session
-                if (studentDivision.equals(sessionDivision) &&
-                        "active".equals(sessionStatus) && timestamp != null) {
-                    Log.d("SubmitAttendance", "Real-time: Found active session change: " + sessionKey);
-                    Toast.makeText(SubmitAttendanceActivity.this,
-                            "New attendance session detected! Redirecting...", Toast.LENGTH_SHORT).show();
-                    checkStudentInSession(sessionKey);
-                    return;
-                }
-
-                // Notify only once when a session transitions to ended (debounced)
-                if (studentDivision.equals(sessionDivision) &&
-                        "ended".equals(sessionStatus) && !hasNotified(sessionKey)) {
-                    // Delay slightly to allow final status writes to propagate
-                    new android.os.Handler().postDelayed(() -> {
-                        resolveFinalStatusAndNotify(sessionKey, subject, periodDate);
-                    }, 1500);
-                }
-            }
-
-            @Override
-            public void onChildRemoved(@NonNull DataSnapshot snapshot) { }
-
-            @Override
-            public void onChildMoved(@NonNull DataSnapshot snapshot, String previousChildName) { }
-
-            @Override
-            public void onCancelled(@NonNull DatabaseError error) {
-                Log.e("SubmitAttendance", "ChildEventListener cancelled: " + error.getMessage());
+        // Only this division's SessionEvents stream is watched; earlier state was covered by the
+        // index lookup and the recently-ended scan, so events since that lookup started are enough
+        // (plus some slack, as event times are the server's)
+        // The monitor's listener is keyed in this screen's registry, so a refresh replaces it
+        if (sessionEventMonitor == null) {
+            sessionEventMonitor = new SessionEventMonitor(listeners, studentDivision);
+        }
+        long marginMs = SystemClock.elapsedRealtime() - lookupStartedAt + EVENT_MARGIN_MS;
+        sessionEventMonitor.startFromServerTime(marginMs, event -> {
+            if (SessionEvents.TYPE_STARTED.equals(event.type)) {
+                if (!openedSessions.add(event.sessionId)) return;
+                Log.d("SubmitAttendance", "Real-time: session started: " + event.sessionId);
+                Toast.makeText(SubmitAttendanceActivity.this,
+                        "New attendance session detected! Redirecting...", Toast.LENGTH_SHORT).show();
+                checkStudentInSession(event.sessionId);
+            } else if (SessionEvents.TYPE_ENDED.equals(event.type) && !hasNotified(event.sessionId)) {
+                // Delay slightly to allow final status writes to propagate
+                new android.os.Handler().postDelayed(() -> {
+                    resolveFinalStatusAndNotify(event.sessionId, event.subject, event.periodDate);
+                }, 1500);
             }
         });
     }
@@ -442,7 +329,7 @@ public class SubmitAttendanceActivity extends BaseAuthenticatedActivity {
     }
 
     private void resolveFinalStatusAndNotify(@NonNull String sessionId, String subject, String periodDate) {
-        // Prefer student's Attendance node (P/A), fallback to session Students node
+        // Prefer student's Attendance entry (P/A), fallback to session Students node
         DatabaseReference studentAttendance = FirebaseDatabase.getInstance()
                 .getReference("Students").child(currentStudentEnrollment)
                 .child("Attendance").child(sessionId);
@@ -450,7 +337,7 @@ public class SubmitAttendanceActivity extends BaseAuthenticatedActivity {
         studentAttendance.addListenerForSingleValueEvent(new ValueEventListener() {
             @Override
             public void onDataChange(@NonNull DataSnapshot snap) {
-                String code = snap.getValue(String.class); // P or A
+                String code = snap.exists() ? StudentAttendance.Entry.fromSnapshot(snap).status : null; // P or A
                 String display = mapAttendanceCode(code);
                 if (display == null) {
                     // Fallback to session-level status text
@@ -715,47 +602,6 @@ public class SubmitAttendanceActivity extends BaseAuthenticatedActivity {
         return false;
     }
 
-    private void cleanupExpiredSessions() {
-        // Check for sessions that have passed their end time and mark them as expired
-        attendanceReportRef.addListenerForSingleValueEvent(new ValueEventListener() {
-            @Override
-            public void onDataChange(@NonNull DataSnapshot dataSnapshot) {
-                long currentTime = System.currentTimeMillis();
-                long gracePeriod = 30 * 60 * 1000; // 30 minutes grace period
-                
-                for (DataSnapshot sessionSnapshot : dataSnapshot.getChildren()) {
-                    String sessionKey = sessionSnapshot.getKey();
-                    String sessionStatus = sessionSnapshot.child("session_status").getValue(String.class);
-                    Long endTimestamp = sessionSnapshot.child("end_timestamp").getValue(Long.class);
-                    
-                    // If session is active but has passed end time + grace period, mark it as expired
-                    if ("active".equals(sessionStatus) && endTimestamp != null && currentTime > (endTimestamp + gracePeriod)) {
-                        Log.d("SubmitAttendance", "Marking expired session: " + sessionKey + 
-                              " (end time: " + endTimestamp + ", grace period until: " + (endTimestamp + gracePeriod) + 
-                              ", current time: " + currentTime + ")");
-                        
-                        DatabaseReference sessionRef = attendanceReportRef.child(sessionKey);
-                        Map<String, Object> updates = new HashMap<>();
-                        updates.put("session_status", "expired");
-                        
-                        sessionRef.updateChildren(updates).addOnCompleteListener(task -> {
-                            if (task.isSuccessful()) {
-                                Log.d("SubmitAttendance", "Session " + sessionKey + " marked as expired");
-                            } else {
-                                Log.e("SubmitAttendance", "Failed to mark session " + sessionKey + " as expired: " + task.getException());
-                            }
-                        });
-                    }
-                }
-            }
-            
-            @Override
-            public void onCancelled(@NonNull DatabaseError databaseError) {
-                Log.e("SubmitAttendance", "Error cleaning up expired sessions: " + databaseError.getMessage());
-            }
-        });
-    }
-
     private void Init() {
         btn_logout = findViewById(R.id.btn_logout);
         btn_test_wifi = findViewById(R.id.btn_test_wifi);
@@ -39,6 +39,10 @@ public class TakeAttendanceActivity extends BaseAuthenticatedActivity {
 
         // Prompt to resume or end any active session
         checkAndPromptResume();
+
+        // Session expiry is swept in the background from the faculty side only
+        SessionExpiryWorker.schedule(this);
+        DataMigrationWorker.schedule(this);
     }
 
     private void Buttons() {
@@ -130,7 +134,9 @@ public class TakeAttendanceActivity extends BaseAuthenticatedActivity {
                             })
                             .setNegativeButton("End Session", (d, w) -> {
                                 // End now
-                                endExistingSession(savedSessionId);
+                                endExistingSession(savedSessionId, snapshot.child("division").getValue(String.class),
+                                        snapshot.child("subject").getValue(String.class),
+                                        snapshot.child("period_date").getValue(String.class));
                             })
                             .setCancelable(true)
                             .show();
@@ -145,19 +151,21 @@ public class TakeAttendanceActivity extends BaseAuthenticatedActivity {
         });
     }
 
-    private void endExistingSession(@NonNull String sessionId) {
-        DatabaseReference sessionRef = FirebaseDatabase.getInstance()
-                .getReference("AttendanceReport")
-                .child(sessionId);
-
+    private void endExistingSession(@NonNull String sessionId, String division, String subject, String periodDate) {
+        // Same shape as ending from the session screen: status, index entry and "ended" event together
+        String sessionPath = "AttendanceReport/" + sessionId;
         java.util.Map<String, Object> updates = new java.util.HashMap<>();
-        updates.put("session_status", "ended");
-        updates.put("end_timestamp", System.currentTimeMillis());
+        updates.put(sessionPath + "/session_status", "ended");
+        updates.put(sessionPath + "/end_timestamp", System.currentTimeMillis());
+        ActiveSessionIndex.removeEntry(updates, division, sessionId);
+        SessionEvents.putEvent(updates, division, sessionId, SessionEvents.TYPE_ENDED, subject, periodDate);
 
-        sessionRef.updateChildren(updates).addOnCompleteListener(task -> {
+        FirebaseDatabase.getInstance().getReference().updateChildren(updates).addOnCompleteListener(task -> {
             // Clear persisted session regardless of success to avoid loops
             getSharedPreferences(PREFS_NAME, MODE_PRIVATE).edit().remove(KEY_ACTIVE_SESSION_ID).apply();
             if (task.isSuccessful()) {
+                SessionCounters.reconcile(sessionId, null);
+                AttendanceSummary.countSession(sessionId);
                 Toast.makeText(this, "Session ended.", Toast.LENGTH_SHORT).show();
             } else {
                 Toast.makeText(this, "Failed to end session. Try again.", Toast.LENGTH_SHORT).show();
@@ -3,6 +3,7 @@ package com.example.wifibasedattendanceapplication;
 import android.app.Application;
 import android.util.Log;
 
+import com.example.wifibasedattendanceapplication.chatbot.StudentContextBuilder;
 import com.google.firebase.auth.FirebaseAuth;
 import com.google.firebase.database.FirebaseDatabase;
 
@@ -10,6 +11,8 @@ public class WifiAttendanceApplication extends Application {
     
     private static final String TAG = "WifiAttendanceApp";
     
+    private final StudentSessionCache studentSessionCache = new StudentSessionCache();
+    
     @Override
     public void onCreate() {
         super.onCreate();
@@ -18,6 +21,9 @@ public class WifiAttendanceApplication extends Application {
         FirebaseDatabase.getInstance().setPersistenceEnabled(true);
         // Create notification channels
         NotificationHelper.createChannels(this);
+        // Marks queued before the app was closed are replayed once there is a network. Enqueuing is
+        // cheap and the worker returns at once on an empty queue, so the queue is not read here.
+        MarkReplayWorker.schedule(this);
         
         // Set up authentication state listener
         FirebaseAuth.getInstance().addAuthStateListener(new FirebaseAuth.AuthStateListener() {
@@ -29,10 +35,19 @@ public class WifiAttendanceApplication extends Application {
                     firebaseAuth.getCurrentUser().getIdToken(true);
                 } else {
                     Log.d(TAG, "User signed out");
+                    studentSessionCache.clear();
+                    StudentContextBuilder.clearCache(WifiAttendanceApplication.this);
                 }
             }
         });
         
         Log.d(TAG, "Application initialized");
     }
+    
+    /**
+     * The signed-in student's shared data; see {@link StudentSessionCache#get}
+     */
+    public StudentSessionCache getStudentSessionCache() {
+        return studentSessionCache;
+    }
 }
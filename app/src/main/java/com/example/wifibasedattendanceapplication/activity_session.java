@@ -21,15 +21,16 @@ import com.google.firebase.database.DatabaseReference;
 import com.google.firebase.database.FirebaseDatabase;
 import com.google.firebase.database.ValueEventListener;
 
-import java.text.SimpleDateFormat;
+import java.util.ArrayList;
 import java.util.Calendar;
-import java.util.Date;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 public class activity_session extends BaseAuthenticatedActivity {
     String branch, division, subject;
     private String sessionId;
+    private StudentAttendance.SessionDetails sessionDetails;
     private static final String PREFS_NAME = "attendance_prefs";
     private static final String KEY_ACTIVE_SESSION_ID = "active_session_id";
 
@@ -258,29 +259,23 @@ public class activity_session extends BaseAuthenticatedActivity {
      * This helps prevent session ID conflicts
      */
     private void cleanupOrphanedSessions() {
-        DatabaseReference attendanceReportRef = FirebaseDatabase.getInstance().getReference("AttendanceReport");
-        attendanceReportRef.addListenerForSingleValueEvent(new ValueEventListener() {
+        // Sessions with no timestamp are fetched directly from the index; a missing status can
+        // only come from a recent interrupted create, so only the newest sessions are checked for it
+        SessionQuery.missingStart().addListenerForSingleValueEvent(new ValueEventListener() {
             @Override
             public void onDataChange(DataSnapshot dataSnapshot) {
-                if (dataSnapshot.exists()) {
-                    Log.d("Debug", "Checking for orphaned sessions...");
-                    
-                    for (DataSnapshot sessionSnapshot : dataSnapshot.getChildren()) {
-                        String sessionKey = sessionSnapshot.getKey();
-                        String sessionStatus = sessionSnapshot.child("session_status").getValue(String.class);
-                        Long timestamp = sessionSnapshot.child("timestamp").getValue(Long.class);
-                        
-                        // Check for sessions without proper data
-                        if (sessionStatus == null || timestamp == null) {
-                            Log.w("Debug", "Found orphaned session: " + sessionKey + 
-                                  " (status: " + sessionStatus + ", timestamp: " + timestamp + ")");
-                            
-                            // Optionally remove orphaned sessions
-                            // Uncomment the next line if you want to auto-remove them
-                            // sessionSnapshot.getRef().removeValue();
-                        }
-                    }
-                }
+                logOrphanedSessions(dataSnapshot);
+            }
+            
+            @Override
+            public void onCancelled(DatabaseError error) {
+                Log.e("Debug", "Error checking for orphaned sessions: " + error.getMessage());
+            }
+        });
+        SessionQuery.latest(SessionQuery.DEFAULT_PAGE_SIZE).addListenerForSingleValueEvent(new ValueEventListener() {
+            @Override
+            public void onDataChange(DataSnapshot dataSnapshot) {
+                logOrphanedSessions(dataSnapshot);
             }
             
             @Override
@@ -290,16 +285,35 @@ public class activity_session extends BaseAuthenticatedActivity {
         });
     }
 
-    private void createSessionData() {
-        DatabaseReference newReportRef = FirebaseDatabase.getInstance()
-                .getReference("AttendanceReport")
-                .child(sessionId);
+    private void logOrphanedSessions(DataSnapshot dataSnapshot) {
+        if (!dataSnapshot.exists()) return;
+        Log.d("Debug", "Checking for orphaned sessions...");
+        
+        for (DataSnapshot sessionSnapshot : dataSnapshot.getChildren()) {
+            String sessionKey = sessionSnapshot.getKey();
+            String sessionStatus = sessionSnapshot.child("session_status").getValue(String.class);
+            Long timestamp = sessionSnapshot.child("timestamp").getValue(Long.class);
+            
+            // Check for sessions without proper data
+            if (sessionStatus == null || timestamp == null) {
+                Log.w("Debug", "Found orphaned session: " + sessionKey + 
+                      " (status: " + sessionStatus + ", timestamp: " + timestamp + ")");
+                
+                // Optionally remove orphaned sessions
+                // Uncomment the next line if you want to auto-remove them
+                // sessionSnapshot.getRef().removeValue();
+            }
+        }
+    }
 
-        Date currentDate = new Date();
-        SimpleDateFormat dateFormat = new SimpleDateFormat("dd/MM/yy");
-        String formattedDate = dateFormat.format(currentDate);
+    private void createSessionData() {
+        // Start instant and day key are canonical; period_date and the time strings are for display
+        long startTimeMillis = System.currentTimeMillis();
+        int dayKey = SessionTime.dayKey(startTimeMillis);
+        String formattedDate = SessionTime.formatDay(dayKey, SessionTime.PERIOD_DATE);
 
         Calendar calendar = Calendar.getInstance();
+        calendar.setTimeInMillis(startTimeMillis);
         String amPm = calendar.get(Calendar.AM_PM) == Calendar.AM ? "AM" : "PM";
         String startTime = calendar.get(Calendar.HOUR_OF_DAY) + " " + amPm;
         int endTime = calendar.get(Calendar.HOUR_OF_DAY) + 1;
@@ -309,7 +323,6 @@ public class activity_session extends BaseAuthenticatedActivity {
         String s_endTime = endTime + " " + amPm;
 
         // Calculate actual end time in milliseconds
-        long startTimeMillis = System.currentTimeMillis();
         long endTimeMillis = startTimeMillis + (60 * 60 * 1000); // 1 hour from start
 
         // Convert full names to abbreviated values for database consistency
@@ -319,6 +332,7 @@ public class activity_session extends BaseAuthenticatedActivity {
         sessionData.put("branch", branch);
         sessionData.put("division", abbreviatedDivision); // Use abbreviated value
         sessionData.put("period_date", formattedDate);
+        sessionData.put(SessionTime.DAY_KEY, dayKey);
         sessionData.put("start_time", startTime);
         sessionData.put("end_time", s_endTime);
         sessionData.put("subject", subject);
@@ -334,7 +348,15 @@ public class activity_session extends BaseAuthenticatedActivity {
             }
         } catch (Exception ignored) { }
 
-        newReportRef.setValue(sessionData).addOnCompleteListener(task -> {
+        sessionDetails = new StudentAttendance.SessionDetails(subject, formattedDate, startTimeMillis, dayKey);
+
+        // Write the session and its ActiveSessionsByDivision entry in one atomic multi-path update
+        Map<String, Object> rootUpdates = new HashMap<>();
+        rootUpdates.put("AttendanceReport/" + sessionId, sessionData);
+        ActiveSessionIndex.putEntry(rootUpdates, abbreviatedDivision, sessionId,
+                startTimeMillis, endTimeMillis, subject);
+
+        FirebaseDatabase.getInstance().getReference().updateChildren(rootUpdates).addOnCompleteListener(task -> {
             if (task.isSuccessful()) {
                 Log.d("Debug", "Session data created successfully with ID: " + sessionId);
                 // Persist active session id for resume
@@ -392,93 +414,68 @@ public class activity_session extends BaseAuthenticatedActivity {
         Log.d("Debug", "Creating students section for session: " + sessionId + 
               " with division: " + division + " -> " + abbreviatedDivision);
         
-        DatabaseReference studentsRef = FirebaseDatabase.getInstance().getReference("Students");
-        DatabaseReference sessionStudentsRef = FirebaseDatabase.getInstance()
-                .getReference("AttendanceReport")
-                .child(sessionId)
-                .child("Students");
-
-        studentsRef.addListenerForSingleValueEvent(new ValueEventListener() {
+        // Read the division's roster projection (served from the device cache when current)
+        DivisionRosterCache.load(this, abbreviatedDivision, new DivisionRosterCache.RosterCallback() {
             @Override
-            public void onDataChange(@NonNull DataSnapshot snapshot) {
-                if (snapshot.exists()) {
-                    Log.d("Debug", "Found " + snapshot.getChildrenCount() + " total students");
-                    
-                    int initializedCount = 0;
-                    int matchingStudentsCount = 0;
-                    
-                    for (DataSnapshot studentSnapshot : snapshot.getChildren()) {
-                        String enrollmentNo = studentSnapshot.getKey();
-                        String studentDivision = studentSnapshot.child("Division").getValue(String.class);
-                        
-                        Log.d("Debug", "Checking student: " + enrollmentNo + 
-                              " (Division: " + studentDivision + ")");
-                        
-                        // Only include students from the specific division
-                        if (abbreviatedDivision.equals(studentDivision)) {
-                            matchingStudentsCount++;
-                            Log.d("Debug", "Student " + enrollmentNo + " matches session criteria");
-
-                            // Initialize session-level attendance as "Not Marked"
-                            sessionStudentsRef.child(enrollmentNo).child("attendance_status").setValue("Not Marked")
-                                .addOnCompleteListener(task -> {
-                                    if (task.isSuccessful()) {
-                                        Log.d("Debug", "Successfully initialized session attendance for " + enrollmentNo);
-                                    } else {
-                                        Log.e("Debug", "Failed to initialize session attendance for " + enrollmentNo + ": " + task.getException());
-                                    }
-                                });
-
-                            // ALSO initialize student's Attendance node with "A" (default absent)
-                            FirebaseDatabase.getInstance().getReference("Students")
-                                    .child(enrollmentNo)
-                                    .child("Attendance")
-                                    .child(sessionId)
-                                    .setValue("A") // default absent until marked
-                                    .addOnCompleteListener(task -> {
-                                        if (task.isSuccessful()) {
-                                            Log.d("Debug", "Successfully initialized student attendance for " + enrollmentNo);
-                                        } else {
-                                            Log.e("Debug", "Failed to initialize student attendance for " + enrollmentNo + ": " + task.getException());
-                                        }
-                                    });
-                            
-                            initializedCount++;
-                        } else {
-                            Log.d("Debug", "Student " + enrollmentNo + " does not match session criteria " +
-                                  "(Division: " + abbreviatedDivision + " vs " + studentDivision + ")");
-                        }
-                    }
-                    
-                    Log.d("Debug", "Students section initialization completed. " +
-                          "Total students: " + snapshot.getChildrenCount() + 
-                          ", Matching students: " + matchingStudentsCount + 
-                          ", Initialized: " + initializedCount);
-                    
-                    if (matchingStudentsCount == 0) {
-                        Log.w("Debug", "No students found matching division: " + abbreviatedDivision);
-                        Toast.makeText(activity_session.this, 
-                            "Warning: No students found for Division " + abbreviatedDivision, 
-                            Toast.LENGTH_LONG).show();
-                    } else {
-                        Log.d("Debug", "Successfully included " + matchingStudentsCount + " students in session");
-                        Toast.makeText(activity_session.this, 
-                            "Session created with " + matchingStudentsCount + " students from Division " + abbreviatedDivision, 
-                            Toast.LENGTH_SHORT).show();
-                    }
-                } else {
-                    Log.w("Debug", "No students found in Students collection");
+            public void onRosterLoaded(@NonNull List<DivisionRosterCache.Member> members) {
+                List<String> matchingEnrollments = new ArrayList<>();
+                for (DivisionRosterCache.Member member : members) {
+                    matchingEnrollments.add(member.enrollment);
+                }
+                
+                Log.d("Debug", "Matching students: " + matchingEnrollments.size());
+                
+                if (matchingEnrollments.isEmpty()) {
+                    Log.w("Debug", "No students found matching division: " + abbreviatedDivision);
+                    Toast.makeText(activity_session.this, 
+                        "Warning: No students found for Division " + abbreviatedDivision, 
+                        Toast.LENGTH_LONG).show();
+                    return;
                 }
+                
+                initializeRoster(matchingEnrollments, abbreviatedDivision);
             }
 
             @Override
-            public void onCancelled(@NonNull DatabaseError error) {
+            public void onError(@NonNull DatabaseError error) {
                 Log.e("Debug", "Error creating students section: " + error.getMessage());
                 handleDatabaseError(error);
             }
         });
     }
 
+    /**
+     * Writes "Not Marked" / an absent entry for every roster member with batched multi-path updates
+     */
+    private void initializeRoster(List<String> enrollments, String abbreviatedDivision) {
+        new RosterInitializer().initialize(sessionId, sessionDetails, enrollments, new RosterInitializer.Callback() {
+            @Override
+            public void onBatchCommitted(int batchIndex, int batchCount, int studentsInBatch, long latencyMs) {
+                Log.d("Debug", "Roster batch " + (batchIndex + 1) + "/" + batchCount + ": " +
+                      studentsInBatch + " students in " + latencyMs + "ms");
+            }
+
+            @Override
+            public void onComplete(int totalStudents, int batchCount, long totalLatencyMs) {
+                Log.d("Debug", "Successfully included " + totalStudents + " students in session (" +
+                      batchCount + " batch(es), " + totalLatencyMs + "ms)");
+                // Announce the session only once every student's entry exists
+                SessionEvents.publish(abbreviatedDivision, sessionId, SessionEvents.TYPE_STARTED, subject, null);
+                Toast.makeText(activity_session.this, 
+                    "Session created with " + totalStudents + " students from Division " + abbreviatedDivision, 
+                    Toast.LENGTH_SHORT).show();
+            }
+
+            @Override
+            public void onError(int failedBatchIndex, @NonNull Exception e) {
+                Log.e("Debug", "Failed to initialize roster batch " + (failedBatchIndex + 1) + ": " + e.getMessage());
+                Toast.makeText(activity_session.this, 
+                    "Failed to add all students to the session. Please try again.", 
+                    Toast.LENGTH_LONG).show();
+            }
+        });
+    }
+
     private void endSession() {
         if (sessionId == null) {
             Toast.makeText(this, "Session not found!", Toast.LENGTH_SHORT).show();
@@ -486,19 +483,49 @@ public class activity_session extends BaseAuthenticatedActivity {
         }
 
         Log.d("Debug", "Ending session: " + sessionId);
-        
-        // Update session status to ended
-        DatabaseReference sessionRef = FirebaseDatabase.getInstance()
+
+        if (division != null && !division.trim().isEmpty()) {
+            commitEndSession(convertDivisionToAbbreviation(division));
+            return;
+        }
+
+        // Resumed sessions may not carry the division extra; read it from the session node
+        FirebaseDatabase.getInstance()
                 .getReference("AttendanceReport")
-                .child(sessionId);
-        
+                .child(sessionId)
+                .child("division")
+                .addListenerForSingleValueEvent(new ValueEventListener() {
+                    @Override
+                    public void onDataChange(@NonNull DataSnapshot snapshot) {
+                        commitEndSession(snapshot.getValue(String.class));
+                    }
+
+                    @Override
+                    public void onCancelled(@NonNull DatabaseError error) {
+                        Log.e("Debug", "Failed to read session division: " + error.getMessage());
+                        commitEndSession(null);
+                    }
+                });
+    }
+
+    /**
+     * Marks the session ended, drops its ActiveSessionsByDivision entry and publishes the "ended"
+     * event in one multi-path update
+     */
+    private void commitEndSession(String sessionDivision) {
+        String sessionPath = "AttendanceReport/" + sessionId;
         Map<String, Object> updates = new HashMap<>();
-        updates.put("session_status", "ended");
-        updates.put("end_timestamp", System.currentTimeMillis());
-        
-        sessionRef.updateChildren(updates).addOnCompleteListener(task -> {
+        updates.put(sessionPath + "/session_status", "ended");
+        updates.put(sessionPath + "/end_timestamp", System.currentTimeMillis());
+        ActiveSessionIndex.removeEntry(updates, sessionDivision, sessionId);
+        SessionEvents.putEvent(updates, sessionDivision, sessionId, SessionEvents.TYPE_ENDED, subject, null);
+
+        FirebaseDatabase.getInstance().getReference().updateChildren(updates).addOnCompleteListener(task -> {
             if (task.isSuccessful()) {
                 Log.d("Debug", "Session ended successfully");
+                // Final recount so the report opens on exact numbers even if a counter update was lost
+                SessionCounters.reconcile(sessionId, null);
+                AttendanceSummary.countSession(sessionId);
                 // Clear persisted active session id
                 getSharedPreferences(PREFS_NAME, MODE_PRIVATE)
                         .edit()
@@ -13,6 +13,8 @@ public class ChatConfig {
     // Chat Configuration
     public static final int MAX_CONVERSATION_HISTORY = 10;
     public static final int MAX_RESPONSE_TOKENS = 1024;
+    // Estimated tokens per request prompt; see PromptAssembler
+    public static final int MAX_PROMPT_TOKENS = 3072;
     public static final double TEMPERATURE = 0.7;
     
     // UI Configuration
@@ -1,5 +1,6 @@
 package com.example.wifibasedattendanceapplication.chatbot;
 
+import android.content.Context;
 import android.util.Log;
 
 import java.util.ArrayList;
@@ -25,9 +26,9 @@ public class ChatRepository {
         void onTypingStopped();
     }
     
-    public ChatRepository(String apiKey) {
+    public ChatRepository(Context context, String apiKey) {
         this.geminiService = new GeminiService(apiKey);
-        this.contextBuilder = new StudentContextBuilder();
+        this.contextBuilder = new StudentContextBuilder(context);
         this.conversationHistory = new ArrayList<>();
         this.contextLoaded = false;
     }
@@ -90,11 +91,11 @@ public class ChatRepository {
         callback.onTypingStarted();
         callback.onMessageReceived(typingMessage);
         
-        // Build enhanced context for this conversation
-        String conversationContext = buildConversationContext(userMessage);
+        // Context, history and instructions within the prompt budget
+        String prompt = buildPrompt(userMessage);
         
         // Send to Gemini
-        geminiService.sendMessage(userMessage, conversationContext, new GeminiService.ChatCallback() {
+        geminiService.sendPrompt(prompt, new GeminiService.ChatCallback() {
             @Override
             public void onSuccess(String response) {
                 // Remove typing indicator
@@ -129,53 +130,11 @@ public class ChatRepository {
         });
     }
     
-    private String buildConversationContext() {
-        StringBuilder context = new StringBuilder();
-        
-        // Add student context if available
-        if (currentContext != null && !currentContext.isEmpty()) {
-            context.append(currentContext);
-            context.append("\n\n");
-        }
-        
-        // Add recent conversation history (last 5 messages)
-        context.append("RECENT CONVERSATION:\n");
-        int startIndex = Math.max(0, conversationHistory.size() - 5);
-        for (int i = startIndex; i < conversationHistory.size(); i++) {
-            ChatMessage message = conversationHistory.get(i);
-            if (message.getType() == ChatMessage.MessageType.USER) {
-                context.append("Student: ").append(message.getContent()).append("\n");
-            } else if (message.getType() == ChatMessage.MessageType.BOT) {
-                context.append("Assistant: ").append(message.getContent()).append("\n");
-            }
-        }
-        
-        return context.toString();
-    }
-    
-    private String buildConversationContext(String userMessage) {
-        StringBuilder context = new StringBuilder();
-        
-        // Add student context if available
-        if (currentContext != null && !currentContext.isEmpty()) {
-            context.append(currentContext);
-            context.append("\n\n");
-        }
-        
-        // Add recent conversation history (last 5 messages)
-        context.append("RECENT CONVERSATION:\n");
-        int startIndex = Math.max(0, conversationHistory.size() - 5);
-        for (int i = startIndex; i < conversationHistory.size(); i++) {
-            ChatMessage message = conversationHistory.get(i);
-            if (message.getType() == ChatMessage.MessageType.USER) {
-                context.append("Student: ").append(message.getContent()).append("\n");
-            } else if (message.getType() == ChatMessage.MessageType.BOT) {
-                context.append("Assistant: ").append(message.getContent()).append("\n");
-            }
-        }
-        
-        // Enhance context based on user message
-        return buildEnhancedContext(userMessage, context.toString());
+    private String buildPrompt(String userMessage) {
+        PromptAssembler.Result result = PromptLayout.assemble(ChatConfig.MAX_PROMPT_TOKENS, currentContext,
+                conversationHistory, userMessage);
+        Log.d(TAG, "Prompt " + result);
+        return result.prompt;
     }
     
     private void removeTypingMessage() {
@@ -241,57 +200,4 @@ public class ChatRepository {
         
         return null; // Not a quick query
     }
-    
-    // Enhanced context building for better responses
-    public String buildEnhancedContext(String userMessage, String baseContext) {
-        StringBuilder enhancedContext = new StringBuilder();
-        
-        // Add base context
-        enhancedContext.append(baseContext);
-        enhancedContext.append("\n\n");
-        
-        // Add specific instructions based on query type
-        String lowerMessage = userMessage.toLowerCase();
-        
-        if (lowerMessage.contains("holiday") || lowerMessage.contains("calendar") || lowerMessage.contains("date")) {
-            enhancedContext.append("IMPORTANT: When asked about holidays, calendar, or dates, provide the actual data from the context above. ");
-            enhancedContext.append("Do NOT give instructions to go to the app. Instead, give the specific holiday dates and information. ");
-            enhancedContext.append("If the user asks about upcoming holidays, list the actual dates and names from the context.\n\n");
-        }
-        
-        if (lowerMessage.contains("attendance") || lowerMessage.contains("present") || lowerMessage.contains("absent") || 
-            lowerMessage.contains("class") || lowerMessage.contains("75%") || lowerMessage.contains("percentage")) {
-            enhancedContext.append("IMPORTANT: When asked about attendance, provide the actual attendance data from the context above. ");
-            enhancedContext.append("Do NOT give instructions to go to the app. Instead, give the specific attendance percentages, ");
-            enhancedContext.append("recent attendance records, and subject-wise data from the context. ");
-            enhancedContext.append("For questions about specific dates (like '16th October'), look for that date in the 'Recent Daily Attendance' section. ");
-            enhancedContext.append("For questions about reaching 75% attendance, use the 'Classes needed for 75%' data from the context.\n\n");
-        }
-        
-        if (lowerMessage.contains("fees") || lowerMessage.contains("payment") || lowerMessage.contains("due")) {
-            enhancedContext.append("IMPORTANT: When asked about fees, provide the actual fees data from the context above. ");
-            enhancedContext.append("Do NOT give instructions to go to the app. Instead, give the specific fees status, ");
-            enhancedContext.append("amounts, and due dates from the context.\n\n");
-        }
-        
-        // Handle specific date queries
-        if (lowerMessage.contains("16th") || lowerMessage.contains("16 october") || lowerMessage.contains("16 oct")) {
-            enhancedContext.append("SPECIAL INSTRUCTION: The user is asking about October 16th specifically. ");
-            enhancedContext.append("Look for '16/10/24' or '16 Oct 2024' in the Recent Daily Attendance section. ");
-            enhancedContext.append("If found, list all the classes they attended on that date with subjects and times. ");
-            enhancedContext.append("If not found, say 'No attendance data available for 16 Oct 2024'.\n\n");
-        }
-        
-        enhancedContext.append("RESPONSE GUIDELINES:\n");
-        enhancedContext.append("- Always provide actual data from the context when available\n");
-        enhancedContext.append("- Be specific and direct with numbers, dates, and percentages\n");
-        enhancedContext.append("- Only give instructions if the data is not available in the context\n");
-        enhancedContext.append("- Use a friendly and helpful tone\n");
-        enhancedContext.append("- Format dates as 'DD MMM YYYY' (e.g., '15 Oct 2024')\n");
-        enhancedContext.append("- Format percentages with one decimal place (e.g., '85.5%')\n");
-        enhancedContext.append("- When calculating attendance, show the math: (present/total) * 100\n");
-        enhancedContext.append("- For 'classes needed' questions, use the pre-calculated values from context\n\n");
-        
-        return enhancedContext.toString();
-    }
 }
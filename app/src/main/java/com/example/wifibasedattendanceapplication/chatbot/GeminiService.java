@@ -1,5 +1,6 @@
 package com.example.wifibasedattendanceapplication.chatbot;
 
+import android.os.SystemClock;
 import android.util.Log;
 
 import com.google.gson.Gson;
@@ -77,14 +78,19 @@ public class GeminiService {
     }
     
     public void sendMessage(String userMessage, String context, ChatCallback callback) {
+        // Build the prompt with context
+        sendPrompt(buildPrompt(userMessage, context), callback);
+    }
+    
+    /**
+     * Sends a prompt that is already complete, e.g. from {@link PromptAssembler}
+     */
+    public void sendPrompt(String fullPrompt, ChatCallback callback) {
         if (apiKey == null || apiKey.isEmpty()) {
             callback.onError("API key not configured");
             return;
         }
         
-        // Build the prompt with context
-        String fullPrompt = buildPrompt(userMessage, context);
-        
         // Create request
         List<GeminiApiService.Part> parts = new ArrayList<>();
         parts.add(new GeminiApiService.Part(fullPrompt));
@@ -93,8 +99,8 @@ public class GeminiService {
         contents.add(new GeminiApiService.Content(parts));
         
         GeminiApiService.GenerationConfig config = new GeminiApiService.GenerationConfig();
-        config.temperature = 0.7;
-        config.maxOutputTokens = 1024;
+        config.temperature = ChatConfig.TEMPERATURE;
+        config.maxOutputTokens = ChatConfig.MAX_RESPONSE_TOKENS;
         
         GeminiApiService.GeminiRequest request = new GeminiApiService.GeminiRequest(contents, config);
         
@@ -105,9 +111,14 @@ public class GeminiService {
             request
         );
         
+        // Prompt size against response time, for tuning ChatConfig.MAX_PROMPT_TOKENS
+        int promptTokens = PromptAssembler.estimateTokens(fullPrompt);
+        long sentAt = SystemClock.elapsedRealtime();
         call.enqueue(new Callback<GeminiApiService.GeminiResponse>() {
             @Override
             public void onResponse(Call<GeminiApiService.GeminiResponse> call, Response<GeminiApiService.GeminiResponse> response) {
+                Log.d(TAG, "Response " + response.code() + " in " + (SystemClock.elapsedRealtime() - sentAt)
+                        + "ms for ~" + promptTokens + " prompt tokens");
                 if (response.isSuccessful() && response.body() != null) {
                     GeminiApiService.GeminiResponse geminiResponse = response.body();
                     
@@ -0,0 +1,211 @@
+package com.example.wifibasedattendanceapplication.chatbot;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Assembles the Gemini prompt within a token budget.
+ *
+ * Sections are added in the order they should appear. Pinned sections (instructions, the student's
+ * question) are always kept. The others carry a priority, for context blocks normally a base plus
+ * {@link #relevance} to the question, and when the prompt would exceed the budget the
+ * lowest-priority sections are cut first: line by line from their end, keeping their heading (a
+ * single long line is cut at a word), and dropped altogether when not even that fits. Tokens are
+ * estimated at {@link #CHARS_PER_TOKEN} characters each, close enough to Gemini's tokenizer for
+ * English text and cheap enough to run on every message.
+ */
+public class PromptAssembler {
+
+    public static final int CHARS_PER_TOKEN = 4;
+    public static final int PINNED = Integer.MAX_VALUE;
+    static final String TRUNCATED_MARKER = "(more omitted)";
+
+    private static final int TOPIC_WEIGHT = 10;
+    private static final int MIN_CUT_CHARS = 80;
+    // Context heading keyword, then the words in a question that make it relevant
+    private static final String[][] TOPICS = {
+            {"attendance", "attendance", "present", "absent", "class", "75", "percent", "subject", "lecture", "miss", "bunk"},
+            {"fees", "fee", "pay", "paid", "due", "remaining", "amount"},
+            {"holiday", "holiday", "calendar", "date", "today", "tomorrow", "week", "month", "vacation", "off"},
+            {"recent attendance", "yesterday", "today", "week", "last", "recent", "date"},
+            {"profile", "name", "enrollment", "division", "branch", "roll", "profile", "who"},
+            {"app features", "how", "app", "feature", "use", "where", "mark", "wifi"}
+    };
+    private static final Set<String> STOP_WORDS = new HashSet<>(Arrays.asList(
+            "the", "and", "what", "how", "are", "was", "did", "can", "for", "you", "your", "have", "many",
+            "much", "with", "this", "that", "tell", "about", "show", "give", "please"));
+
+    public static class Result {
+        public final String prompt;
+        public final int estimatedTokens;
+        /** Estimate had every section been kept in full */
+        public final int unboundedTokens;
+        public final List<String> truncated;
+        public final List<String> dropped;
+
+        Result(String prompt, int unboundedTokens, List<String> truncated, List<String> dropped) {
+            this.prompt = prompt;
+            this.estimatedTokens = estimateTokens(prompt);
+            this.unboundedTokens = unboundedTokens;
+            this.truncated = truncated;
+            this.dropped = dropped;
+        }
+
+        @Override
+        public String toString() {
+            return "~" + estimatedTokens + " tokens (unbounded ~" + unboundedTokens + "), truncated "
+                    + truncated + ", dropped " + dropped;
+        }
+    }
+
+    private static class Section {
+        final String name;
+        final String text;
+        final int priority;
+        final int order;
+
+        Section(String name, String text, int priority, int order) {
+            this.name = name;
+            this.text = text;
+            this.priority = priority;
+            this.order = order;
+        }
+    }
+
+    private final int budgetTokens;
+    private final List<Section> sections = new ArrayList<>();
+
+    public PromptAssembler(int budgetTokens) {
+        this.budgetTokens = budgetTokens;
+    }
+
+    public PromptAssembler pin(String name, String text) {
+        return add(name, text, PINNED);
+    }
+
+    public PromptAssembler add(String name, String text, int priority) {
+        if (text == null) return this;
+        String trimmed = text.trim();
+        if (!trimmed.isEmpty()) {
+            sections.add(new Section(name, trimmed, priority, sections.size()));
+        }
+        return this;
+    }
+
+    public Result assemble() {
+        List<Section> byPriority = new ArrayList<>(sections);
+        // Highest priority first; equal priorities keep their prompt order
+        Collections.sort(byPriority, (a, b) -> a.priority != b.priority
+                ? Integer.compare(b.priority, a.priority)
+                : Integer.compare(a.order, b.order));
+
+        String[] kept = new String[sections.size()];
+        List<String> truncated = new ArrayList<>();
+        List<String> dropped = new ArrayList<>();
+        int unbounded = 0;
+        int remaining = budgetTokens;
+        for (Section section : byPriority) {
+            int cost = cost(section.text);
+            unbounded += cost;
+            if (section.priority == PINNED || cost <= remaining) {
+                kept[section.order] = section.text;
+                remaining -= cost;
+                continue;
+            }
+            String cut = truncate(section.text, remaining);
+            if (cut != null) {
+                kept[section.order] = cut;
+                remaining -= cost(cut);
+                truncated.add(section.name);
+            } else {
+                dropped.add(section.name);
+            }
+        }
+
+        StringBuilder prompt = new StringBuilder();
+        for (String text : kept) {
+            if (text == null) continue;
+            if (prompt.length() > 0) prompt.append("\n\n");
+            prompt.append(text);
+        }
+        return new Result(prompt.toString(), unbounded, truncated, dropped);
+    }
+
+    public static int estimateTokens(CharSequence text) {
+        return (text.length() + CHARS_PER_TOKEN - 1) / CHARS_PER_TOKEN;
+    }
+
+    /**
+     * Splits a context built by {@link StudentContextBuilder} into its blank-line separated blocks
+     */
+    public static List<String> splitBlocks(String context) {
+        List<String> blocks = new ArrayList<>();
+        if (context == null) return blocks;
+        for (String block : context.split("\n\\s*\n")) {
+            if (!block.trim().isEmpty()) blocks.add(block.trim());
+        }
+        return blocks;
+    }
+
+    /**
+     * How much a context block matters to the question: {@value #TOPIC_WEIGHT} per topic the two
+     * share, plus one per question word found in the block (subject names, dates)
+     */
+    public static int relevance(String query, String block) {
+        String question = query.toLowerCase(Locale.ROOT);
+        String text = block.toLowerCase(Locale.ROOT);
+        String heading = firstLine(text);
+        int score = 0;
+        for (String[] topic : TOPICS) {
+            if (!heading.contains(topic[0])) continue;
+            for (int i = 1; i < topic.length; i++) {
+                if (question.contains(topic[i])) {
+                    score += TOPIC_WEIGHT;
+                    break;
+                }
+            }
+        }
+        Set<String> seen = new HashSet<>();
+        for (String word : question.split("[^\\p{L}\\p{N}%]+")) {
+            if (word.length() < 3 || STOP_WORDS.contains(word) || !seen.add(word)) continue;
+            if (text.contains(word)) score++;
+        }
+        return score;
+    }
+
+    public static String firstLine(String text) {
+        int end = text.indexOf('\n');
+        return end >= 0 ? text.substring(0, end) : text;
+    }
+
+    // +1 for the blank line that separates sections
+    private static int cost(String text) {
+        return estimateTokens(text) + 1;
+    }
+
+    // Heading plus as many following lines as fit with the marker; a section without whole lines
+    // to spare (a long chat answer) is cut at a word instead. Null if too little would be left.
+    private static String truncate(String text, int budget) {
+        String[] lines = text.split("\n");
+        StringBuilder cut = new StringBuilder(lines[0]);
+        int kept = 0;
+        for (int i = 1; i < lines.length; i++) {
+            int length = cut.length() + 1 + lines[i].length() + 1 + TRUNCATED_MARKER.length();
+            if ((length + CHARS_PER_TOKEN - 1) / CHARS_PER_TOKEN + 1 > budget) break;
+            cut.append('\n').append(lines[i]);
+            kept++;
+        }
+        if (kept > 0) return cut.append('\n').append(TRUNCATED_MARKER).toString();
+
+        int available = (budget - 1) * CHARS_PER_TOKEN - 1 - TRUNCATED_MARKER.length();
+        if (available < MIN_CUT_CHARS) return null;
+        int end = text.lastIndexOf(' ', available);
+        if (end < MIN_CUT_CHARS) end = available;
+        return text.substring(0, end) + " " + TRUNCATED_MARKER;
+    }
+}
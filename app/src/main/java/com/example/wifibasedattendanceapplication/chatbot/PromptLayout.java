@@ -0,0 +1,114 @@
+package com.example.wifibasedattendanceapplication.chatbot;
+
+import java.util.List;
+
+/**
+ * The layout of the chatbot's Gemini prompt: instructions, the student context one block per
+ * section ranked by relevance to the question, the last {@value #HISTORY_MESSAGES} messages of the
+ * conversation (newest kept longest), query-specific guidance, the response guidelines and the
+ * question, assembled by {@link PromptAssembler} within a token budget.
+ */
+public final class PromptLayout {
+
+    static final int HISTORY_MESSAGES = 5;
+    private static final int CONTEXT_PRIORITY = 10;
+    private static final int CONVERSATION_PRIORITY = 30;
+    
+    private static final String SYSTEM_PROMPT =
+        "You are an AI assistant for a WiFi-based attendance management app. " +
+        "You help students with attendance, fees, calendar, and general app-related questions. " +
+        "Be helpful, friendly, and provide specific data when available. " +
+        "Always prioritize giving actual data over instructions when the data is available in the context.";
+    
+    private static final String RESPONSE_GUIDELINES =
+        "RESPONSE GUIDELINES:\n" +
+        "- Always provide actual data from the context when available\n" +
+        "- Be specific and direct with numbers, dates, and percentages\n" +
+        "- Only give instructions if the data is not available in the context\n" +
+        "- Use a friendly and helpful tone\n" +
+        "- Format dates as 'DD MMM YYYY' (e.g., '15 Oct 2024')\n" +
+        "- Format percentages with one decimal place (e.g., '85.5%')\n" +
+        "- When calculating attendance, show the math: (present/total) * 100\n" +
+        "- For 'classes needed' questions, use the pre-calculated values from context";
+    
+    private PromptLayout() { }
+
+    /**
+     * Assembles the prompt for a question. The history may include the question itself and the
+     * typing indicator; only student and assistant messages are used.
+     */
+    public static PromptAssembler.Result assemble(int budgetTokens, String context,
+                                                  List<ChatMessage> history, String userMessage) {
+        PromptAssembler prompt = new PromptAssembler(budgetTokens);
+        prompt.pin("system", SYSTEM_PROMPT);
+        
+        // Student context, one section per block, ranked by how much it matters to this question
+        if (context != null && !context.isEmpty()) {
+            prompt.pin("context heading", "Student Context:");
+            for (String block : PromptAssembler.splitBlocks(context)) {
+                String heading = PromptAssembler.firstLine(block);
+                if (heading.startsWith("STUDENT PROFILE")) {
+                    prompt.pin(heading, block);
+                } else {
+                    prompt.add(heading, block, CONTEXT_PRIORITY + PromptAssembler.relevance(userMessage, block));
+                }
+            }
+        }
+        
+        // Recent conversation, newest kept longest
+        int startIndex = Math.max(0, history.size() - HISTORY_MESSAGES);
+        int age = history.size() - startIndex;
+        prompt.add("conversation heading", "RECENT CONVERSATION:", CONVERSATION_PRIORITY);
+        for (int i = startIndex; i < history.size(); i++, age--) {
+            ChatMessage message = history.get(i);
+            int priority = CONVERSATION_PRIORITY - age;
+            if (message.getType() == ChatMessage.MessageType.USER) {
+                prompt.add("message " + i, "Student: " + message.getContent(), priority);
+            } else if (message.getType() == ChatMessage.MessageType.BOT) {
+                prompt.add("message " + i, "Assistant: " + message.getContent(), priority);
+            }
+        }
+        
+        prompt.pin("guidance", queryGuidance(userMessage));
+        prompt.pin("guidelines", RESPONSE_GUIDELINES);
+        prompt.pin("question", "Student Question: " + userMessage);
+        return prompt.assemble();
+    }
+    
+    // Specific instructions based on query type
+    static String queryGuidance(String userMessage) {
+        StringBuilder guidance = new StringBuilder();
+        String lowerMessage = userMessage.toLowerCase();
+        
+        if (lowerMessage.contains("holiday") || lowerMessage.contains("calendar") || lowerMessage.contains("date")) {
+            guidance.append("IMPORTANT: When asked about holidays, calendar, or dates, provide the actual data from the context above. ");
+            guidance.append("Do NOT give instructions to go to the app. Instead, give the specific holiday dates and information. ");
+            guidance.append("If the user asks about upcoming holidays, list the actual dates and names from the context.\n\n");
+        }
+        
+        if (lowerMessage.contains("attendance") || lowerMessage.contains("present") || lowerMessage.contains("absent") || 
+            lowerMessage.contains("class") || lowerMessage.contains("75%") || lowerMessage.contains("percentage")) {
+            guidance.append("IMPORTANT: When asked about attendance, provide the actual attendance data from the context above. ");
+            guidance.append("Do NOT give instructions to go to the app. Instead, give the specific attendance percentages, ");
+            guidance.append("recent attendance records, and subject-wise data from the context. ");
+            guidance.append("For questions about specific dates (like '16th October'), look for that date in the 'Recent Daily Attendance' section. ");
+            guidance.append("For questions about reaching 75% attendance, use the 'Classes needed for 75%' data from the context.\n\n");
+        }
+        
+        if (lowerMessage.contains("fees") || lowerMessage.contains("payment") || lowerMessage.contains("due")) {
+            guidance.append("IMPORTANT: When asked about fees, provide the actual fees data from the context above. ");
+            guidance.append("Do NOT give instructions to go to the app. Instead, give the specific fees status, ");
+            guidance.append("amounts, and due dates from the context.\n\n");
+        }
+        
+        // Handle specific date queries
+        if (lowerMessage.contains("16th") || lowerMessage.contains("16 october") || lowerMessage.contains("16 oct")) {
+            guidance.append("SPECIAL INSTRUCTION: The user is asking about October 16th specifically. ");
+            guidance.append("Look for '16/10/24' or '16 Oct 2024' in the Recent Daily Attendance section. ");
+            guidance.append("If found, list all the classes they attended on that date with subjects and times. ");
+            guidance.append("If not found, say 'No attendance data available for 16 Oct 2024'.\n\n");
+        }
+        
+        return guidance.toString();
+    }
+}
@@ -1,44 +1,51 @@
 package com.example.wifibasedattendanceapplication.chatbot;
 
+import android.content.Context;
 import android.util.Log;
 
+import androidx.annotation.NonNull;
+
+import com.example.wifibasedattendanceapplication.AttendanceSummary;
+import com.example.wifibasedattendanceapplication.SessionTime;
+import com.example.wifibasedattendanceapplication.StudentAttendance;
+import com.example.wifibasedattendanceapplication.StudentSessionCache;
+
 import com.google.firebase.auth.FirebaseAuth;
 import com.google.firebase.database.DataSnapshot;
 import com.google.firebase.database.DatabaseError;
-import com.google.firebase.database.DatabaseReference;
-import com.google.firebase.database.FirebaseDatabase;
-import com.google.firebase.database.ValueEventListener;
 
-import java.text.SimpleDateFormat;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.Month;
 import java.util.ArrayList;
-import java.util.Calendar;
-import java.util.Date;
+import java.util.Collections;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.List;
-import java.util.Locale;
 import java.util.Map;
-import java.util.Set;
+import java.util.TreeMap;
 
 /**
  * Builds context information about the student for the chatbot
+ *
+ * Profile, fees and attendance totals come from {@link StudentSessionCache}; the attendance
+ * entries behind the daily listings and the rendered text are cached by {@link StudentContextCache},
+ * so reopening the chat re-renders from memory and only reads what changed since the last build.
  */
 public class StudentContextBuilder {
     
     private static final String TAG = "StudentContextBuilder";
+    private static final long SESSION_LENGTH_MS = 60 * 60 * 1000; // sessions run one hour from their start
     
-    private DatabaseReference studentsRef;
-    private DatabaseReference reportsRef;
-    private String currentStudentEnrollment;
+    private final Context appContext;
+    private StudentSessionCache.Snapshot session;
     
     public interface ContextCallback {
         void onContextReady(String context);
         void onError(String error);
     }
     
-    public StudentContextBuilder() {
-        studentsRef = FirebaseDatabase.getInstance().getReference("Students");
-        reportsRef = FirebaseDatabase.getInstance().getReference("AttendanceReport");
+    public StudentContextBuilder(Context context) {
+        appContext = context.getApplicationContext();
     }
     
     public void buildStudentContext(ContextCallback callback) {
@@ -50,36 +57,75 @@ public class StudentContextBuilder {
             return;
         }
         
-        // Find student by email
-        studentsRef.orderByChild("student_email").equalTo(userEmail)
-            .addListenerForSingleValueEvent(new ValueEventListener() {
-                @Override
-                public void onDataChange(DataSnapshot dataSnapshot) {
-                    if (dataSnapshot.exists()) {
-                        for (DataSnapshot studentSnapshot : dataSnapshot.getChildren()) {
-                            currentStudentEnrollment = studentSnapshot.getKey();
-                            buildContextFromStudentData(studentSnapshot, callback);
-                            return;
-                        }
-                    }
-                    callback.onError("Student not found");
-                }
-                
-                @Override
-                public void onCancelled(DatabaseError error) {
-                    callback.onError("Database error: " + error.getMessage());
-                }
-            });
+        // Profile, fees and attendance totals from the shared session cache
+        StudentSessionCache.get(appContext).load(appContext, new StudentSessionCache.Callback() {
+            @Override
+            public void onReady(@NonNull StudentSessionCache.Snapshot snapshot) {
+                session = snapshot;
+                buildFromCache(snapshot, callback);
+            }
+            
+            @Override
+            public void onNotFound() {
+                callback.onError("Student not found");
+            }
+            
+            @Override
+            public void onError(@NonNull DatabaseError error) {
+                callback.onError("Database error: " + error.getMessage());
+            }
+        });
+    }
+    
+    /**
+     * Drops the cached context and entries; called on sign out
+     */
+    public static void clearCache(@NonNull Context context) {
+        StudentContextCache.clear(context.getApplicationContext());
+    }
+    
+    // Entries synced within the TTL, else the context saved on device, else a sync of the changes
+    private void buildFromCache(StudentSessionCache.Snapshot snapshot, ContextCallback callback) {
+        List<StudentAttendance.Entry> entries = StudentContextCache.freshEntries(snapshot.enrollment);
+        if (entries != null) {
+            callback.onContextReady(render(snapshot, entries));
+            return;
+        }
+        String saved = StudentContextCache.savedContext(appContext, snapshot.enrollment);
+        if (saved != null) {
+            Log.d(TAG, "Using saved context for " + snapshot.enrollment);
+            callback.onContextReady(saved);
+            return;
+        }
+        StudentContextCache.sync(snapshot.enrollment, new StudentContextCache.EntriesCallback() {
+            @Override
+            public void onEntries(@NonNull List<StudentAttendance.Entry> synced) {
+                callback.onContextReady(render(snapshot, synced));
+            }
+            
+            @Override
+            public void onError(@NonNull DatabaseError error) {
+                // Totals still come from the summary; only the daily listings are missing
+                callback.onContextReady(buildContextFromStudentData(snapshot, null));
+            }
+        });
     }
     
-    private void buildContextFromStudentData(DataSnapshot studentSnapshot, ContextCallback callback) {
+    private String render(StudentSessionCache.Snapshot snapshot, List<StudentAttendance.Entry> entries) {
+        String built = buildContextFromStudentData(snapshot, entries);
+        StudentContextCache.remember(appContext, snapshot.enrollment, built);
+        return built;
+    }
+    
+    // entries is null when they could not be read
+    private String buildContextFromStudentData(StudentSessionCache.Snapshot snapshot, List<StudentAttendance.Entry> entries) {
         StringBuilder context = new StringBuilder();
         
         // Basic student information
-        String studentName = studentSnapshot.child("student_name").getValue(String.class);
-        String division = studentSnapshot.child("Division").getValue(String.class);
-        String branch = studentSnapshot.child("Branch").getValue(String.class);
-        String enrollment = studentSnapshot.getKey();
+        String studentName = snapshot.profile.name;
+        String division = snapshot.profile.division;
+        String branch = snapshot.profile.branch;
+        String enrollment = snapshot.enrollment;
         
         context.append("STUDENT PROFILE:\n");
         context.append("Name: ").append(studentName != null ? studentName : "N/A").append("\n");
@@ -88,136 +134,59 @@ public class StudentContextBuilder {
         context.append("Branch: ").append(branch != null ? branch : "N/A").append("\n");
         context.append("Academic Year: 2024-2025\n\n");
         
-        // Get attendance data
-        loadAttendanceData(context, callback);
+        appendAttendanceData(context, entries);
+        appendFeesData(context);
+        appendCalendarData(context);
+        appendRecentAttendanceCalendar(context, entries);
+        addAppFeatures(context);
+        return context.toString();
     }
     
-    private void loadAttendanceData(StringBuilder context, ContextCallback callback) {
-        if (currentStudentEnrollment == null) {
-            context.append("ATTENDANCE: No data available\n\n");
-            loadFeesData(context, callback);
-            return;
+    private void appendAttendanceData(StringBuilder context, List<StudentAttendance.Entry> entries) {
+        // Percentages come from the rolling summary; the entries only feed the daily listing
+        AttendanceSummary.Summary summary = session.attendance;
+        if (entries == null) {
+            formatAttendanceContext(context, (int) summary.overall.total, (int) summary.overall.present,
+                    subjectStats(summary), new HashMap<>());
+        } else if (summary.overall.total == 0 && entries.isEmpty()) {
+            context.append("ATTENDANCE: No attendance records found\n\n");
+        } else {
+            formatAttendanceContext(context, (int) summary.overall.total, (int) summary.overall.present,
+                    subjectStats(summary), dailyAttendance(entries));
         }
-        
-        studentsRef.child(currentStudentEnrollment).child("Attendance")
-            .addListenerForSingleValueEvent(new ValueEventListener() {
-                @Override
-                public void onDataChange(DataSnapshot attendanceSnapshot) {
-                    if (attendanceSnapshot.exists()) {
-                        calculateAttendanceStats(attendanceSnapshot, context, callback);
-                    } else {
-                        context.append("ATTENDANCE: No attendance records found\n\n");
-                        loadFeesData(context, callback);
-                    }
-                }
-                
-                @Override
-                public void onCancelled(DatabaseError error) {
-                    context.append("ATTENDANCE: Error loading data\n\n");
-                    loadFeesData(context, callback);
-                }
-            });
     }
     
-    private void calculateAttendanceStats(DataSnapshot attendanceSnapshot, StringBuilder context, ContextCallback callback) {
-        final int[] totalSessions = {0};
-        final int[] presentSessions = {0};
-        final Map<String, int[]> subjectStats = new HashMap<>(); // subject -> [present, total]
-        final Map<String, List<AttendanceRecord>> dailyAttendance = new HashMap<>(); // date -> list of records
-        
-        List<String> sessionIds = new ArrayList<>();
-        for (DataSnapshot sessionSnapshot : attendanceSnapshot.getChildren()) {
-            sessionIds.add(sessionSnapshot.getKey());
+    private Map<String, int[]> subjectStats(AttendanceSummary.Summary summary) {
+        Map<String, int[]> subjectStats = new HashMap<>(); // subject -> [present, total]
+        for (AttendanceSummary.Tally tally : summary.subjects) {
+            if (tally.total == 0) continue;
+            subjectStats.put(tally.subject, new int[]{(int) tally.present, (int) tally.total});
         }
+        return subjectStats;
+    }
+    
+    private Map<Integer, List<AttendanceRecord>> dailyAttendance(List<StudentAttendance.Entry> entries) {
+        Map<Integer, List<AttendanceRecord>> dailyAttendance = new TreeMap<>(Collections.reverseOrder()); // day key, newest first
         
-        if (sessionIds.isEmpty()) {
-            context.append("ATTENDANCE: No sessions found\n\n");
-            loadFeesData(context, callback);
-            return;
-        }
-        
-        final int totalToFetch = sessionIds.size();
-        final int[] fetched = new int[]{0};
-        
-        for (DataSnapshot sessionSnapshot : attendanceSnapshot.getChildren()) {
-            String sessionId = sessionSnapshot.getKey();
-            String attendanceStatus = sessionSnapshot.getValue(String.class);
+        for (StudentAttendance.Entry entry : entries) {
+            if (!entry.hasSubject() || entry.dayKey <= 0) continue;
             
-            // Get complete session details from AttendanceReport
-            reportsRef.child(sessionId)
-                .addListenerForSingleValueEvent(new ValueEventListener() {
-                    @Override
-                    public void onDataChange(DataSnapshot sessionDetailsSnapshot) {
-                        if (sessionDetailsSnapshot.exists()) {
-                            String subject = sessionDetailsSnapshot.child("subject").getValue(String.class);
-                            String periodDate = sessionDetailsSnapshot.child("period_date").getValue(String.class);
-                            String startTime = sessionDetailsSnapshot.child("start_time").getValue(String.class);
-                            String endTime = sessionDetailsSnapshot.child("end_time").getValue(String.class);
-                            
-                            if (subject != null && !subject.isEmpty()) {
-                                totalSessions[0]++;
-                                
-                                // Update subject stats
-                                int[] stats = subjectStats.get(subject);
-                                if (stats == null) {
-                                    stats = new int[]{0, 0};
-                                    subjectStats.put(subject, stats);
-                                }
-                                stats[1]++; // total
-                                
-                                boolean isPresent = "P".equalsIgnoreCase(attendanceStatus) || "Present".equalsIgnoreCase(attendanceStatus);
-                                if (isPresent) {
-                                    presentSessions[0]++;
-                                    stats[0]++; // present
-                                }
-                                
-                                // Store daily attendance record
-                                if (periodDate != null) {
-                                    AttendanceRecord record = new AttendanceRecord();
-                                    record.subject = subject;
-                                    record.date = periodDate;
-                                    record.startTime = startTime;
-                                    record.endTime = endTime;
-                                    record.status = isPresent ? "Present" : "Absent";
-                                    record.sessionId = sessionId;
-                                    
-                                    // Store in both formats for better matching
-                                    String displayDate = convertDateFormat(periodDate);
-                                    List<AttendanceRecord> dayRecords = dailyAttendance.get(periodDate);
-                                    if (dayRecords == null) {
-                                        dayRecords = new ArrayList<>();
-                                        dailyAttendance.put(periodDate, dayRecords);
-                                    }
-                                    dayRecords.add(record);
-                                    
-                                    // Also store with display format for better AI matching
-                                    List<AttendanceRecord> displayDayRecords = dailyAttendance.get(displayDate);
-                                    if (displayDayRecords == null) {
-                                        displayDayRecords = new ArrayList<>();
-                                        dailyAttendance.put(displayDate, displayDayRecords);
-                                    }
-                                    displayDayRecords.add(record);
-                                }
-                            }
-                        }
-                        
-                        fetched[0]++;
-                        if (fetched[0] == totalToFetch) {
-                            formatAttendanceContext(context, totalSessions[0], presentSessions[0], subjectStats, dailyAttendance);
-                            loadFeesData(context, callback);
-                        }
-                    }
-                    
-                    @Override
-                    public void onCancelled(DatabaseError error) {
-                        fetched[0]++;
-                        if (fetched[0] == totalToFetch) {
-                            formatAttendanceContext(context, totalSessions[0], presentSessions[0], subjectStats, dailyAttendance);
-                            loadFeesData(context, callback);
-                        }
-                    }
-                });
+            AttendanceRecord record = new AttendanceRecord();
+            record.subject = entry.subject;
+            record.date = SessionTime.formatDay(entry.dayKey, SessionTime.DISPLAY_DATE);
+            record.startTime = entry.startMs > 0 ? SessionTime.format(entry.startMs, SessionTime.CLOCK_HOUR) : "N/A";
+            record.endTime = entry.startMs > 0 ? SessionTime.format(entry.startMs + SESSION_LENGTH_MS, SessionTime.CLOCK_HOUR) : "N/A";
+            record.status = entry.isPresent() ? "Present" : "Absent";
+            record.sessionId = entry.sessionId;
+            
+            List<AttendanceRecord> dayRecords = dailyAttendance.get(entry.dayKey);
+            if (dayRecords == null) {
+                dayRecords = new ArrayList<>();
+                dailyAttendance.put(entry.dayKey, dayRecords);
+            }
+            dayRecords.add(record);
         }
+        return dailyAttendance;
     }
     
     // Helper class to store attendance records
@@ -230,7 +199,7 @@ public class StudentContextBuilder {
         String sessionId;
     }
     
-    private void formatAttendanceContext(StringBuilder context, int totalSessions, int presentSessions, Map<String, int[]> subjectStats, Map<String, List<AttendanceRecord>> dailyAttendance) {
+    private void formatAttendanceContext(StringBuilder context, int totalSessions, int presentSessions, Map<String, int[]> subjectStats, Map<Integer, List<AttendanceRecord>> dailyAttendance) {
         context.append("ATTENDANCE OVERVIEW:\n");
         
         if (totalSessions > 0) {
@@ -268,66 +237,18 @@ public class StudentContextBuilder {
             // Add recent daily attendance (last 10 days)
             if (!dailyAttendance.isEmpty()) {
                 context.append("\nRecent Daily Attendance:\n");
-                List<String> sortedDates = new ArrayList<>(dailyAttendance.keySet());
-                sortedDates.sort((a, b) -> {
-                    try {
-                        // Try both date formats for sorting
-                        SimpleDateFormat format1 = new SimpleDateFormat("dd/MM/yy", Locale.getDefault());
-                        SimpleDateFormat format2 = new SimpleDateFormat("dd MMM yyyy", Locale.getDefault());
-                        Date dateA = null, dateB = null;
-                        
-                        try {
-                            dateA = format1.parse(a);
-                        } catch (Exception e1) {
-                            try {
-                                dateA = format2.parse(a);
-                            } catch (Exception e2) {
-                                // Keep as null
-                            }
-                        }
-                        
-                        try {
-                            dateB = format1.parse(b);
-                        } catch (Exception e1) {
-                            try {
-                                dateB = format2.parse(b);
-                            } catch (Exception e2) {
-                                // Keep as null
-                            }
-                        }
-                        
-                        if (dateA != null && dateB != null) {
-                            return dateB.compareTo(dateA); // Sort descending (newest first)
-                        }
-                        return b.compareTo(a); // Fallback to string comparison
-                    } catch (Exception e) {
-                        return b.compareTo(a); // Fallback to string comparison
-                    }
-                });
-                
                 int count = 0;
-                Set<String> processedDates = new HashSet<>(); // To avoid duplicates
-                
-                for (String date : sortedDates) {
+                // Keys are yyyyMMdd in descending order, so the first ten are the latest days
+                for (List<AttendanceRecord> dayRecords : dailyAttendance.values()) {
                     if (count >= 10) break; // Limit to last 10 days
                     
-                    List<AttendanceRecord> dayRecords = dailyAttendance.get(date);
-                    if (dayRecords != null && !dayRecords.isEmpty()) {
-                        // Check if we've already processed this date (avoid duplicates from both formats)
-                        String normalizedDate = date.contains("/") ? convertDateFormat(date) : date;
-                        if (processedDates.contains(normalizedDate)) {
-                            continue;
-                        }
-                        processedDates.add(normalizedDate);
-                        
-                        context.append("- ").append(normalizedDate).append(":\n");
-                        for (AttendanceRecord record : dayRecords) {
-                            context.append("  • ").append(record.subject).append(" (")
-                                   .append(record.startTime).append(" - ").append(record.endTime)
-                                   .append("): ").append(record.status).append("\n");
-                        }
-                        count++;
+                    context.append("- ").append(dayRecords.get(0).date).append(":\n");
+                    for (AttendanceRecord record : dayRecords) {
+                        context.append("  • ").append(record.subject).append(" (")
+                               .append(record.startTime).append(" - ").append(record.endTime)
+                               .append("): ").append(record.status).append("\n");
                     }
+                    count++;
                 }
             }
         } else {
@@ -354,61 +275,38 @@ public class StudentContextBuilder {
         return Math.max(0, (int) Math.ceil(-needed)); // Ceil and ensure non-negative
     }
     
-    private void loadFeesData(StringBuilder context, ContextCallback callback) {
-        if (currentStudentEnrollment == null) {
-            context.append("FEES: No data available\n\n");
-            addAppFeatures(context);
-            callback.onContextReady(context.toString());
-            return;
+    private void appendFeesData(StringBuilder context) {
+        DataSnapshot feesSnapshot = session.fees;
+        if (feesSnapshot.exists()) {
+            String feeStatus = feesSnapshot.child("fee_status").getValue(String.class);
+            Integer totalFees = feesSnapshot.child("total_fees").getValue(Integer.class);
+            Integer paidFees = feesSnapshot.child("paid_fees").getValue(Integer.class);
+            Integer remainingFees = feesSnapshot.child("remaining_fees").getValue(Integer.class);
+            
+            context.append("FEES STATUS:\n");
+            context.append("Status: ").append(feeStatus != null ? feeStatus : "N/A").append("\n");
+            if (totalFees != null) {
+                context.append("Total Fees: ₹").append(totalFees).append("\n");
+            }
+            if (paidFees != null) {
+                context.append("Paid: ₹").append(paidFees).append("\n");
+            }
+            if (remainingFees != null) {
+                context.append("Remaining: ₹").append(remainingFees).append("\n");
+            }
+        } else {
+            context.append("FEES: No fees data available\n");
         }
-        
-        studentsRef.child(currentStudentEnrollment).child("Fees")
-            .addListenerForSingleValueEvent(new ValueEventListener() {
-                @Override
-                public void onDataChange(DataSnapshot feesSnapshot) {
-                    if (feesSnapshot.exists()) {
-                        String feeStatus = feesSnapshot.child("fee_status").getValue(String.class);
-                        Integer totalFees = feesSnapshot.child("total_fees").getValue(Integer.class);
-                        Integer paidFees = feesSnapshot.child("paid_fees").getValue(Integer.class);
-                        Integer remainingFees = feesSnapshot.child("remaining_fees").getValue(Integer.class);
-                        
-                        context.append("FEES STATUS:\n");
-                        context.append("Status: ").append(feeStatus != null ? feeStatus : "N/A").append("\n");
-                        if (totalFees != null) {
-                            context.append("Total Fees: ₹").append(totalFees).append("\n");
-                        }
-                        if (paidFees != null) {
-                            context.append("Paid: ₹").append(paidFees).append("\n");
-                        }
-                        if (remainingFees != null) {
-                            context.append("Remaining: ₹").append(remainingFees).append("\n");
-                        }
-                    } else {
-                        context.append("FEES: No fees data available\n");
-                    }
-                    context.append("\n");
-                    
-                    loadCalendarData(context, callback);
-                }
-                
-                @Override
-                public void onCancelled(DatabaseError error) {
-                    context.append("FEES: Error loading data\n\n");
-                    loadCalendarData(context, callback);
-                }
-            });
+        context.append("\n");
     }
     
-    private void loadCalendarData(StringBuilder context, ContextCallback callback) {
+    private void appendCalendarData(StringBuilder context) {
         context.append("CALENDAR & HOLIDAYS:\n");
         
         // Get current date and upcoming holidays
-        Calendar calendar = Calendar.getInstance();
-        Date today = new Date();
-        SimpleDateFormat dateFormat = new SimpleDateFormat("dd MMM yyyy", Locale.getDefault());
-        SimpleDateFormat dayFormat = new SimpleDateFormat("EEEE", Locale.getDefault());
+        LocalDate today = LocalDate.now(SessionTime.zone());
         
-        context.append("Today: ").append(dateFormat.format(today)).append(" (").append(dayFormat.format(today)).append(")\n");
+        context.append("Today: ").append(SessionTime.DISPLAY_DATE.format(today)).append(" (").append(SessionTime.DAY_NAME.format(today)).append(")\n");
         
         // Add upcoming holidays for the next 30 days
         List<String> upcomingHolidays = getUpcomingHolidays(30);
@@ -420,130 +318,75 @@ public class StudentContextBuilder {
         } else {
             context.append("No upcoming holidays in the next 30 days\n");
         }
-        
-        // Add recent attendance calendar data
-        loadRecentAttendanceCalendar(context, callback);
     }
     
     private List<String> getUpcomingHolidays(int days) {
         List<String> holidays = new ArrayList<>();
-        Calendar calendar = Calendar.getInstance();
-        SimpleDateFormat dateFormat = new SimpleDateFormat("dd MMM yyyy", Locale.getDefault());
+        LocalDate date = LocalDate.now(SessionTime.zone());
         
         // Add some common Indian holidays for the next 30 days
         // In a real implementation, you would fetch this from a holiday API or database
         for (int i = 0; i < days; i++) {
-            calendar.add(Calendar.DAY_OF_MONTH, 1);
-            int dayOfWeek = calendar.get(Calendar.DAY_OF_WEEK);
-            int dayOfMonth = calendar.get(Calendar.DAY_OF_MONTH);
-            int month = calendar.get(Calendar.MONTH);
+            date = date.plusDays(1);
+            String displayDate = SessionTime.DISPLAY_DATE.format(date);
             
             // Add some sample holidays (you can replace with real holiday data)
-            if (dayOfWeek == Calendar.SUNDAY) {
-                holidays.add(dateFormat.format(calendar.getTime()) + " - Sunday");
+            if (date.getDayOfWeek() == DayOfWeek.SUNDAY) {
+                holidays.add(displayDate + " - Sunday");
             }
             
             // Add some sample holidays for demonstration
-            if (month == Calendar.OCTOBER && dayOfMonth == 2) {
-                holidays.add(dateFormat.format(calendar.getTime()) + " - Gandhi Jayanti");
+            if (date.getMonth() == Month.OCTOBER && date.getDayOfMonth() == 2) {
+                holidays.add(displayDate + " - Gandhi Jayanti");
             }
-            if (month == Calendar.OCTOBER && dayOfMonth == 31) {
-                holidays.add(dateFormat.format(calendar.getTime()) + " - Diwali");
+            if (date.getMonth() == Month.OCTOBER && date.getDayOfMonth() == 31) {
+                holidays.add(displayDate + " - Diwali");
             }
-            if (month == Calendar.NOVEMBER && dayOfMonth == 1) {
-                holidays.add(dateFormat.format(calendar.getTime()) + " - Diwali (Day 2)");
+            if (date.getMonth() == Month.NOVEMBER && date.getDayOfMonth() == 1) {
+                holidays.add(displayDate + " - Diwali (Day 2)");
             }
         }
         
         return holidays;
     }
     
-    private void loadRecentAttendanceCalendar(StringBuilder context, ContextCallback callback) {
-        if (currentStudentEnrollment == null) {
-            context.append("Recent Attendance: No data available\n\n");
-            addAppFeatures(context);
-            callback.onContextReady(context.toString());
+    private void appendRecentAttendanceCalendar(StringBuilder context, List<StudentAttendance.Entry> entries) {
+        if (entries == null) {
+            context.append("Recent Attendance: Error loading data\n\n");
             return;
         }
         
-        // Get recent attendance data for the last 7 days
-        studentsRef.child(currentStudentEnrollment).child("Attendance")
-            .addListenerForSingleValueEvent(new ValueEventListener() {
-                @Override
-                public void onDataChange(DataSnapshot attendanceSnapshot) {
-                    if (attendanceSnapshot.exists()) {
-                        context.append("Recent Attendance (Last 7 days):\n");
-                        
-                        Calendar calendar = Calendar.getInstance();
-                        SimpleDateFormat dateFormat = new SimpleDateFormat("dd MMM yyyy", Locale.getDefault());
-                        SimpleDateFormat dayFormat = new SimpleDateFormat("EEEE", Locale.getDefault());
-                        SimpleDateFormat dbDateFormat = new SimpleDateFormat("dd/MM/yy", Locale.getDefault());
-                        
-                        // Get last 7 days
-                        for (int i = 6; i >= 0; i--) {
-                            calendar.setTime(new Date());
-                            calendar.add(Calendar.DAY_OF_MONTH, -i);
-                            Date date = calendar.getTime();
-                            String dateKey = dbDateFormat.format(date);
-                            
-                            // Check if there's attendance data for this date
-                            final boolean[] hasAttendance = {false};
-                            final List<String> daySubjects = new ArrayList<>();
-                            
-                            for (DataSnapshot sessionSnapshot : attendanceSnapshot.getChildren()) {
-                                String sessionId = sessionSnapshot.getKey();
-                                String attendanceStatus = sessionSnapshot.getValue(String.class);
-                                
-                                // Get session details to check date and subject
-                                reportsRef.child(sessionId)
-                                    .addListenerForSingleValueEvent(new ValueEventListener() {
-                                        @Override
-                                        public void onDataChange(DataSnapshot sessionDetailsSnapshot) {
-                                            if (sessionDetailsSnapshot.exists()) {
-                                                String sessionDate = sessionDetailsSnapshot.child("period_date").getValue(String.class);
-                                                String subject = sessionDetailsSnapshot.child("subject").getValue(String.class);
-                                                
-                                                if (dateKey.equals(sessionDate)) {
-                                                    hasAttendance[0] = true;
-                                                    String status = "P".equalsIgnoreCase(attendanceStatus) || "Present".equalsIgnoreCase(attendanceStatus) ? "Present" : "Absent";
-                                                    daySubjects.add(subject != null ? subject : "Unknown");
-                                                    
-                                                    // Format the day's attendance
-                                                    if (daySubjects.size() == 1) { // First subject for this day
-                                                        context.append("- ").append(dateFormat.format(date)).append(" (").append(dayFormat.format(date)).append("):\n");
-                                                    }
-                                                    context.append("  • ").append(subject != null ? subject : "Unknown").append(": ").append(status).append("\n");
-                                                }
-                                            }
-                                        }
-                                        
-                                        @Override
-                                        public void onCancelled(DatabaseError error) {
-                                            // Continue processing other sessions
-                                        }
-                                    });
-                            }
-                            
-                            if (!hasAttendance[0]) {
-                                context.append("- ").append(dateFormat.format(date)).append(" (").append(dayFormat.format(date)).append("): No classes\n");
-                            }
-                        }
-                    } else {
-                        context.append("Recent Attendance: No attendance records found\n");
+        context.append("\n"); // its own block, so the prompt assembler can rank it separately
+        if (!entries.isEmpty()) {
+            context.append("Recent Attendance (Last 7 days):\n");
+            
+            LocalDate today = LocalDate.now(SessionTime.zone());
+            
+            // Get last 7 days
+            for (int i = 6; i >= 0; i--) {
+                LocalDate date = today.minusDays(i);
+                int dayKey = SessionTime.dayKey(date);
+                String dayLabel = SessionTime.DISPLAY_DATE.format(date) + " (" + SessionTime.DAY_NAME.format(date) + ")";
+                
+                boolean hasAttendance = false;
+                for (StudentAttendance.Entry entry : entries) {
+                    if (entry.dayKey != dayKey) continue;
+                    if (!hasAttendance) { // First subject for this day
+                        context.append("- ").append(dayLabel).append(":\n");
+                        hasAttendance = true;
                     }
-                    context.append("\n");
-                    
-                    addAppFeatures(context);
-                    callback.onContextReady(context.toString());
+                    String status = entry.isPresent() ? "Present" : "Absent";
+                    context.append("  • ").append(entry.subject != null ? entry.subject : "Unknown").append(": ").append(status).append("\n");
                 }
                 
-                @Override
-                public void onCancelled(DatabaseError error) {
-                    context.append("Recent Attendance: Error loading data\n\n");
-                    addAppFeatures(context);
-                    callback.onContextReady(context.toString());
+                if (!hasAttendance) {
+                    context.append("- ").append(dayLabel).append(": No classes\n");
                 }
-            });
+            }
+        } else {
+            context.append("Recent Attendance: No attendance records found\n");
+        }
+        context.append("\n");
     }
     
     private void addAppFeatures(StringBuilder context) {
@@ -555,22 +398,8 @@ public class StudentContextBuilder {
         context.append("- Fees: Check payment status and due dates\n");
         context.append("- AI Assistant: Get help with any app-related questions\n\n");
         
-        context.append("CURRENT DATE: ").append(new SimpleDateFormat("dd MMM yyyy", Locale.getDefault()).format(new Date())).append("\n");
-        context.append("DATE FORMATS USED:\n");
-        context.append("- Database format: dd/MM/yy (e.g., 16/10/24)\n");
-        context.append("- Display format: dd MMM yyyy (e.g., 16 Oct 2024)\n");
-        context.append("- When looking for specific dates, check both formats\n\n");
-    }
-    
-    // Helper method to convert date formats for better matching
-    private String convertDateFormat(String dateStr) {
-        try {
-            SimpleDateFormat inputFormat = new SimpleDateFormat("dd/MM/yy", Locale.getDefault());
-            SimpleDateFormat outputFormat = new SimpleDateFormat("dd MMM yyyy", Locale.getDefault());
-            Date date = inputFormat.parse(dateStr);
-            return outputFormat.format(date);
-        } catch (Exception e) {
-            return dateStr; // Return original if conversion fails
-        }
+        context.append("CURRENT DATE: ").append(SessionTime.DISPLAY_DATE.format(LocalDate.now(SessionTime.zone()))).append("\n");
+        context.append("DATE FORMAT USED:\n");
+        context.append("- All dates above are dd MMM yyyy (e.g., 16 Oct 2024)\n\n");
     }
 }
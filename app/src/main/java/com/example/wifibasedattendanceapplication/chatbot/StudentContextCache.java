@@ -0,0 +1,233 @@
+package com.example.wifibasedattendanceapplication.chatbot;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import com.example.wifibasedattendanceapplication.StudentAttendance;
+
+import com.google.firebase.database.DataSnapshot;
+import com.google.firebase.database.DatabaseError;
+import com.google.firebase.database.FirebaseDatabase;
+import com.google.firebase.database.Query;
+import com.google.firebase.database.ValueEventListener;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The chatbot's student context and the attendance entries it is rendered from, kept across
+ * chat screens for the lifetime of the process.
+ *
+ * The entries are read in full ({@link StudentAttendance#load}) the first time and again once
+ * {@link #FULL_RESYNC_MS} has passed since the last full read. In between, a refresh only reads
+ * the entries whose session started within {@link #CHANGE_WINDOW_MS} of the last sync, where
+ * marks and session ends land, replaces that window with what it finds (so an entry removed from
+ * it disappears too) and keeps the older entries as they were. A faculty edit or removal of an
+ * older entry is therefore picked up by the next full read, not by the incremental ones.
+ * Within {@link #CONTEXT_TTL_MS} of a sync no read happens at all and the context is re-rendered
+ * from memory. The rendered text is saved on device together with its SHA-256 content hash, so a
+ * chat opened after the process was restarted starts from it while it is still within the TTL;
+ * an unchanged hash means the saved copy is kept as is. Main thread only.
+ */
+final class StudentContextCache {
+
+    static final long CONTEXT_TTL_MS = 5 * 60 * 1000;
+    static final long CHANGE_WINDOW_MS = 24L * 60 * 60 * 1000;
+    static final long FULL_RESYNC_MS = 60 * 60 * 1000;
+    private static final String TAG = "StudentContextCache";
+    private static final String PREFS_NAME = "chat_context";
+    private static final String KEY_ENROLLMENT = "enrollment";
+    private static final String KEY_CONTEXT = "context";
+    private static final String KEY_HASH = "hash";
+    private static final String KEY_BUILT_AT = "built_at";
+
+    interface EntriesCallback {
+        void onEntries(@NonNull List<StudentAttendance.Entry> entries);
+        void onError(@NonNull DatabaseError error);
+    }
+
+    private static String enrollment;
+    // sessionId -> entry, for the enrollment above; null until the first full read
+    private static Map<String, StudentAttendance.Entry> entries;
+    private static long syncedAt;
+    private static long fullSyncedAt;
+    private static final List<EntriesCallback> waiting = new ArrayList<>();
+
+    private StudentContextCache() { }
+
+    /**
+     * The entries if they were synced within the TTL, without a read; null otherwise
+     */
+    static List<StudentAttendance.Entry> freshEntries(@NonNull String forEnrollment) {
+        if (entries == null || !forEnrollment.equals(enrollment)) return null;
+        if (System.currentTimeMillis() - syncedAt >= CONTEXT_TTL_MS) return null;
+        return ordered();
+    }
+
+    /**
+     * The context saved on device for this student if it was built within the TTL; null otherwise
+     */
+    static String savedContext(@NonNull Context context, @NonNull String forEnrollment) {
+        SharedPreferences prefs = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        if (!forEnrollment.equals(prefs.getString(KEY_ENROLLMENT, null))) return null;
+        if (System.currentTimeMillis() - prefs.getLong(KEY_BUILT_AT, 0L) >= CONTEXT_TTL_MS) return null;
+        return prefs.getString(KEY_CONTEXT, null);
+    }
+
+    /**
+     * Brings the entries up to date: a full read the first time and every {@link #FULL_RESYNC_MS},
+     * otherwise only the recent window. Concurrent calls share one read.
+     */
+    static void sync(@NonNull String forEnrollment, @NonNull EntriesCallback callback) {
+        if (!forEnrollment.equals(enrollment)) {
+            // A different student signed in; whatever was in flight belongs to the previous one
+            enrollment = forEnrollment;
+            entries = null;
+            waiting.clear();
+        }
+        waiting.add(callback);
+        if (waiting.size() > 1) return;
+
+        long started = System.currentTimeMillis();
+        if (entries == null || started - fullSyncedAt >= FULL_RESYNC_MS) {
+            StudentAttendance.load(forEnrollment, new StudentAttendance.LoadCallback() {
+                @Override
+                public void onLoaded(@NonNull List<StudentAttendance.Entry> loaded) {
+                    if (!forEnrollment.equals(enrollment)) return; // signed out meanwhile
+                    entries = new HashMap<>();
+                    for (StudentAttendance.Entry entry : loaded) {
+                        entries.put(entry.sessionId, entry);
+                    }
+                    syncedAt = started;
+                    fullSyncedAt = started;
+                    Log.d(TAG, "Loaded " + loaded.size() + " entries for " + forEnrollment);
+                    deliver();
+                }
+
+                @Override
+                public void onError(@NonNull DatabaseError error) {
+                    fail(error);
+                }
+            });
+            return;
+        }
+
+        long windowStart = syncedAt - CHANGE_WINDOW_MS;
+        Query changed = FirebaseDatabase.getInstance().getReference("Students").child(forEnrollment).child("Attendance")
+                .orderByChild(StudentAttendance.START_MS)
+                .startAt(windowStart);
+        changed.addListenerForSingleValueEvent(new ValueEventListener() {
+            @Override
+            public void onDataChange(@NonNull DataSnapshot snapshot) {
+                if (entries == null || !forEnrollment.equals(enrollment)) return;
+                // The query returns the whole window, so whatever it no longer holds was removed
+                int removed = 0;
+                Iterator<StudentAttendance.Entry> it = entries.values().iterator();
+                while (it.hasNext()) {
+                    StudentAttendance.Entry entry = it.next();
+                    if (entry.startMs >= windowStart && !snapshot.hasChild(entry.sessionId)) {
+                        it.remove();
+                        removed++;
+                    }
+                }
+                int merged = 0;
+                for (DataSnapshot child : snapshot.getChildren()) {
+                    if (child.getKey() == null) continue;
+                    StudentAttendance.Entry entry = StudentAttendance.Entry.fromSnapshot(child);
+                    if (!entry.hasDetails()) continue; // legacy string; the full read completed it already
+                    entries.put(entry.sessionId, entry);
+                    merged++;
+                }
+                syncedAt = started;
+                Log.d(TAG, "Merged " + merged + " and removed " + removed + " entries for " + forEnrollment);
+                deliver();
+            }
+
+            @Override
+            public void onCancelled(@NonNull DatabaseError error) {
+                fail(error);
+            }
+        });
+    }
+
+    /**
+     * Saves a freshly rendered context unless its content hash matches the saved one
+     */
+    static void remember(@NonNull Context context, @NonNull String forEnrollment, @NonNull String built) {
+        String hash = contentHash(built);
+        SharedPreferences prefs = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        SharedPreferences.Editor editor = prefs.edit().putLong(KEY_BUILT_AT, System.currentTimeMillis());
+        if (hash.equals(prefs.getString(KEY_HASH, null)) && forEnrollment.equals(prefs.getString(KEY_ENROLLMENT, null))) {
+            Log.d(TAG, "Context unchanged (" + hash.substring(0, 12) + ")");
+        } else {
+            editor.putString(KEY_ENROLLMENT, forEnrollment)
+                    .putString(KEY_CONTEXT, built)
+                    .putString(KEY_HASH, hash);
+            Log.d(TAG, "Context updated (" + hash.substring(0, 12) + ", " + built.length() + " chars)");
+        }
+        editor.apply();
+    }
+
+    /**
+     * Drops the entries and the saved context; called on sign out
+     */
+    static void clear(@NonNull Context context) {
+        enrollment = null;
+        entries = null;
+        syncedAt = 0L;
+        fullSyncedAt = 0L;
+        waiting.clear();
+        context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE).edit().clear().apply();
+    }
+
+    static String contentHash(@NonNull String text) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(text.getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                hex.append(String.format("%02x", b));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            // Every Android runtime ships SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // Ordered by start time so the same entries always render to the same text (and hash)
+    private static List<StudentAttendance.Entry> ordered() {
+        List<StudentAttendance.Entry> list = new ArrayList<>(entries.values());
+        Collections.sort(list, (a, b) -> a.startMs != b.startMs
+                ? Long.compare(a.startMs, b.startMs)
+                : a.sessionId.compareTo(b.sessionId));
+        return list;
+    }
+
+    private static void deliver() {
+        List<StudentAttendance.Entry> list = ordered();
+        List<EntriesCallback> callbacks = new ArrayList<>(waiting);
+        waiting.clear();
+        for (EntriesCallback callback : callbacks) {
+            callback.onEntries(list);
+        }
+    }
+
+    private static void fail(DatabaseError error) {
+        Log.e(TAG, "Attendance sync failed for " + enrollment + ": " + error.getMessage());
+        List<EntriesCallback> callbacks = new ArrayList<>(waiting);
+        waiting.clear();
+        for (EntriesCallback callback : callbacks) {
+            callback.onError(error);
+        }
+    }
+}
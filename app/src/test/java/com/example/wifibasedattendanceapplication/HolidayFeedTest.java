@@ -0,0 +1,101 @@
+package com.example.wifibasedattendanceapplication;
+
+import com.sun.net.httpserver.HttpServer;
+
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.OutputStream;
+import java.io.StringReader;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * {@link HolidayFeed} against a local HTTP stand-in for the Google calendar feed: streaming parse,
+ * and conditional requests that skip the body when the feed has not changed.
+ */
+public class HolidayFeedTest {
+
+    private static final String ETAG = "\"holidays-v1\"";
+    private static final String LAST_MODIFIED = "Mon, 05 Oct 2026 10:00:00 GMT";
+    private static final String FEED = "BEGIN:VCALENDAR\r\n"
+            + "VERSION:2.0\r\n"
+            + "BEGIN:VEVENT\r\n"
+            + "DTSTART;VALUE=DATE:20261020\r\n"
+            + "DTEND;VALUE=DATE:20261021\r\n"
+            + "SUMMARY:Dussehra\r\n"
+            + "END:VEVENT\r\n"
+            + "BEGIN:VEVENT\r\n"
+            + "DTSTART;VALUE=DATE:20261108\r\n"
+            + "SUMMARY:Diwali/Deepavali\r\n"
+            + "END:VEVENT\r\n"
+            + "BEGIN:VEVENT\r\n"
+            + "DTSTART;VALUE=DATE:20261108\r\n"
+            + "SUMMARY;LANGUAGE=en:Naraka Chaturdasi\\, observed in some\r\n"
+            + "  states\r\n"
+            + "END:VEVENT\r\n"
+            + "BEGIN:VEVENT\r\n"
+            + "DTSTART;VALUE=DATE:20261225\r\n"
+            + "END:VEVENT\r\n"
+            + "END:VCALENDAR\r\n";
+
+    @Test
+    public void parse_indexesEventsByDate() throws Exception {
+        Map<String, List<String>> byDate = HolidayFeed.parse(new BufferedReader(new StringReader(FEED)));
+
+        assertEquals(2, byDate.size());
+        assertEquals(1, byDate.get("2026-10-20").size());
+        assertEquals("Dussehra", byDate.get("2026-10-20").get(0));
+        assertEquals(2, byDate.get("2026-11-08").size());
+        assertEquals("Naraka Chaturdasi, observed in some states", byDate.get("2026-11-08").get(1));
+        assertNull("events without a summary are dropped", byDate.get("2026-12-25"));
+    }
+
+    @Test
+    public void fetch_downloadsOnceThenRevalidates() throws Exception {
+        AtomicInteger bodiesSent = new AtomicInteger();
+        HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/basic.ics", exchange -> {
+            String ifNoneMatch = exchange.getRequestHeaders().getFirst("If-None-Match");
+            exchange.getResponseHeaders().add("ETag", ETAG);
+            exchange.getResponseHeaders().add("Last-Modified", LAST_MODIFIED);
+            if (ETAG.equals(ifNoneMatch)) {
+                exchange.sendResponseHeaders(304, -1);
+            } else {
+                byte[] body = FEED.getBytes(StandardCharsets.UTF_8);
+                exchange.sendResponseHeaders(200, body.length);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(body);
+                }
+                bodiesSent.incrementAndGet();
+            }
+            exchange.close();
+        });
+        server.start();
+        try {
+            String url = "http://127.0.0.1:" + server.getAddress().getPort() + "/basic.ics";
+
+            HolidayFeed.Result first = HolidayFeed.fetch(url, null, null);
+            assertFalse(first.notModified());
+            assertEquals(ETAG, first.etag);
+            assertEquals(LAST_MODIFIED, first.lastModified);
+            assertEquals(2, first.byDate.size());
+
+            HolidayFeed.Result second = HolidayFeed.fetch(url, first.etag, first.lastModified);
+            assertTrue(second.notModified());
+            assertEquals(ETAG, second.etag);
+            assertEquals(1, bodiesSent.get());
+
+            HolidayFeed.Result stale = HolidayFeed.fetch(url, "\"holidays-v0\"", null);
+            assertFalse(stale.notModified());
+            assertEquals(2, bodiesSent.get());
+        } finally {
+            server.stop(0);
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package com.example.wifibasedattendanceapplication;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.UnaryOperator;
+
+/**
+ * In-memory stand-in for the Realtime Database used by the local load tests.
+ *
+ * Mirrors the semantics the app relies on: root-relative multi-path updates applied atomically,
+ * null removing a path, {".sv": "timestamp"} resolved on the "server", and transactions that
+ * retry their handler when the node changed underneath them. Every call sleeps for a random
+ * round trip between minLatencyMs and maxLatencyMs outside the lock, so concurrency is real.
+ */
+class InMemoryRealtimeDatabase {
+
+    private final Map<String, Object> root = new HashMap<>();
+    private final Object lock = new Object();
+    private final long minLatencyMs;
+    private final long maxLatencyMs;
+
+    final AtomicLong writes = new AtomicLong();
+    final AtomicLong transactionRetries = new AtomicLong();
+
+    InMemoryRealtimeDatabase(long minLatencyMs, long maxLatencyMs) {
+        this.minLatencyMs = minLatencyMs;
+        this.maxLatencyMs = Math.max(minLatencyMs, maxLatencyMs);
+    }
+
+    /**
+     * Equivalent of getReference().updateChildren(updates) completing successfully
+     */
+    void updateChildren(Map<String, Object> updates) {
+        roundTrip();
+        synchronized (lock) {
+            for (Map.Entry<String, Object> entry : updates.entrySet()) {
+                set(entry.getKey(), entry.getValue());
+            }
+        }
+        writes.incrementAndGet();
+    }
+
+    /**
+     * Equivalent of a single-value read; returns a copy of the subtree, or null
+     */
+    Object read(String path) {
+        roundTrip();
+        synchronized (lock) {
+            return copy(get(path));
+        }
+    }
+
+    /**
+     * Equivalent of runTransaction: the handler may run several times and must be side-effect free
+     */
+    Object transaction(String path, UnaryOperator<Object> handler) {
+        while (true) {
+            Object current;
+            synchronized (lock) {
+                current = copy(get(path));
+            }
+            Object next = handler.apply(copy(current));
+            roundTrip();
+            synchronized (lock) {
+                // Like the server, only commit if the node still holds what the handler saw
+                if (Objects.equals(get(path), current)) {
+                    set(path, next);
+                    writes.incrementAndGet();
+                    return copy(next);
+                }
+            }
+            transactionRetries.incrementAndGet();
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private Object get(String path) {
+        Object node = root;
+        for (String part : path.split("/")) {
+            if (!(node instanceof Map)) return null;
+            node = ((Map<String, Object>) node).get(part);
+        }
+        return node;
+    }
+
+    @SuppressWarnings("unchecked")
+    private void set(String path, Object value) {
+        String[] parts = path.split("/");
+        Map<String, Object> node = root;
+        for (int i = 0; i < parts.length - 1; i++) {
+            Object child = node.get(parts[i]);
+            if (!(child instanceof Map)) {
+                if (value == null) return;
+                child = new HashMap<String, Object>();
+                node.put(parts[i], child);
+            }
+            node = (Map<String, Object>) child;
+        }
+        Object resolved = resolveServerValues(value);
+        if (resolved == null) {
+            node.remove(parts[parts.length - 1]);
+        } else {
+            node.put(parts[parts.length - 1], resolved);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private Object resolveServerValues(Object value) {
+        if (!(value instanceof Map)) return value;
+        Map<String, Object> map = (Map<String, Object>) value;
+        if ("timestamp".equals(map.get(".sv"))) return System.currentTimeMillis();
+        Map<String, Object> resolved = new HashMap<>();
+        for (Map.Entry<String, Object> entry : map.entrySet()) {
+            Object child = resolveServerValues(entry.getValue());
+            if (child != null) resolved.put(entry.getKey(), child);
+        }
+        return resolved;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Object copy(Object value) {
+        if (!(value instanceof Map)) return value;
+        Map<String, Object> copy = new HashMap<>();
+        for (Map.Entry<String, Object> entry : ((Map<String, Object>) value).entrySet()) {
+            copy.put(entry.getKey(), copy(entry.getValue()));
+        }
+        return copy;
+    }
+
+    private void roundTrip() {
+        if (maxLatencyMs <= 0) return;
+        try {
+            Thread.sleep(ThreadLocalRandom.current().nextLong(minLatencyMs, maxLatencyMs + 1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
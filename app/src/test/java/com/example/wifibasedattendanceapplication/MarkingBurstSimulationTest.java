@@ -0,0 +1,315 @@
+package com.example.wifibasedattendanceapplication;
+
+import org.junit.Assume;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Class-start burst simulation of the marking path against {@link InMemoryRealtimeDatabase}.
+ *
+ * Drives the same write shapes as the app: session create (activity_session), roster init
+ * (RosterInitializer, counted through {@link SessionCounters#rostered}), concurrent "Mark Present"
+ * (SelectAttendanceActivity via AttendanceMark and {@link SessionCounters#settled}), session end, and the report's single counters read
+ * (AttendanceReportActivity). A share of clients lose the acknowledgement of their mark and retry
+ * it, like a phone dropping off Wi-Fi mid-write, and settle the counters from both attempts.
+ *
+ * The default suite runs a small burst with every press at once. The randomized burst over a
+ * press window is a benchmark, run only when asked for, e.g.
+ *   ./gradlew testDebugUnitTest --tests '*MarkingBurstSimulationTest' -Dburst.benchmark=true -Dburst.students=300
+ *
+ *   burst.students      roster size (default 150)
+ *   burst.concurrency   client threads marking at once (default 32)
+ *   burst.windowMs      spread of button presses, the compressed "first 60 seconds" (default 2000)
+ *   burst.minLatencyMs  / burst.maxLatencyMs  simulated round trip (default 5 / 40)
+ *   burst.lostAckRate   share of marks whose ack is lost and retried (default 0.1)
+ *   burst.seed          seed for press times and lost acks (default: random)
+ */
+public class MarkingBurstSimulationTest {
+
+    private static final String DIVISION = "A";
+    private static final Logger LOG = Logger.getLogger("MarkingBurst");
+
+    private static class Burst {
+        int students;
+        int concurrency;
+        long windowMs;
+        long minLatencyMs;
+        long maxLatencyMs;
+        double lostAckRate;
+        long seed;
+    }
+
+    private static class Outcome {
+        long burstMs;
+        int acknowledged;
+        int retried;
+        long transactionRetries;
+        long writes;
+        int lost;
+        long duplicated;
+        int keyMismatches;
+        long present;
+        long recountedPresent;
+        long notMarked;
+        boolean indexEntryLeft;
+        final List<Long> writeLatencies = Collections.synchronizedList(new ArrayList<>());
+
+        String report(Burst burst) {
+            return "class-start burst: " + burst.students + " students, concurrency " + burst.concurrency
+                    + ", window " + burst.windowMs + "ms, latency " + burst.minLatencyMs + "-" + burst.maxLatencyMs
+                    + "ms, seed " + burst.seed
+                    + "\n  duration " + burstMs + "ms, "
+                    + String.format("%.1f", acknowledged * 1000.0 / Math.max(1, burstMs)) + " marks/s"
+                    + "\n  mark write latency p50=" + percentile(writeLatencies, 50) + "ms p95="
+                    + percentile(writeLatencies, 95) + "ms p99=" + percentile(writeLatencies, 99) + "ms"
+                    + "\n  retried marks " + retried + ", counter txn retries " + transactionRetries
+                    + ", total writes " + writes
+                    + "\n  lost " + lost + ", duplicated " + duplicated + ", mark_key mismatches " + keyMismatches;
+        }
+    }
+
+    @Test
+    public void classStartBurst_marksEveryStudentExactlyOnce() throws Exception {
+        Burst burst = new Burst();
+        burst.students = 40;
+        burst.concurrency = 8;
+        burst.windowMs = 0;
+        burst.minLatencyMs = 0;
+        burst.maxLatencyMs = 1;
+        burst.lostAckRate = 0.25;
+        burst.seed = 42L;
+
+        assertConsistent(burst, run(burst));
+    }
+
+    @Test
+    public void markBeforeRoster_isCountedOnce() {
+        InMemoryRealtimeDatabase db = new InMemoryRealtimeDatabase(0, 0);
+        String countsPath = "AttendanceReport/attendance_session_id_1/" + SessionCounters.NODE;
+        List<String> roster = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            roster.add(String.format("ENR%05d", i));
+        }
+
+        // The mark's settle reaches the counters before the roster batch has created them
+        settle(db, countsPath, roster.get(2));
+        addNotMarked(db, countsPath, roster);
+
+        Map<String, Object> node = asMap(db.read(countsPath));
+        assertEquals(1L, asLong(node.get(SessionCounters.PRESENT)));
+        assertEquals(4L, asLong(node.get(SessionCounters.NOT_MARKED)));
+    }
+
+    @Test
+    public void benchmark_randomizedClassStartBurst() throws Exception {
+        Assume.assumeTrue("set -Dburst.benchmark=true to run", Boolean.getBoolean("burst.benchmark"));
+        Burst burst = new Burst();
+        burst.students = Integer.getInteger("burst.students", 150);
+        burst.concurrency = Integer.getInteger("burst.concurrency", 32);
+        burst.windowMs = Long.getLong("burst.windowMs", 2000L);
+        burst.minLatencyMs = Long.getLong("burst.minLatencyMs", 5L);
+        burst.maxLatencyMs = Long.getLong("burst.maxLatencyMs", 40L);
+        burst.lostAckRate = Double.parseDouble(System.getProperty("burst.lostAckRate", "0.1"));
+        burst.seed = Long.getLong("burst.seed", new Random().nextLong());
+
+        Outcome outcome = run(burst);
+        LOG.info(outcome.report(burst));
+        assertConsistent(burst, outcome);
+    }
+
+    private static void assertConsistent(Burst burst, Outcome outcome) {
+        String report = outcome.report(burst);
+        assertEquals("Lost marks\n" + report, 0, outcome.lost);
+        assertEquals("Duplicated marks\n" + report, 0, outcome.duplicated);
+        assertEquals("Unexpected mark keys\n" + report, 0, outcome.keyMismatches);
+        assertEquals("present_count drifted from roster\n" + report, outcome.recountedPresent, outcome.present);
+        assertEquals("not_marked_count should drain to zero\n" + report, 0, outcome.notMarked);
+        assertFalse("Index entry should be removed on end", outcome.indexEntryLeft);
+    }
+
+    private static Outcome run(Burst burst) throws Exception {
+        InMemoryRealtimeDatabase db = new InMemoryRealtimeDatabase(burst.minLatencyMs, burst.maxLatencyMs);
+        Outcome outcome = new Outcome();
+        String sessionId = "attendance_session_id_" + System.currentTimeMillis();
+        String sessionPath = "AttendanceReport/" + sessionId;
+        String countsPath = sessionPath + "/" + SessionCounters.NODE;
+
+        // 1. Session create: session node plus its active-session index entry in one update
+        long now = System.currentTimeMillis();
+        Map<String, Object> sessionData = new HashMap<>();
+        sessionData.put("division", DIVISION);
+        sessionData.put("subject", "Load Test");
+        sessionData.put("timestamp", now);
+        sessionData.put("end_timestamp", now + 60 * 60 * 1000);
+        sessionData.put("session_status", "active");
+        Map<String, Object> createUpdates = new HashMap<>();
+        createUpdates.put(sessionPath, sessionData);
+        ActiveSessionIndex.putEntry(createUpdates, DIVISION, sessionId, now, now + 60 * 60 * 1000, "Load Test");
+        db.updateChildren(createUpdates);
+
+        // 2. Roster init in RosterInitializer-sized batches, each followed by the not_marked bump
+        List<String> roster = new ArrayList<>();
+        for (int i = 0; i < burst.students; i++) {
+            roster.add(String.format("ENR%05d", i));
+        }
+        StudentAttendance.SessionDetails details = new StudentAttendance.SessionDetails("Load Test", "01/01/25", now, 20250101);
+        for (int i = 0; i < roster.size(); i += RosterInitializer.MAX_STUDENTS_PER_BATCH) {
+            List<String> batch = roster.subList(i, Math.min(roster.size(), i + RosterInitializer.MAX_STUDENTS_PER_BATCH));
+            db.updateChildren(RosterInitializer.buildRosterUpdates(sessionId, details, batch));
+            addNotMarked(db, countsPath, batch);
+        }
+
+        // 3. Burst: every student presses "Mark Present" somewhere inside the window. Press times
+        // and lost acks are drawn up front so a seed reproduces them.
+        Random random = new Random(burst.seed);
+        AtomicInteger acknowledged = new AtomicInteger();
+        AtomicInteger retried = new AtomicInteger();
+        ExecutorService clients = Executors.newFixedThreadPool(burst.concurrency);
+        long burstStart = System.nanoTime();
+
+        for (String enrollment : roster) {
+            long pressAtMs = burst.windowMs > 0 ? (long) (random.nextDouble() * burst.windowMs) : 0L;
+            boolean ackLost = random.nextDouble() < burst.lostAckRate;
+            clients.execute(() -> {
+                sleepUntil(burstStart, pressAtMs);
+
+                String markKey = AttendanceMark.markKey(sessionId, enrollment, "device-" + enrollment);
+                Map<String, Object> updates = AttendanceMark.buildPresentUpdates(sessionId, enrollment, markKey);
+
+                long started = System.nanoTime();
+                db.updateChildren(updates);
+                if (ackLost) {
+                    // The write landed but the client never heard back: the first attempt's
+                    // replay settles it too, and the student presses again
+                    retried.incrementAndGet();
+                    settle(db, countsPath, enrollment);
+                    started = System.nanoTime();
+                    db.updateChildren(updates);
+                }
+                outcome.writeLatencies.add(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+                acknowledged.incrementAndGet();
+                settle(db, countsPath, enrollment);
+            });
+        }
+        clients.shutdown();
+        assertTrue("Burst did not finish", clients.awaitTermination(5, TimeUnit.MINUTES));
+        outcome.burstMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - burstStart);
+        outcome.acknowledged = acknowledged.get();
+        outcome.retried = retried.get();
+
+        // 4. End session: status, end time and index removal in one update
+        Map<String, Object> endUpdates = new HashMap<>();
+        endUpdates.put(sessionPath + "/session_status", "ended");
+        endUpdates.put(sessionPath + "/end_timestamp", System.currentTimeMillis());
+        ActiveSessionIndex.removeEntry(endUpdates, DIVISION, sessionId);
+        db.updateChildren(endUpdates);
+
+        // 5. Report: the incremental counters versus a full recount of the roster
+        Map<String, Object> counts = asMap(db.read(countsPath));
+        Map<String, Object> sessionStudents = asMap(db.read(sessionPath + "/Students"));
+        for (String enrollment : roster) {
+            Map<String, Object> entry = asMap(sessionStudents.get(enrollment));
+            boolean sessionPresent = AttendanceMark.STATUS_PRESENT.equals(entry.get("attendance_status"));
+            boolean studentPresent = "P".equals(db.read(StudentAttendance.statusPath(enrollment, sessionId)));
+            assertEquals("Load Test", db.read(StudentAttendance.entryPath(enrollment, sessionId) + "/" + StudentAttendance.SUBJECT));
+            if (sessionPresent) outcome.recountedPresent++;
+            if (!sessionPresent || !studentPresent) outcome.lost++;
+            if (!AttendanceMark.markKey(sessionId, enrollment, "device-" + enrollment).equals(entry.get(AttendanceMark.MARK_KEY))) {
+                outcome.keyMismatches++;
+            }
+        }
+        outcome.present = asLong(counts.get(SessionCounters.PRESENT));
+        outcome.notMarked = asLong(counts.get(SessionCounters.NOT_MARKED));
+        outcome.duplicated = Math.max(0, outcome.present - outcome.recountedPresent);
+        outcome.transactionRetries = db.transactionRetries.get();
+        outcome.writes = db.writes.get();
+        outcome.indexEntryLeft = db.read(ActiveSessionIndex.entryPath(DIVISION, sessionId)) != null;
+        return outcome;
+    }
+
+    /**
+     * SessionCounters.settle on the stand-in: the production transition, applied in a transaction
+     * together with the student's counted marker
+     */
+    private static void settle(InMemoryRealtimeDatabase db, String countsPath, String enrollment) {
+        db.transaction(countsPath, current -> {
+            Map<String, Object> node = asMap(current);
+            Map<String, Object> counted = asMap(node.get(SessionCounters.COUNTED));
+            Object marker = counted.get(enrollment);
+            SessionCounters.Counts next = SessionCounters.settled(counts(node),
+                    marker != null ? String.valueOf(marker) : null, AttendanceMark.STATUS_PRESENT);
+            if (next == null) return current;
+            put(node, next);
+            counted.put(enrollment, SessionCounters.counterFor(AttendanceMark.STATUS_PRESENT));
+            node.put(SessionCounters.COUNTED, counted);
+            return node;
+        });
+    }
+
+    /**
+     * SessionCounters.addNotMarked on the stand-in
+     */
+    private static void addNotMarked(InMemoryRealtimeDatabase db, String countsPath, List<String> enrollments) {
+        db.transaction(countsPath, current -> {
+            Map<String, Object> node = asMap(current);
+            put(node, SessionCounters.rostered(counts(node), enrollments,
+                    asMap(node.get(SessionCounters.COUNTED)).keySet()));
+            return node;
+        });
+    }
+
+    private static SessionCounters.Counts counts(Map<String, Object> node) {
+        return new SessionCounters.Counts(asLong(node.get(SessionCounters.PRESENT)),
+                asLong(node.get(SessionCounters.ABSENT)), asLong(node.get(SessionCounters.NOT_MARKED)));
+    }
+
+    private static void put(Map<String, Object> node, SessionCounters.Counts counts) {
+        node.put(SessionCounters.PRESENT, counts.present);
+        node.put(SessionCounters.ABSENT, counts.absent);
+        node.put(SessionCounters.NOT_MARKED, counts.notMarked);
+    }
+
+    // Nearest-rank percentile, -1 without samples
+    private static long percentile(List<Long> samples, int percentile) {
+        List<Long> sorted;
+        synchronized (samples) {
+            sorted = new ArrayList<>(samples);
+        }
+        if (sorted.isEmpty()) return -1;
+        Collections.sort(sorted);
+        int rank = (int) Math.ceil(percentile / 100.0 * sorted.size());
+        return sorted.get(Math.max(0, rank - 1));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> asMap(Object value) {
+        return value instanceof Map ? (Map<String, Object>) value : new HashMap<>();
+    }
+
+    private static long asLong(Object value) {
+        return value instanceof Number ? ((Number) value).longValue() : 0L;
+    }
+
+    private static void sleepUntil(long startNanos, long offsetMs) {
+        long remaining = offsetMs - TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+        if (remaining <= 0) return;
+        try {
+            Thread.sleep(remaining);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package com.example.wifibasedattendanceapplication;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/**
+ * {@link StudentAttendanceMigrator}'s choice of status when it migrates a student's entry: the
+ * student's own record wins over the session's Students map.
+ */
+public class StudentAttendanceMigratorTest {
+
+    private static final String ENROLLMENT = "2200000001";
+    private static final String SESSION = "attendance_session_id_1760000000000";
+    private static final String ENTRY = "Students/" + ENROLLMENT + "/Attendance/" + SESSION + "/";
+    private static final StudentAttendance.SessionDetails DETAILS =
+            new StudentAttendance.SessionDetails("Data Structures", "05/10/2026", 1760000000000L, 20261005);
+
+    @Test
+    public void putEntry_legacyPresentWithSessionNotMarked_staysPresent() {
+        // Baseline marking wrote the student's "P" first; the session's "Present" write failed
+        StudentAttendance.Entry legacy = new StudentAttendance.Entry(SESSION, "P", null, null, 0L, 0, true);
+
+        Map<String, Object> updates = migrate(legacy, "Not Marked");
+
+        assertEquals(StudentAttendance.CODE_PRESENT, updates.get(ENTRY + StudentAttendance.STATUS));
+        assertEquals("Data Structures", updates.get(ENTRY + StudentAttendance.SUBJECT));
+        assertEquals(20261005, updates.get(ENTRY + StudentAttendance.DAY_KEY));
+    }
+
+    @Test
+    public void putEntry_objectEntry_onlyGetsSessionDetails() {
+        StudentAttendance.Entry entry = new StudentAttendance.Entry(SESSION, "P", null, null, 0L, 0, false);
+
+        Map<String, Object> updates = migrate(entry, "Not Marked");
+
+        assertFalse(updates.containsKey(ENTRY + StudentAttendance.STATUS));
+        assertEquals(1760000000000L, updates.get(ENTRY + StudentAttendance.START_MS));
+        assertEquals("05/10/2026", updates.get(ENTRY + StudentAttendance.PERIOD_DATE));
+    }
+
+    @Test
+    public void putEntry_legacyAbsentWithSessionPresent_keepsTheStudentRecord() {
+        StudentAttendance.Entry legacy = new StudentAttendance.Entry(SESSION, "A", null, null, 0L, 0, true);
+
+        assertEquals(StudentAttendance.CODE_ABSENT, migrate(legacy, AttendanceMark.STATUS_PRESENT)
+                .get(ENTRY + StudentAttendance.STATUS));
+    }
+
+    @Test
+    public void putEntry_missingEntry_takesTheSessionStatus() {
+        assertEquals(StudentAttendance.CODE_PRESENT, migrate(null, AttendanceMark.STATUS_PRESENT)
+                .get(ENTRY + StudentAttendance.STATUS));
+        assertEquals(StudentAttendance.CODE_ABSENT, migrate(null, "Not Marked")
+                .get(ENTRY + StudentAttendance.STATUS));
+    }
+
+    private static Map<String, Object> migrate(StudentAttendance.Entry existing, String sessionStatus) {
+        Map<String, Object> updates = new HashMap<>();
+        StudentAttendanceMigrator.putEntry(updates, ENROLLMENT, SESSION, existing, sessionStatus, DETAILS);
+        return updates;
+    }
+}
@@ -0,0 +1,245 @@
+package com.example.wifibasedattendanceapplication.chatbot;
+
+import org.junit.Assume;
+import org.junit.Test;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.logging.Logger;
+
+import static org.junit.Assert.*;
+
+/**
+ * {@link PromptAssembler} budgeting, and a benchmark of prompt size against assembly time and,
+ * optionally, Gemini response latency.
+ *
+ * The benchmark grows the conversation (long assistant answers, the usual cause of prompt growth)
+ * over a student context shaped like {@link StudentContextBuilder}'s, lays it out with
+ * {@link PromptLayout} and compares the unbounded prompt with the budgeted one. It runs only when
+ * asked for and is tunable with system properties, e.g.
+ *   ./gradlew testDebugUnitTest --tests '*PromptBudgetBenchmarkTest' -Dprompt.benchmark=true -Dprompt.budget=2048
+ *
+ *   prompt.benchmark run the benchmark (default false)
+ *   prompt.budget    token budget (default ChatConfig.MAX_PROMPT_TOKENS)
+ *   prompt.subjects  subjects in the synthetic context (default 8)
+ *   prompt.apiKey    if set, each prompt is also sent to Gemini and the response latency reported
+ *   prompt.runs      requests per prompt in the latency run (default 3)
+ */
+public class PromptBudgetBenchmarkTest {
+
+    private static final Logger LOG = Logger.getLogger("PromptBudget");
+
+    private final int budget = Integer.getInteger("prompt.budget", ChatConfig.MAX_PROMPT_TOKENS);
+    private final int subjects = Integer.getInteger("prompt.subjects", 8);
+    private final String apiKey = System.getProperty("prompt.apiKey");
+    private final int runs = Integer.getInteger("prompt.runs", 3);
+
+    @Test
+    public void assemble_staysWithinBudgetAndKeepsPinnedSections() {
+        PromptAssembler.Result result = assemble("What's my attendance in Subject 3?", 4000, 600);
+
+        assertTrue("estimate " + result.estimatedTokens, result.estimatedTokens <= 600);
+        assertTrue(result.unboundedTokens > 600);
+        assertTrue(result.prompt.startsWith("You are an AI assistant"));
+        assertTrue(result.prompt.contains("RESPONSE GUIDELINES:"));
+        assertTrue(result.prompt.endsWith("Student Question: What's my attendance in Subject 3?"));
+    }
+
+    @Test
+    public void assemble_cutsLeastRelevantContextFirst() {
+        PromptAssembler.Result result = assemble("What is my fees status?", 200, 700);
+
+        assertTrue(result.prompt.contains("Remaining: ₹15000"));
+        assertFalse(result.dropped.contains("FEES STATUS:"));
+        assertFalse(result.truncated.contains("FEES STATUS:"));
+        assertTrue("the daily listing should give way to fees: " + result,
+                result.dropped.contains("Recent Daily Attendance:") || result.truncated.contains("Recent Daily Attendance:"));
+    }
+
+    @Test
+    public void assemble_truncatesLineByLineKeepingTheHeading() {
+        PromptAssembler.Result result = new PromptAssembler(12)
+                .add("list", "LIST:\none\ntwo\nthree\nfour\nfive\nsix\nseven\neight", 1)
+                .assemble();
+
+        assertEquals(Collections.singletonList("list"), result.truncated);
+        assertTrue(result.prompt.startsWith("LIST:\none"));
+        assertTrue(result.prompt.endsWith(PromptAssembler.TRUNCATED_MARKER));
+        assertTrue(result.estimatedTokens <= 12);
+    }
+
+    @Test
+    public void assemble_cutsALongAnswerAtAWord() {
+        String answer = "Assistant: " + filler(4000);
+        PromptAssembler.Result result = new PromptAssembler(200).add("answer", answer, 1).assemble();
+
+        assertEquals(Collections.singletonList("answer"), result.truncated);
+        assertTrue(result.prompt.startsWith("Assistant: Your attendance"));
+        assertTrue(result.prompt.endsWith(" " + PromptAssembler.TRUNCATED_MARKER));
+        assertTrue(result.estimatedTokens <= 200);
+    }
+
+    @Test
+    public void relevance_prefersMatchingTopicAndWords() {
+        String attendance = "ATTENDANCE OVERVIEW:\n- Data Structures: 80.0% (8/10)";
+        String fees = "FEES STATUS:\nStatus: Pending";
+
+        assertTrue(PromptAssembler.relevance("am I below 75 in data structures?", attendance)
+                > PromptAssembler.relevance("am I below 75 in data structures?", fees));
+        assertTrue(PromptAssembler.relevance("when is my fee due?", fees)
+                > PromptAssembler.relevance("when is my fee due?", attendance));
+    }
+
+    @Test
+    public void benchmark_promptSizeAgainstLatency() throws Exception {
+        Assume.assumeTrue("set -Dprompt.benchmark=true to run", Boolean.getBoolean("prompt.benchmark"));
+        String question = "How many classes do I need for 75% in Subject 2?";
+        int[] answerLengths = {200, 1000, 4000, 16000};
+
+        StringBuilder report = new StringBuilder("prompt budget benchmark (budget " + budget + " tokens)\n");
+        report.append(String.format("%-8s %-12s %-12s %-12s %s%n", "answer", "unbounded", "budgeted", "assemble", "latency unbounded/budgeted"));
+        for (int answerLength : answerLengths) {
+            long started = System.nanoTime();
+            PromptAssembler.Result result = assemble(question, answerLength, budget);
+            long assembleMicros = (System.nanoTime() - started) / 1000;
+            assertTrue(result.estimatedTokens <= budget);
+
+            String latency = "-";
+            if (apiKey != null && !apiKey.isEmpty()) {
+                latency = medianLatencyMs(unbounded(question, answerLength)) + "ms/" + medianLatencyMs(result.prompt) + "ms";
+            }
+            report.append(String.format("%-8d %-12s %-12s %-12s %s%n", answerLength,
+                    "~" + result.unboundedTokens, "~" + result.estimatedTokens, assembleMicros + "us", latency));
+        }
+        if (apiKey == null || apiKey.isEmpty()) {
+            report.append("set -Dprompt.apiKey=... to measure Gemini response latency");
+        }
+        LOG.info(report.toString());
+    }
+
+    // ChatRepository's prompt over a synthetic student
+    private PromptAssembler.Result assemble(String question, int answerLength, int budgetTokens) {
+        return PromptLayout.assemble(budgetTokens, studentContext(), history(question, answerLength), question);
+    }
+
+    private String unbounded(String question, int answerLength) {
+        return assemble(question, answerLength, Integer.MAX_VALUE).prompt;
+    }
+
+    // Two earlier exchanges with long answers, then the question and the typing indicator, as
+    // ChatRepository holds them while the prompt is built
+    private static List<ChatMessage> history(String question, int answerLength) {
+        List<ChatMessage> history = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            history.add(i % 2 == 0
+                    ? new ChatMessage("question " + i, ChatMessage.MessageType.USER)
+                    : new ChatMessage(filler(answerLength), ChatMessage.MessageType.BOT));
+        }
+        history.add(new ChatMessage(question, ChatMessage.MessageType.USER));
+        history.add(new ChatMessage("AI is thinking...", ChatMessage.MessageType.TYPING, true));
+        return history;
+    }
+
+    private String studentContext() {
+        StringBuilder context = new StringBuilder();
+        context.append("STUDENT PROFILE:\nName: Test Student\nEnrollment: 2200000001\nDivision: A\nBranch: CE\n\n");
+        context.append("ATTENDANCE OVERVIEW:\nOverall Attendance: 71.0% (71/100)\n\nSubject-wise Attendance:\n");
+        for (int s = 1; s <= subjects; s++) {
+            context.append("- Subject ").append(s).append(": 70.0% (7/10)\n  Classes needed for 75%: 2 more classes\n");
+        }
+        context.append("\nRecent Daily Attendance:\n");
+        for (int d = 10; d >= 1; d--) {
+            context.append("- ").append(d).append(" Oct 2026:\n");
+            for (int s = 1; s <= 4; s++) {
+                context.append("  • Subject ").append(s).append(" (").append(8 + s).append(" AM - ").append(9 + s)
+                        .append(" AM): Present\n");
+            }
+        }
+        context.append("\nFEES STATUS:\nStatus: Pending\nTotal Fees: ₹60000\nPaid: ₹45000\nRemaining: ₹15000\n\n");
+        context.append("CALENDAR & HOLIDAYS:\nToday: 17 Oct 2026 (Saturday)\nUpcoming Holidays (next 30 days):\n");
+        for (int d = 18; d <= 31; d += 7) {
+            context.append("- ").append(d).append(" Oct 2026 - Sunday\n");
+        }
+        context.append("\nRecent Attendance (Last 7 days):\n");
+        for (int d = 11; d <= 17; d++) {
+            context.append("- ").append(d).append(" Oct 2026: No classes\n");
+        }
+        context.append("\nAVAILABLE APP FEATURES:\n- Mark Attendance: Submit attendance when connected to WiFi\n");
+        context.append("- View Attendance: Check detailed attendance reports\n\n");
+        context.append("CURRENT DATE: 17 Oct 2026\n");
+        return context.toString();
+    }
+
+    private static String filler(int length) {
+        StringBuilder text = new StringBuilder(length);
+        while (text.length() < length) {
+            text.append("Your attendance in each subject is listed above with the classes you still need. ");
+        }
+        return text.substring(0, length);
+    }
+
+    private long medianLatencyMs(String prompt) throws Exception {
+        List<Long> latencies = new ArrayList<>();
+        for (int i = 0; i < runs; i++) {
+            latencies.add(send(prompt));
+        }
+        Collections.sort(latencies);
+        return latencies.get(latencies.size() / 2);
+    }
+
+    private long send(String prompt) throws Exception {
+        URL url = new URL(ChatConfig.GEMINI_BASE_URL + "models/" + ChatConfig.GEMINI_MODEL);
+        byte[] body = ("{\"contents\":[{\"parts\":[{\"text\":\"" + jsonEscape(prompt) + "\"}]}],"
+                + "\"generationConfig\":{\"temperature\":" + ChatConfig.TEMPERATURE
+                + ",\"maxOutputTokens\":" + ChatConfig.MAX_RESPONSE_TOKENS + "}}").getBytes(StandardCharsets.UTF_8);
+        long started = System.nanoTime();
+        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+        try {
+            connection.setRequestMethod("POST");
+            connection.setDoOutput(true);
+            connection.setRequestProperty("Content-Type", "application/json");
+            connection.setRequestProperty("x-goog-api-key", apiKey);
+            try (OutputStream out = connection.getOutputStream()) {
+                out.write(body);
+            }
+            int code = connection.getResponseCode();
+            assertEquals("Gemini request failed", 200, code);
+            try (InputStream in = connection.getInputStream()) {
+                byte[] buffer = new byte[8192];
+                while (in.read(buffer) != -1) {
+                    // drain
+                }
+            }
+        } finally {
+            connection.disconnect();
+        }
+        return (System.nanoTime() - started) / 1_000_000;
+    }
+
+    private static String jsonEscape(String text) {
+        StringBuilder escaped = new StringBuilder(text.length() + 16);
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            switch (c) {
+                case '"': escaped.append("\\\""); break;
+                case '\\': escaped.append("\\\\"); break;
+                case '\n': escaped.append("\\n"); break;
+                case '\r': escaped.append("\\r"); break;
+                case '\t': escaped.append("\\t"); break;
+                default:
+                    if (c < 0x20) {
+                        escaped.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        escaped.append(c);
+                    }
+            }
+        }
+        return escaped.toString();
+    }
+}
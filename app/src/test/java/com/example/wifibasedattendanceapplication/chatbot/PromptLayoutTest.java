@@ -0,0 +1,87 @@
+package com.example.wifibasedattendanceapplication.chatbot;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class PromptLayoutTest {
+
+    private static final String CONTEXT = "STUDENT PROFILE:\nName: Test Student\nEnrollment: 2200000001\n\n"
+            + "ATTENDANCE OVERVIEW:\nOverall Attendance: 71.0% (71/100)\n\n"
+            + "FEES STATUS:\nStatus: Pending\nRemaining: ₹15000\n";
+
+    @Test
+    public void assemble_ordersSectionsAroundTheQuestion() {
+        List<ChatMessage> history = new ArrayList<>();
+        history.add(new ChatMessage("hi", ChatMessage.MessageType.USER));
+        history.add(new ChatMessage("Hello! How can I help?", ChatMessage.MessageType.BOT));
+        history.add(new ChatMessage("What is my fees status?", ChatMessage.MessageType.USER));
+        history.add(new ChatMessage("AI is thinking...", ChatMessage.MessageType.TYPING, true));
+
+        String prompt = PromptLayout.assemble(ChatConfig.MAX_PROMPT_TOKENS, CONTEXT, history,
+                "What is my fees status?").prompt;
+
+        assertTrue(prompt.startsWith("You are an AI assistant"));
+        assertInOrder(prompt, "Student Context:", "STUDENT PROFILE:", "ATTENDANCE OVERVIEW:", "FEES STATUS:",
+                "RECENT CONVERSATION:", "Student: hi", "Assistant: Hello! How can I help?",
+                "IMPORTANT: When asked about fees", "RESPONSE GUIDELINES:");
+        assertTrue(prompt.endsWith("Student Question: What is my fees status?"));
+        assertFalse(prompt.contains("AI is thinking..."));
+    }
+
+    @Test
+    public void assemble_keepsOnlyTheRecentHistory() {
+        List<ChatMessage> history = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            history.add(new ChatMessage("message " + i, i % 2 == 0 ? ChatMessage.MessageType.USER : ChatMessage.MessageType.BOT));
+        }
+
+        String prompt = PromptLayout.assemble(ChatConfig.MAX_PROMPT_TOKENS, CONTEXT, history, "hello").prompt;
+
+        int first = history.size() - PromptLayout.HISTORY_MESSAGES;
+        assertFalse(prompt.contains("message " + (first - 1)));
+        for (int i = first; i < history.size(); i++) {
+            assertTrue(prompt.contains("message " + i));
+        }
+    }
+
+    @Test
+    public void assemble_withoutContextLeavesOutItsHeading() {
+        String prompt = PromptLayout.assemble(ChatConfig.MAX_PROMPT_TOKENS, null,
+                Collections.<ChatMessage>emptyList(), "How do I mark attendance?").prompt;
+
+        assertFalse(prompt.contains("Student Context:"));
+        assertTrue(prompt.endsWith("Student Question: How do I mark attendance?"));
+    }
+
+    @Test
+    public void assemble_cutsTheConversationBeforeThePinnedSections() {
+        List<ChatMessage> history = new ArrayList<>();
+        StringBuilder answer = new StringBuilder();
+        while (answer.length() < 8000) {
+            answer.append("Your attendance in each subject is listed above. ");
+        }
+        history.add(new ChatMessage(answer.toString(), ChatMessage.MessageType.BOT));
+
+        PromptAssembler.Result result = PromptLayout.assemble(600, CONTEXT, history, "What is my fees status?");
+
+        assertTrue("estimate " + result.estimatedTokens, result.estimatedTokens <= 600);
+        assertTrue(result.prompt.contains("STUDENT PROFILE:"));
+        assertTrue(result.prompt.contains("RESPONSE GUIDELINES:"));
+        assertTrue(result.prompt.endsWith("Student Question: What is my fees status?"));
+        assertFalse(result.truncated.isEmpty() && result.dropped.isEmpty());
+    }
+
+    private static void assertInOrder(String text, String... parts) {
+        int from = 0;
+        for (String part : parts) {
+            int at = text.indexOf(part, from);
+            assertTrue("missing or out of order: " + part, at >= 0);
+            from = at + part.length();
+        }
+    }
+}